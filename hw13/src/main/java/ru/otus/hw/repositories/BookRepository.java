@@ -5,6 +5,7 @@ import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.lang.NonNull;
 import ru.otus.hw.models.Book;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -14,6 +15,9 @@ public interface BookRepository extends JpaRepository<Book, Long> {
     @EntityGraph(value = "book:author-only-entity-graph")
     List<Book> findAll();
 
+    @EntityGraph(value = "book:author-only-entity-graph")
+    List<Book> findAllByIdIn(Collection<Long> ids);
+
     @Override
     @NonNull
     @EntityGraph(value = "book:author-genre-entity-graph")
@@ -1,22 +1,40 @@
 package ru.otus.hw.security;
 
 import lombok.RequiredArgsConstructor;
-import org.springframework.security.access.prepost.PostFilter;
+import org.springframework.security.acls.domain.SidRetrievalStrategyImpl;
+import org.springframework.security.acls.model.SidRetrievalStrategy;
+import org.springframework.security.authentication.AuthenticationCredentialsNotFoundException;
+import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Transactional;
 import ru.otus.hw.models.Book;
 import ru.otus.hw.repositories.BookRepository;
 
+import java.util.ArrayList;
 import java.util.List;
 
 @Component
 @RequiredArgsConstructor
 public class AclAwareBookReader {
+    private static final int ID_BATCH_SIZE = 1000;
+
     private final BookRepository bookRepository;
 
+    private final AclPermissionIndex aclPermissionIndex;
+
+    private final SidRetrievalStrategy sidRetrievalStrategy = new SidRetrievalStrategyImpl();
+
     @Transactional(readOnly = true)
-    @PostFilter("hasPermission(filterObject, 'READ')")
     public List<Book> findAllBooksSecured() {
-        return bookRepository.findAll();
+        var auth = SecurityContextHolder.getContext().getAuthentication();
+        if (auth == null) {
+            throw new AuthenticationCredentialsNotFoundException("No authentication found to read books");
+        }
+        List<Long> ids = aclPermissionIndex.findReadableBookIds(sidRetrievalStrategy.getSids(auth));
+        List<Book> books = new ArrayList<>(ids.size());
+        for (int from = 0; from < ids.size(); from += ID_BATCH_SIZE) {
+            books.addAll(bookRepository.findAllByIdIn(ids.subList(from, Math.min(from + ID_BATCH_SIZE, ids.size()))));
+        }
+        return books;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,47 @@
+package ru.otus.hw.security;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.acls.domain.ObjectIdentityImpl;
+import org.springframework.security.acls.model.AclService;
+import org.springframework.security.acls.model.ObjectIdentity;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+@Component
+@RequiredArgsConstructor
+public class AclCacheWarmer {
+    private static final int BATCH_SIZE = 50;
+
+    private static final String RECENT_ACLS_SQL = """
+            SELECT c.class, oi.object_id_identity
+            FROM acl_object_identity oi
+                JOIN acl_class c ON c.id = oi.object_id_class
+            ORDER BY oi.id DESC
+            LIMIT ?
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final AclService aclService;
+
+    @Value("${app.security.acl-cache.warm-up-size:1000}")
+    private int warmUpSize;
+
+    // Самые новые книги и комментарии открывают чаще всего; ACL читаются пачками и попадают в aclCache
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        if (warmUpSize <= 0) {
+            return;
+        }
+        List<ObjectIdentity> oids = jdbcTemplate.query(RECENT_ACLS_SQL,
+                (rs, rowNum) -> new ObjectIdentityImpl(rs.getString(1), rs.getLong(2)), warmUpSize);
+        for (int from = 0; from < oids.size(); from += BATCH_SIZE) {
+            aclService.readAclsById(oids.subList(from, Math.min(from + BATCH_SIZE, oids.size())));
+        }
+    }
+}
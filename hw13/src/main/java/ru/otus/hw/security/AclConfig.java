@@ -31,7 +31,7 @@ public class AclConfig {
     public AclCache aclCache(CacheManager cacheManager, PermissionGrantingStrategy permissionGrantingStrategy,
                              AclAuthorizationStrategy aclAuthorizationStrategy) {
         return new SpringCacheBasedAclCache(
-                Objects.requireNonNull(cacheManager.getCache("aclCache")),
+                Objects.requireNonNull(cacheManager.getCache(CacheConfig.ACL_CACHE)),
                 permissionGrantingStrategy,
                 aclAuthorizationStrategy
         );
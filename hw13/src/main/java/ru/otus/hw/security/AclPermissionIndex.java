@@ -0,0 +1,179 @@
+package ru.otus.hw.security;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.acls.domain.BasePermission;
+import org.springframework.security.acls.domain.GrantedAuthoritySid;
+import org.springframework.security.acls.domain.PrincipalSid;
+import org.springframework.security.acls.model.AccessControlEntry;
+import org.springframework.security.acls.model.Acl;
+import org.springframework.security.acls.model.ObjectIdentity;
+import org.springframework.security.acls.model.Sid;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.otus.hw.models.Book;
+
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Битовые множества id книг с правом READ по каждому acl_sid: отдельно разрешенные и запрещенные.
+ * Для каждого sid учитывается первая запись ACL с маской READ, а sid пользователя перебираются по порядку,
+ * как в DefaultPermissionGrantingStrategy; наследование от parent_object не учитывается - оно не используется.
+ * Строится из таблиц ACL при старте, изменения через AclServiceWrapperService применяются после коммита.
+ */
+@Component
+@RequiredArgsConstructor
+public class AclPermissionIndex implements SmartInitializingSingleton {
+    private static final String BOOK_TYPE = Book.class.getName();
+
+    private static final String LOAD_SQL = """
+            SELECT oi.object_id_identity, s.principal, s.sid, e.granting
+            FROM acl_entry e
+                JOIN acl_object_identity oi ON oi.id = e.acl_object_identity
+                JOIN acl_class c ON c.id = oi.object_id_class
+                JOIN acl_sid s ON s.id = e.sid
+            WHERE c.class = ? AND e.mask = ?
+            ORDER BY oi.object_id_identity, e.ace_order
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final Map<Sid, SidBits> bitsBySid = new HashMap<>();
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        load();
+    }
+
+    private void load() {
+        Map<Sid, SidBits> loaded = new HashMap<>();
+        Map<Sid, Boolean> decisions = new LinkedHashMap<>();
+        long[] current = {-1};
+        jdbcTemplate.query(LOAD_SQL, rs -> {
+            long id = rs.getLong(1);
+            if (id != current[0]) {
+                apply(loaded, current[0], decisions);
+                decisions.clear();
+                current[0] = id;
+            }
+            Sid sid = rs.getBoolean(2) ? new PrincipalSid(rs.getString(3)) : new GrantedAuthoritySid(rs.getString(3));
+            decisions.putIfAbsent(sid, rs.getBoolean(4));
+        }, BOOK_TYPE, BasePermission.READ.getMask());
+        apply(loaded, current[0], decisions);
+
+        lock.writeLock().lock();
+        try {
+            bitsBySid.clear();
+            bitsBySid.putAll(loaded);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public List<Long> findReadableBookIds(Collection<Sid> sids) {
+        BitSet readable = new BitSet();
+        BitSet decided = new BitSet();
+        lock.readLock().lock();
+        try {
+            for (Sid sid : sids) {
+                SidBits bits = bitsBySid.get(sid);
+                if (bits == null) {
+                    continue;
+                }
+                BitSet granted = (BitSet) bits.granted.clone();
+                granted.andNot(decided);
+                readable.or(granted);
+                decided.or(bits.granted);
+                decided.or(bits.denied);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return readable.stream().mapToObj(id -> (long) id).toList();
+    }
+
+    public void aclUpdated(Acl acl) {
+        ObjectIdentity oid = acl.getObjectIdentity();
+        if (!BOOK_TYPE.equals(oid.getType())) {
+            return;
+        }
+        Map<Sid, Boolean> decisions = new LinkedHashMap<>();
+        for (AccessControlEntry ace : acl.getEntries()) {
+            if (ace.getPermission().getMask() == BasePermission.READ.getMask()) {
+                decisions.putIfAbsent(ace.getSid(), ace.isGranting());
+            }
+        }
+        long id = toId(oid);
+        afterCommit(() -> replace(id, decisions));
+    }
+
+    public void aclDeleted(ObjectIdentity oid) {
+        if (BOOK_TYPE.equals(oid.getType())) {
+            long id = toId(oid);
+            afterCommit(() -> replace(id, Map.of()));
+        }
+    }
+
+    private void replace(long id, Map<Sid, Boolean> decisions) {
+        lock.writeLock().lock();
+        try {
+            int bit = toBit(id);
+            for (SidBits bits : bitsBySid.values()) {
+                bits.granted.clear(bit);
+                bits.denied.clear(bit);
+            }
+            apply(bitsBySid, id, decisions);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static void apply(Map<Sid, SidBits> target, long id, Map<Sid, Boolean> decisions) {
+        if (decisions.isEmpty()) {
+            return;
+        }
+        int bit = toBit(id);
+        decisions.forEach((sid, granting) -> {
+            SidBits bits = target.computeIfAbsent(sid, s -> new SidBits());
+            (granting ? bits.granted : bits.denied).set(bit);
+        });
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    private static long toId(ObjectIdentity oid) {
+        return ((Number) oid.getIdentifier()).longValue();
+    }
+
+    private static int toBit(long id) {
+        return Math.toIntExact(id);
+    }
+
+    private static final class SidBits {
+        private final BitSet granted = new BitSet();
+
+        private final BitSet denied = new BitSet();
+    }
+}
@@ -1,16 +1,52 @@
 package ru.otus.hw.security;
 
+import org.ehcache.config.builders.CacheConfigurationBuilder;
+import org.ehcache.config.builders.ConfigurationBuilder;
+import org.ehcache.config.builders.ExpiryPolicyBuilder;
+import org.ehcache.config.builders.ResourcePoolsBuilder;
+import org.ehcache.jsr107.EhcacheCachingProvider;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.EnableCaching;
-import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.cache.jcache.JCacheCacheManager;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import javax.cache.Caching;
+import java.net.URI;
+import java.time.Duration;
+import java.util.UUID;
+
 @Configuration
 @EnableCaching
 public class CacheConfig {
+    public static final String ACL_CACHE = "aclCache";
+
+    // SpringCacheBasedAclCache кладет каждый ACL дважды: по ObjectIdentity и по id
+    @Value("${app.security.acl-cache.max-entries:10000}")
+    private long maxEntries;
+
+    @Value("${app.security.acl-cache.time-to-live:PT10M}")
+    private Duration timeToLive;
+
+    @Bean
+    public javax.cache.CacheManager aclJCacheManager() {
+        var aclCacheConfiguration = CacheConfigurationBuilder
+                .newCacheConfigurationBuilder(Object.class, Object.class, ResourcePoolsBuilder.heap(maxEntries))
+                .withExpiry(ExpiryPolicyBuilder.timeToLiveExpiration(timeToLive))
+                .build();
+        var configuration = ConfigurationBuilder.newConfigurationBuilder()
+                .withCache(ACL_CACHE, aclCacheConfiguration)
+                .build();
+        var provider = (EhcacheCachingProvider) Caching.getCachingProvider(EhcacheCachingProvider.class.getName());
+        // свой URI на каждый контекст: тестовые контексты живут одновременно и не должны делить кэш
+        var jCacheManager = provider.getCacheManager(URI.create("urn:hw13-acl:" + UUID.randomUUID()), configuration);
+        jCacheManager.enableStatistics(ACL_CACHE, true);
+        return jCacheManager;
+    }
+
     @Bean
-    public CacheManager cacheManager() {
-        return new ConcurrentMapCacheManager("aclCache");
+    public CacheManager cacheManager(javax.cache.CacheManager aclJCacheManager) {
+        return new JCacheCacheManager(aclJCacheManager);
     }
 }
@@ -35,6 +35,7 @@ public class SecurityConfiguration {
                         .requestMatchers(HttpMethod.POST, "/book").hasRole("ADMIN")
                         .requestMatchers(HttpMethod.PUT, "/book/*").hasRole("ADMIN")
                         .requestMatchers(HttpMethod.DELETE, "/book/*").hasRole("ADMIN")
+                        .requestMatchers("/actuator/**").hasRole("ADMIN")
                         .anyRequest().authenticated())
                 .formLogin(Customizer.withDefaults())
                 .rememberMe((rememberMe) -> rememberMe
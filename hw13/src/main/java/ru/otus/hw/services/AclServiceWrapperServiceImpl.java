@@ -13,12 +13,15 @@ import org.springframework.security.acls.model.Sid;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import ru.otus.hw.security.AclPermissionIndex;
 
 @Service
 @RequiredArgsConstructor
 public class AclServiceWrapperServiceImpl implements AclServiceWrapperService {
     private final MutableAclService mutableAclService;
 
+    private final AclPermissionIndex aclPermissionIndex;
+
     private final Sid adminSid = new GrantedAuthoritySid("ROLE_ADMIN");
 
     @Transactional
@@ -45,6 +48,7 @@ public class AclServiceWrapperServiceImpl implements AclServiceWrapperService {
 
         if (changed) {
             mutableAclService.updateAcl(acl);
+            aclPermissionIndex.aclUpdated(acl);
         }
     }
 
@@ -82,6 +86,7 @@ public class AclServiceWrapperServiceImpl implements AclServiceWrapperService {
 
         if (ensureAce(acl, recipient, permission)) {
             mutableAclService.updateAcl(acl);
+            aclPermissionIndex.aclUpdated(acl);
         }
     }
 
@@ -90,6 +95,7 @@ public class AclServiceWrapperServiceImpl implements AclServiceWrapperService {
     public void deleteAcl(Object object) {
         ObjectIdentity oid = new ObjectIdentityImpl(object);
         mutableAclService.deleteAcl(oid, true);
+        aclPermissionIndex.aclDeleted(oid);
     }
 
     private MutableAcl readOrCreateAcl(ObjectIdentity oid) {
@@ -0,0 +1,115 @@
+package ru.otus.hw.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.core.context.SecurityContextHolder;
+import ru.otus.hw.Application;
+import ru.otus.hw.dto.BookDto;
+import ru.otus.hw.security.AclCacheWarmer;
+import ru.otus.hw.security.CacheConfig;
+import ru.otus.hw.services.BookService;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * BookServiceImpl.findAll и findById по всем книгам от имени пользователя с ROLE_USER при пустом (cold)
+ * и прогретом (warm) aclCache. Список книг фильтруется по индексу прав и aclCache не читает,
+ * а каждый findById проверяет hasPermission через ACL - на нем видна разница между cold и warm.
+ * Запуск: mvn -Pjmh test-compile exec:exec -Djmh.args="BookServiceBenchmark -p books=1000".
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+public class BookServiceBenchmark {
+
+    @Param({"cold", "warm"})
+    private String cache;
+
+    @Param({"1000"})
+    private int books;
+
+    private ConfigurableApplicationContext context;
+
+    private BookService bookService;
+
+    private CacheManager cacheManager;
+
+    private List<Long> ids;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = new SpringApplicationBuilder(Application.class)
+                .properties(
+                        "server.port=0",
+                        "logging.level.root=WARN",
+                        "spring.jpa.show-sql=false",
+                        "app.security.acl-cache.max-entries=" + 4 * books,
+                        "app.security.acl-cache.warm-up-size=" + 2 * books)
+                .run();
+        bookService = context.getBean(BookService.class);
+        cacheManager = context.getBean(CacheManager.class);
+
+        // состояние общее для потоков JMH, поэтому и пользователь общий
+        SecurityContextHolder.setStrategyName(SecurityContextHolder.MODE_GLOBAL);
+        authenticate("vetinari", "ROLE_ADMIN");
+        BookDto template = bookService.findById(1L);
+        for (int i = 0; i < books; i++) {
+            bookService.insert(new BookDto(null, "Benchmark book " + i, template.getAuthor(), template.getGenres()));
+        }
+        authenticate("nobby", "ROLE_USER");
+        ids = bookService.findAll().stream().map(BookDto::getId).toList();
+        context.getBean(AclCacheWarmer.class).warmUp();
+    }
+
+    @Setup(Level.Invocation)
+    public void prepareCache() {
+        if ("cold".equals(cache)) {
+            Objects.requireNonNull(cacheManager.getCache(CacheConfig.ACL_CACHE)).clear();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        SecurityContextHolder.clearContext();
+        context.close();
+    }
+
+    @Benchmark
+    public List<BookDto> findAll() {
+        return bookService.findAll();
+    }
+
+    @Benchmark
+    public void findEachById(Blackhole blackhole) {
+        for (Long id : ids) {
+            blackhole.consume(bookService.findById(id));
+        }
+    }
+
+    private static void authenticate(String username, String role) {
+        SecurityContextHolder.getContext().setAuthentication(UsernamePasswordAuthenticationToken.authenticated(
+                username, null, AuthorityUtils.createAuthorityList(role)));
+    }
+}
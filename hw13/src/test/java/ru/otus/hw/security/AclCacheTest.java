@@ -0,0 +1,73 @@
+package ru.otus.hw.security;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.CacheManager;
+import org.springframework.security.acls.domain.ObjectIdentityImpl;
+import org.springframework.security.acls.model.AclService;
+import org.springframework.security.acls.model.ObjectIdentity;
+import org.springframework.test.annotation.DirtiesContext;
+import ru.otus.hw.models.Book;
+import ru.otus.hw.models.Comment;
+
+import java.util.List;
+import java.util.stream.LongStream;
+import java.util.stream.StreamSupport;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("Кэш ACL")
+@SpringBootTest(properties = {
+        "app.security.acl-cache.max-entries=6",
+        "app.security.acl-cache.warm-up-size=3"
+})
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+class AclCacheTest {
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private javax.cache.CacheManager aclJCacheManager;
+
+    @Autowired
+    private AclService aclService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @DisplayName("должен при старте загружать ACL самых новых объектов")
+    @Test
+    void shouldWarmUpRecentAcls() {
+        var cache = cacheManager.getCache(CacheConfig.ACL_CACHE);
+
+        assertThat(cache).isNotNull();
+        assertThat(cache.get(new ObjectIdentityImpl(Comment.class, 5L))).isNotNull();
+        assertThat(cache.get(new ObjectIdentityImpl(Book.class, 1L))).isNull();
+    }
+
+    @DisplayName("должен ограничивать число записей и считать попадания, промахи и вытеснения")
+    @Test
+    void shouldStayBoundedAndReportMetrics() {
+        List<ObjectIdentity> books = LongStream.rangeClosed(1, 3)
+                .<ObjectIdentity>mapToObj(id -> new ObjectIdentityImpl(Book.class, id))
+                .toList();
+        aclService.readAclById(new ObjectIdentityImpl(Comment.class, 5L));
+        aclService.readAclsById(books);
+
+        assertThat(StreamSupport.stream(aclJCacheManager.getCache(CacheConfig.ACL_CACHE).spliterator(), false)
+                .count()).isLessThanOrEqualTo(6);
+        assertThat(counter("cache.gets", "hit")).isPositive();
+        assertThat(counter("cache.gets", "miss")).isPositive();
+        assertThat(meterRegistry.get("cache.evictions").tag("cache", CacheConfig.ACL_CACHE)
+                .functionCounter().count()).isPositive();
+    }
+
+    private double counter(String name, String result) {
+        return meterRegistry.get(name).tag("cache", CacheConfig.ACL_CACHE).tag("result", result)
+                .functionCounter().count();
+    }
+}
@@ -0,0 +1,88 @@
+package ru.otus.hw.security;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.acls.domain.BasePermission;
+import org.springframework.security.acls.domain.GrantedAuthoritySid;
+import org.springframework.security.acls.domain.ObjectIdentityImpl;
+import org.springframework.security.acls.domain.PrincipalSid;
+import org.springframework.security.acls.model.AccessControlEntry;
+import org.springframework.security.acls.model.Acl;
+import org.springframework.security.acls.model.ObjectIdentity;
+import org.springframework.security.acls.model.Permission;
+import org.springframework.security.acls.model.Sid;
+import ru.otus.hw.models.Book;
+import ru.otus.hw.models.Comment;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@DisplayName("Индекс прав на чтение книг")
+class AclPermissionIndexTest {
+
+    private static final Sid NOBBY = new PrincipalSid("nobby");
+
+    private static final Sid USER = new GrantedAuthoritySid("ROLE_USER");
+
+    private final AclPermissionIndex index = new AclPermissionIndex(mock(JdbcTemplate.class));
+
+    @DisplayName("должен возвращать книги, разрешенные любому из sid пользователя")
+    @Test
+    void shouldUnionGrantsOfAllSids() {
+        index.aclUpdated(acl(Book.class, 1, ace(USER, BasePermission.READ, true)));
+        index.aclUpdated(acl(Book.class, 2, ace(NOBBY, BasePermission.READ, true)));
+        index.aclUpdated(acl(Book.class, 3, ace(USER, BasePermission.WRITE, true)));
+        index.aclUpdated(acl(Comment.class, 4, ace(USER, BasePermission.READ, true)));
+
+        assertThat(index.findReadableBookIds(List.of(NOBBY, USER))).containsExactly(1L, 2L);
+        assertThat(index.findReadableBookIds(List.of(USER))).containsExactly(1L);
+        assertThat(index.findReadableBookIds(List.of(new GrantedAuthoritySid("ROLE_GUEST")))).isEmpty();
+    }
+
+    @DisplayName("должен применять первую запись ACL для первого подходящего sid, как проверка hasPermission")
+    @Test
+    void shouldRespectDenyOrder() {
+        index.aclUpdated(acl(Book.class, 1,
+                ace(NOBBY, BasePermission.READ, false),
+                ace(USER, BasePermission.READ, true)));
+        index.aclUpdated(acl(Book.class, 2,
+                ace(USER, BasePermission.READ, false),
+                ace(USER, BasePermission.READ, true)));
+
+        assertThat(index.findReadableBookIds(List.of(NOBBY, USER))).isEmpty();
+        assertThat(index.findReadableBookIds(List.of(USER, NOBBY))).containsExactly(1L);
+    }
+
+    @DisplayName("должен забывать права на книгу после замены и удаления ACL")
+    @Test
+    void shouldReplaceAndDeleteEntries() {
+        index.aclUpdated(acl(Book.class, 1, ace(USER, BasePermission.READ, true)));
+        index.aclUpdated(acl(Book.class, 2, ace(USER, BasePermission.READ, true)));
+
+        index.aclUpdated(acl(Book.class, 1, ace(NOBBY, BasePermission.READ, true)));
+        index.aclDeleted(new ObjectIdentityImpl(Book.class, 2L));
+
+        assertThat(index.findReadableBookIds(List.of(USER))).isEmpty();
+        assertThat(index.findReadableBookIds(List.of(NOBBY, USER))).containsExactly(1L);
+    }
+
+    private static Acl acl(Class<?> type, long id, AccessControlEntry... entries) {
+        ObjectIdentity oid = new ObjectIdentityImpl(type, id);
+        Acl acl = mock(Acl.class);
+        when(acl.getObjectIdentity()).thenReturn(oid);
+        when(acl.getEntries()).thenReturn(List.of(entries));
+        return acl;
+    }
+
+    private static AccessControlEntry ace(Sid sid, Permission permission, boolean granting) {
+        AccessControlEntry ace = mock(AccessControlEntry.class);
+        when(ace.getSid()).thenReturn(sid);
+        when(ace.getPermission()).thenReturn(permission);
+        when(ace.isGranting()).thenReturn(granting);
+        return ace;
+    }
+}
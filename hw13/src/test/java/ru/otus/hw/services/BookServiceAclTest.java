@@ -70,6 +70,24 @@ public class BookServiceAclTest {
         assertThat(books).hasSize(3);
     }
 
+    @Test
+    @DisplayName("Пользователь без прав на книги получает пустой список")
+    @WithMockUser(username = "rincewind", roles = "GUEST")
+    void userWithoutPermissionsSeesNoBooks() {
+        assertThat(bookService.findAll()).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Список книг учитывает права на созданные и удаленные книги")
+    @WithMockUser(username = "vetinari", roles = "ADMIN")
+    void findAllFollowsAclChanges() {
+        BookDto created = bookService.insert(getNewBookDto());
+        assertThat(bookService.findAll()).extracting(BookDto::getId).hasSize(4).contains(created.getId());
+
+        bookService.deleteById(created.getId());
+        assertThat(bookService.findAll()).extracting(BookDto::getId).hasSize(3).doesNotContain(created.getId());
+    }
+
     @Test
     @DisplayName("Обычный пользователь может читать детали одной книги")
     @WithMockUser(username = "nobby", roles = "USER")
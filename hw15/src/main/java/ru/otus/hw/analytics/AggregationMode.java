@@ -0,0 +1,17 @@
+package ru.otus.hw.analytics;
+
+public enum AggregationMode {
+    /**
+     * Стандартный агрегатор Spring Integration: элементы пакета копятся в MessageGroupStore.
+     */
+    STORE,
+    /**
+     * Элементы сразу сворачиваются в частичные счетчики по шардам, в памяти хранятся только счетчики.
+     */
+    SHARDED,
+    /**
+     * geo и text этапы сразу дописывают элементы в колоночный ClassifiedBatch своего пакета
+     * (несколько байт на элемент), отчет строится по пакету целиком.
+     */
+    COLUMNAR
+}
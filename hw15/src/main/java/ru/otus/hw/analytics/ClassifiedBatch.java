@@ -0,0 +1,135 @@
+package ru.otus.hw.analytics;
+
+import org.apache.commons.lang3.StringUtils;
+import ru.otus.hw.domain.ClassifiedItem;
+import ru.otus.hw.domain.Intent;
+import ru.otus.hw.util.GeoUtil;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Колоночное представление классифицированных элементов пакета: вместо объекта ClassifiedItem на элемент -
+ * байт Intent и номера запроса и источника в словарях пакета, около 9 байт на элемент плюс по строке
+ * на каждое различное значение. Id запроса не хранится: для отчета он не нужен. Ячейки geohash редки
+ * (только COORDS), поэтому для них нет колонки - они сразу считаются в LongCountMap. Не потокобезопасен.
+ */
+public class ClassifiedBatch {
+
+    /**
+     * Номер для пустого запроса: такие элементы учитываются в Intent, но не в топе запросов.
+     */
+    public static final int NO_QUERY = -1;
+
+    private static final Intent[] INTENTS = Intent.values();
+
+    private final Dictionary queries = new Dictionary();
+
+    private final Dictionary sources = new Dictionary();
+
+    private final LongCountMap cells = new LongCountMap();
+
+    private byte[] intents;
+
+    private int[] queryIds;
+
+    private int[] sourceIds;
+
+    private int size;
+
+    public ClassifiedBatch(int expectedSize) {
+        int capacity = Math.max(expectedSize, 16);
+        this.intents = new byte[capacity];
+        this.queryIds = new int[capacity];
+        this.sourceIds = new int[capacity];
+    }
+
+    public void add(ClassifiedItem item) {
+        add(item.getIntent(), item.getNormalizedQuery(), item.getSource(), item.getGeoCell());
+    }
+
+    public void add(Intent intent, String normalizedQuery, String source, long geoCell) {
+        if (size == intents.length) {
+            int capacity = size + (size >> 1);
+            intents = Arrays.copyOf(intents, capacity);
+            queryIds = Arrays.copyOf(queryIds, capacity);
+            sourceIds = Arrays.copyOf(sourceIds, capacity);
+        }
+        intents[size] = (byte) intent.ordinal();
+        queryIds[size] = StringUtils.isBlank(normalizedQuery) ? NO_QUERY : queries.idOf(normalizedQuery);
+        sourceIds[size] = sources.idOf(source);
+        size++;
+        if (geoCell != GeoUtil.NO_CELL) {
+            cells.add(geoCell);
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public Intent intent(int index) {
+        return INTENTS[intents[index]];
+    }
+
+    /**
+     * @return номер запроса в словаре пакета или NO_QUERY
+     */
+    public int queryId(int index) {
+        return queryIds[index];
+    }
+
+    public int sourceId(int index) {
+        return sourceIds[index];
+    }
+
+    public String query(int queryId) {
+        return queries.value(queryId);
+    }
+
+    public String source(int sourceId) {
+        return sources.value(sourceId);
+    }
+
+    public int distinctQueries() {
+        return queries.size();
+    }
+
+    public int distinctSources() {
+        return sources.size();
+    }
+
+    /**
+     * Число COORDS-запросов по ячейкам geohash.
+     */
+    public LongCountMap cellCounts() {
+        return cells;
+    }
+
+    private static final class Dictionary {
+        private final Map<String, Integer> ids = new HashMap<>();
+
+        private final List<String> values = new ArrayList<>();
+
+        private int idOf(String value) {
+            Integer id = ids.get(value);
+            if (id == null) {
+                id = values.size();
+                ids.put(value, id);
+                values.add(value);
+            }
+            return id;
+        }
+
+        private String value(int id) {
+            return values.get(id);
+        }
+
+        private int size() {
+            return values.size();
+        }
+    }
+}
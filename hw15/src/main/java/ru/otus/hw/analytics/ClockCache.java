@@ -0,0 +1,131 @@
+package ru.otus.hw.analytics;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * Ограниченный конкурентный кэш с вытеснением CLOCK (second chance): попадание - чтение из ConcurrentHashMap
+ * и установка бита обращения, без блокировок и перестановок, как у LRU на LinkedHashMap. Блокировка берется
+ * только при вставке после промаха: стрелка обходит кольцо записей, сбрасывая биты, и вытесняет первую
+ * запись без обращений с прошлого обхода. Значение при промахе вычисляется вне блокировки, поэтому
+ * loader должен быть чистой функцией - при гонке он может быть вызван для ключа дважды.
+ */
+public class ClockCache<K, V> {
+
+    private final Map<K, Entry<K, V>> map;
+
+    private final Entry<K, V>[] ring;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    private final LongAdder evictions = new LongAdder();
+
+    private int size;
+
+    private int hand;
+
+    @SuppressWarnings("unchecked")
+    public ClockCache(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        }
+        this.map = new ConcurrentHashMap<>(capacity * 4 / 3 + 1);
+        this.ring = (Entry<K, V>[]) new Entry[capacity];
+    }
+
+    public V get(K key, Function<? super K, ? extends V> loader) {
+        Entry<K, V> entry = map.get(key);
+        if (entry != null) {
+            if (!entry.referenced) {
+                entry.referenced = true;
+            }
+            hits.increment();
+            return entry.value;
+        }
+        misses.increment();
+        V value = loader.apply(key);
+        put(key, value);
+        return value;
+    }
+
+    private void put(K key, V value) {
+        lock.lock();
+        try {
+            if (map.containsKey(key)) {
+                return;
+            }
+            int slot;
+            if (size < ring.length) {
+                slot = size++;
+            } else {
+                slot = evict();
+            }
+            Entry<K, V> entry = new Entry<>(key, value);
+            ring[slot] = entry;
+            map.put(key, entry);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Вызывается под блокировкой, возвращает освобожденную ячейку кольца.
+     */
+    private int evict() {
+        while (true) {
+            Entry<K, V> candidate = ring[hand];
+            int slot = hand;
+            hand = hand + 1 == ring.length ? 0 : hand + 1;
+            if (candidate.referenced) {
+                candidate.referenced = false;
+            } else {
+                map.remove(candidate.key);
+                evictions.increment();
+                return slot;
+            }
+        }
+    }
+
+    public int capacity() {
+        return ring.length;
+    }
+
+    public long size() {
+        return map.size();
+    }
+
+    public long hitCount() {
+        return hits.sum();
+    }
+
+    public long missCount() {
+        return misses.sum();
+    }
+
+    public long evictionCount() {
+        return evictions.sum();
+    }
+
+    private static final class Entry<K, V> {
+        private final K key;
+
+        private final V value;
+
+        /**
+         * Гонки при записи бита безвредны: в худшем случае запись переживет лишний обход стрелки.
+         */
+        private volatile boolean referenced;
+
+        private Entry(K key, V value) {
+            this.key = key;
+            this.value = value;
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package ru.otus.hw.analytics;
+
+import java.util.Arrays;
+
+/**
+ * Count-Min sketch: оценка частоты сверху с ошибкой не больше epsilon * N с вероятностью 1 - delta.
+ */
+public class CountMinSketch {
+
+    private final int width;
+
+    private final int depth;
+
+    private final long[] table;
+
+    public CountMinSketch(double epsilon, double delta) {
+        if (epsilon <= 0 || epsilon >= 1 || delta <= 0 || delta >= 1) {
+            throw new IllegalArgumentException("epsilon and delta must be in (0, 1): " + epsilon + ", " + delta);
+        }
+        this.width = (int) Math.ceil(Math.E / epsilon);
+        this.depth = (int) Math.ceil(Math.log(1 / delta));
+        this.table = new long[width * depth];
+    }
+
+    public void add(String key, long count) {
+        int h1 = key.hashCode();
+        int h2 = mix(h1);
+        for (int row = 0; row < depth; row++) {
+            table[row * width + bucket(h1, h2, row)] += count;
+        }
+    }
+
+    public long estimate(String key) {
+        int h1 = key.hashCode();
+        int h2 = mix(h1);
+        long min = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            min = Math.min(min, table[row * width + bucket(h1, h2, row)]);
+        }
+        return min;
+    }
+
+    public void clear() {
+        Arrays.fill(table, 0);
+    }
+
+    private int bucket(int h1, int h2, int row) {
+        // двойное хеширование Кирша-Митценмахера: h_i = h1 + i * h2
+        return Math.floorMod(h1 + row * h2, width);
+    }
+
+    private static int mix(int h) {
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h | 1;
+    }
+}
@@ -0,0 +1,208 @@
+package ru.otus.hw.analytics;
+
+import ru.otus.hw.domain.TrendingQuery;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Space-Saving с экспоненциальным затуханием: вклад запроса через halfLife весит вдвое меньше.
+ * Затухание прямое (forward decay): вклад в момент t хранится умноженным на 2^((t - landmark) / halfLife),
+ * а при чтении делится на тот же множитель для текущего момента. Поэтому хранимые веса не пересчитываются
+ * со временем и порядок кучи не меняется; когда множитель становится слишком большим, все веса
+ * делятся на него и landmark переносится. Как и в SpaceSavingTopKTracker, оценка завышена не больше,
+ * чем на затухший вес вытесненного счетчика (error). Не потокобезопасен.
+ */
+public class DecayedTopKTracker {
+
+    /**
+     * Порог множителя для переноса landmark; до переполнения double остается запас в ~10^200.
+     */
+    private static final double MAX_SCALE = 1e100;
+
+    private final Counter[] heap;
+
+    private final Map<String, Counter> counters;
+
+    private final double halfLifeMillis;
+
+    private long landmark;
+
+    private int size;
+
+    public DecayedTopKTracker(int capacity, long halfLifeMillis, long landmark) {
+        if (capacity <= 0 || halfLifeMillis <= 0) {
+            throw new IllegalArgumentException("capacity and halfLife must be positive: "
+                    + capacity + ", " + halfLifeMillis);
+        }
+        this.heap = new Counter[capacity];
+        this.counters = new HashMap<>(capacity * 2);
+        this.halfLifeMillis = halfLifeMillis;
+        this.landmark = landmark;
+    }
+
+    /**
+     * Учитывает count обращений к key в момент now.
+     */
+    public void add(String key, double count, long now) {
+        add(key, count, 0, now);
+    }
+
+    /**
+     * Восстанавливает счетчик из снимка: score и error - затухшие значения на момент now.
+     */
+    public void restore(String key, double score, double error, long now) {
+        add(key, score, error, now);
+    }
+
+    /**
+     * Не более k ключей по убыванию затухшего веса на момент now.
+     */
+    public List<TrendingQuery> top(int k, long now) {
+        double scale = scale(now);
+        return Arrays.stream(heap, 0, size)
+                .sorted(Comparator.comparingDouble((Counter c) -> c.weight).reversed())
+                .limit(k)
+                .map(c -> new TrendingQuery(c.key, c.weight / scale))
+                .toList();
+    }
+
+    /**
+     * Все счетчики с затухшими на момент now весом и ошибкой - для снимка.
+     */
+    public List<Entry> entries(long now) {
+        double scale = scale(now);
+        List<Entry> entries = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            entries.add(new Entry(heap[i].key, heap[i].weight / scale, heap[i].error / scale));
+        }
+        return entries;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private void add(String key, double count, double error, long now) {
+        double scale = scale(now);
+        if (scale > MAX_SCALE) {
+            rescale(scale, now);
+            scale = 1;
+        }
+        double weight = count * scale;
+        Counter counter = counters.get(key);
+        if (counter != null) {
+            counter.weight += weight;
+            counter.error += error * scale;
+            siftDown(counter.pos);
+        } else if (size < heap.length) {
+            counter = new Counter();
+            counter.key = key;
+            counter.weight = weight;
+            counter.error = error * scale;
+            counter.pos = size;
+            heap[size++] = counter;
+            counters.put(key, counter);
+            siftUp(counter.pos);
+        } else {
+            Counter min = heap[0];
+            counters.remove(min.key);
+            min.key = key;
+            min.error = min.weight + error * scale;
+            min.weight += weight;
+            counters.put(key, min);
+            siftDown(0);
+        }
+    }
+
+    private double scale(long now) {
+        return Math.pow(2, (now - landmark) / halfLifeMillis);
+    }
+
+    private void rescale(double scale, long now) {
+        for (int i = 0; i < size; i++) {
+            heap[i].weight /= scale;
+            heap[i].error /= scale;
+        }
+        landmark = now;
+    }
+
+    private void siftUp(int pos) {
+        Counter c = heap[pos];
+        while (pos > 0) {
+            int parent = (pos - 1) >>> 1;
+            if (heap[parent].weight <= c.weight) {
+                break;
+            }
+            place(heap[parent], pos);
+            pos = parent;
+        }
+        place(c, pos);
+    }
+
+    private void siftDown(int pos) {
+        Counter c = heap[pos];
+        int half = size >>> 1;
+        while (pos < half) {
+            int child = 2 * pos + 1;
+            int right = child + 1;
+            if (right < size && heap[right].weight < heap[child].weight) {
+                child = right;
+            }
+            if (c.weight <= heap[child].weight) {
+                break;
+            }
+            place(heap[child], pos);
+            pos = child;
+        }
+        place(c, pos);
+    }
+
+    private void place(Counter c, int pos) {
+        heap[pos] = c;
+        c.pos = pos;
+    }
+
+    /**
+     * Счетчик в снимке: вес и ошибка уже затухли на момент снимка.
+     */
+    public static final class Entry {
+        private final String key;
+
+        private final double score;
+
+        private final double error;
+
+        public Entry(String key, double score, double error) {
+            this.key = key;
+            this.score = score;
+            this.error = error;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public double getScore() {
+            return score;
+        }
+
+        public double getError() {
+            return error;
+        }
+    }
+
+    private static final class Counter {
+        private String key;
+
+        private double weight;
+
+        private double error;
+
+        private int pos;
+    }
+}
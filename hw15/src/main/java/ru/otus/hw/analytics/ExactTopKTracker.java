@@ -0,0 +1,54 @@
+package ru.otus.hw.analytics;
+
+import org.apache.commons.lang3.mutable.MutableLong;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.function.ObjLongConsumer;
+
+/**
+ * Точный подсчет: хранит все различные ключи, подходит для небольших пакетов.
+ */
+public class ExactTopKTracker implements TopKTracker {
+
+    private final Map<String, MutableLong> counts = new HashMap<>();
+
+    @Override
+    public void add(String key, long count) {
+        counts.computeIfAbsent(key, k -> new MutableLong()).add(count);
+    }
+
+    @Override
+    public List<String> top(int k) {
+        PriorityQueue<Map.Entry<String, MutableLong>> top =
+                new PriorityQueue<>((a, b) -> Long.compare(a.getValue().longValue(), b.getValue().longValue()));
+        for (Map.Entry<String, MutableLong> e : counts.entrySet()) {
+            if (top.size() < k) {
+                top.add(e);
+            } else if (k > 0 && e.getValue().longValue() > top.peek().getValue().longValue()) {
+                top.poll();
+                top.add(e);
+            }
+        }
+        List<String> result = new ArrayList<>(top.size());
+        while (!top.isEmpty()) {
+            result.add(top.poll().getKey());
+        }
+        Collections.reverse(result);
+        return result;
+    }
+
+    @Override
+    public void forEachEntry(ObjLongConsumer<String> consumer) {
+        counts.forEach((key, count) -> consumer.accept(key, count.longValue()));
+    }
+
+    @Override
+    public void clear() {
+        counts.clear();
+    }
+}
@@ -0,0 +1,168 @@
+package ru.otus.hw.analytics;
+
+import java.util.Arrays;
+
+/**
+ * Счетчики по ключам long с открытой адресацией на двух массивах: без упаковки ключей в Long и без
+ * объекта на запись. Ключ Long.MIN_VALUE зарезервирован под пустую ячейку. Не потокобезопасен.
+ */
+public class LongCountMap {
+
+    private static final long EMPTY = Long.MIN_VALUE;
+
+    private static final int MIN_CAPACITY = 16;
+
+    private long[] keys;
+
+    private long[] counts;
+
+    private int size;
+
+    public LongCountMap() {
+        this(MIN_CAPACITY);
+    }
+
+    public LongCountMap(int expectedSize) {
+        allocate(Integer.highestOneBit(Math.max(MIN_CAPACITY, expectedSize * 2 - 1)) << 1);
+    }
+
+    public void add(long key, long count) {
+        if (key == EMPTY) {
+            throw new IllegalArgumentException("Key is reserved: " + key);
+        }
+        int slot = slot(keys, key);
+        if (keys[slot] == EMPTY) {
+            keys[slot] = key;
+            if (++size * 2 > keys.length) {
+                counts[slot] = count;
+                resize();
+                return;
+            }
+        }
+        counts[slot] += count;
+    }
+
+    public void add(long key) {
+        add(key, 1);
+    }
+
+    public long get(long key) {
+        int slot = slot(keys, key);
+        return keys[slot] == EMPTY ? 0 : counts[slot];
+    }
+
+    public void merge(LongCountMap other) {
+        for (int i = 0; i < other.keys.length; i++) {
+            if (other.keys[i] != EMPTY) {
+                add(other.keys[i], other.counts[i]);
+            }
+        }
+    }
+
+    /**
+     * Ключи с наибольшими счетчиками по убыванию, не более k штук. Выбор идет кучей размера k прямо по массивам.
+     */
+    public long[] top(int k) {
+        int n = Math.min(k, size);
+        int[] heap = new int[n];
+        int heapSize = 0;
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (keys[slot] == EMPTY) {
+                continue;
+            }
+            if (heapSize < n) {
+                heap[heapSize] = slot;
+                siftUp(heap, heapSize++);
+            } else if (n > 0 && counts[slot] > counts[heap[0]]) {
+                heap[0] = slot;
+                siftDown(heap, heapSize);
+            }
+        }
+        long[] top = new long[heapSize];
+        while (heapSize > 0) {
+            top[--heapSize] = keys[heap[0]];
+            heap[0] = heap[heapSize];
+            siftDown(heap, heapSize);
+        }
+        return top;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        Arrays.fill(keys, EMPTY);
+        Arrays.fill(counts, 0);
+        size = 0;
+    }
+
+    private void siftUp(int[] heap, int i) {
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (counts[heap[parent]] <= counts[heap[i]]) {
+                return;
+            }
+            swap(heap, i, parent);
+            i = parent;
+        }
+    }
+
+    private void siftDown(int[] heap, int heapSize) {
+        int i = 0;
+        while (true) {
+            int smallest = i;
+            int left = 2 * i + 1;
+            int right = left + 1;
+            if (left < heapSize && counts[heap[left]] < counts[heap[smallest]]) {
+                smallest = left;
+            }
+            if (right < heapSize && counts[heap[right]] < counts[heap[smallest]]) {
+                smallest = right;
+            }
+            if (smallest == i) {
+                return;
+            }
+            swap(heap, i, smallest);
+            i = smallest;
+        }
+    }
+
+    private static void swap(int[] heap, int i, int j) {
+        int tmp = heap[i];
+        heap[i] = heap[j];
+        heap[j] = tmp;
+    }
+
+    private void resize() {
+        long[] oldKeys = keys;
+        long[] oldCounts = counts;
+        allocate(oldKeys.length * 2);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                int slot = slot(keys, oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                counts[slot] = oldCounts[i];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        counts = new long[capacity];
+        Arrays.fill(keys, EMPTY);
+    }
+
+    /**
+     * Ячейка ключа или первая пустая ячейка на его пути (линейное пробирование).
+     */
+    private static int slot(long[] keys, long key) {
+        int mask = keys.length - 1;
+        long hash = key * 0x9E3779B97F4A7C15L;
+        int slot = (int) (hash ^ hash >>> 32) & mask;
+        while (keys[slot] != EMPTY && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+}
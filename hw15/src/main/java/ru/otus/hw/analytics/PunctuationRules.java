@@ -0,0 +1,13 @@
+package ru.otus.hw.analytics;
+
+public enum PunctuationRules {
+    /**
+     * Как у регулярных выражений \p{Punct} и \s: только ASCII-пунктуация и ASCII-пробелы.
+     */
+    ASCII,
+    /**
+     * Дополнительно удаляет пунктуацию Unicode (кавычки-елочки, тире, многоточие и т.п.)
+     * и считает пробелами все пробельные символы Unicode, включая неразрывный пробел.
+     */
+    UNICODE
+}
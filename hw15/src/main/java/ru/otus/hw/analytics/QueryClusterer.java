@@ -0,0 +1,267 @@
+package ru.otus.hw.analytics;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Схлопывание почти одинаковых нормализованных запросов в канонический ключ до подсчета.
+ * Сначала запрос сводится к сигнатуре - словам в отсортированном порядке, так что "museum pushkin"
+ * и "pushkin museum" совпадают точно. Для опечаток ("pushkin musem") по символьным триграммам сигнатуры
+ * считается MinHash из bands * rows значений, и кандидаты ищутся LSH-корзинами полос. Кандидат принимается,
+ * если точное сходство Жаккара триграмм не меньше threshold и слова с цифрами у них совпадают: номера домов,
+ * годы и модели ("iphone 14" и "iphone 15") опечатками не считаются. Канонический ключ - первый увиденный
+ * запрос кластера, поэтому он зависит от порядка поступления.
+ * Индекс ограничен capacity сигнатурами и вытесняет самые старые (FIFO). Хеши считаются вне блокировки,
+ * под ней - только поиск по HashMap и вставка.
+ */
+public class QueryClusterer {
+
+    private static final int SHINGLE = 3;
+
+    private static final long GOLDEN = 0x9E3779B97F4A7C15L;
+
+    private final int capacity;
+
+    private final int bands;
+
+    private final int rows;
+
+    private final double threshold;
+
+    private final Map<String, Cluster> bySignature = new HashMap<>();
+
+    private final Map<Long, Cluster> buckets = new HashMap<>();
+
+    /**
+     * Сигнатуры в порядке вставки для вытеснения.
+     */
+    private final ArrayDeque<String> order = new ArrayDeque<>();
+
+    private final AtomicLong merges = new AtomicLong();
+
+    public QueryClusterer(int capacity, int bands, int rows, double threshold) {
+        if (capacity <= 0 || bands <= 0 || rows <= 0) {
+            throw new IllegalArgumentException("capacity, bands and rows must be positive: "
+                    + capacity + ", " + bands + ", " + rows);
+        }
+        if (threshold <= 0 || threshold > 1) {
+            throw new IllegalArgumentException("threshold must be in (0, 1]: " + threshold);
+        }
+        this.capacity = capacity;
+        this.bands = bands;
+        this.rows = rows;
+        this.threshold = threshold;
+    }
+
+    /**
+     * @param query нормализованный запрос: нижний регистр, слова через один пробел
+     * @return канонический запрос кластера или сам запрос, если он открыл новый кластер
+     */
+    public String canonical(String query) {
+        if (query == null || query.isEmpty()) {
+            return query;
+        }
+        String signature = signature(query);
+        synchronized (this) {
+            Cluster known = bySignature.get(signature);
+            if (known != null) {
+                return known.canonical;
+            }
+        }
+        String numbers = numbers(signature);
+        long[] shingles = shingles(signature);
+        long[] bandKeys = bandKeys(shingles);
+        synchronized (this) {
+            Cluster known = bySignature.get(signature);
+            if (known != null) {
+                return known.canonical;
+            }
+            Cluster match = bestMatch(numbers, shingles, bandKeys);
+            if (match != null) {
+                merges.incrementAndGet();
+                add(signature, match);
+                return match.canonical;
+            }
+            Cluster cluster = new Cluster(query, signature, numbers, shingles, bandKeys);
+            for (long key : bandKeys) {
+                buckets.putIfAbsent(key, cluster);
+            }
+            add(signature, cluster);
+            return query;
+        }
+    }
+
+    /**
+     * Сигнатуры в индексе, включая присоединенные к чужим кластерам.
+     */
+    public synchronized int size() {
+        return bySignature.size();
+    }
+
+    /**
+     * Запросы, присоединенные к существующему кластеру по сходству, а не по совпадению сигнатуры.
+     */
+    public long merges() {
+        return merges.get();
+    }
+
+    private Cluster bestMatch(String numbers, long[] shingles, long[] bandKeys) {
+        Cluster best = null;
+        double bestSimilarity = threshold;
+        for (long key : bandKeys) {
+            Cluster candidate = buckets.get(key);
+            if (candidate == null || candidate == best || !candidate.numbers.equals(numbers)) {
+                continue;
+            }
+            double similarity = jaccard(shingles, candidate.shingles);
+            if (similarity >= bestSimilarity) {
+                best = candidate;
+                bestSimilarity = similarity;
+            }
+        }
+        return best;
+    }
+
+    private void add(String signature, Cluster cluster) {
+        if (order.size() >= capacity) {
+            evict(order.poll());
+        }
+        bySignature.put(signature, cluster);
+        order.add(signature);
+    }
+
+    private void evict(String signature) {
+        Cluster cluster = bySignature.remove(signature);
+        if (cluster != null && cluster.signature.equals(signature)) {
+            for (long key : cluster.bandKeys) {
+                buckets.remove(key, cluster);
+            }
+        }
+    }
+
+    private long[] bandKeys(long[] shingles) {
+        long[] keys = new long[bands];
+        for (int band = 0; band < bands; band++) {
+            long key = band;
+            for (int row = 0; row < rows; row++) {
+                long seed = GOLDEN * (band * rows + row + 1);
+                long min = Long.MAX_VALUE;
+                for (long shingle : shingles) {
+                    min = Math.min(min, mix(shingle ^ seed));
+                }
+                key = mix(key * 31 + min);
+            }
+            keys[band] = key;
+        }
+        return keys;
+    }
+
+    /**
+     * Слова в отсортированном порядке; запрос из одного слова возвращается как есть.
+     */
+    static String signature(String query) {
+        if (query.indexOf(' ') < 0) {
+            return query;
+        }
+        String[] words = query.split(" ");
+        Arrays.sort(words);
+        return String.join(" ", words);
+    }
+
+    /**
+     * Слова сигнатуры, содержащие цифры, каждое с пробелом в конце; пустая строка, если таких нет.
+     */
+    static String numbers(String signature) {
+        StringBuilder sb = new StringBuilder();
+        int start = 0;
+        boolean digit = false;
+        for (int i = 0; i <= signature.length(); i++) {
+            if (i == signature.length() || signature.charAt(i) == ' ') {
+                if (digit) {
+                    sb.append(signature, start, i).append(' ');
+                }
+                start = i + 1;
+                digit = false;
+            } else {
+                digit |= Character.isDigit(signature.charAt(i));
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Отсортированные различные хеши символьных триграмм; строка короче триграммы - одна "триграмма".
+     */
+    static long[] shingles(String s) {
+        int count = Math.max(1, s.length() - SHINGLE + 1);
+        long[] result = new long[count];
+        for (int i = 0; i < count; i++) {
+            long h = 0;
+            for (int j = i; j < Math.min(s.length(), i + SHINGLE); j++) {
+                h = h * 65_599 + s.charAt(j);
+            }
+            result[i] = mix(h);
+        }
+        Arrays.sort(result);
+        int n = 0;
+        for (int i = 0; i < result.length; i++) {
+            if (n == 0 || result[i] != result[n - 1]) {
+                result[n++] = result[i];
+            }
+        }
+        return n == result.length ? result : Arrays.copyOf(result, n);
+    }
+
+    /**
+     * Сходство Жаккара двух отсортированных множеств слиянием.
+     */
+    static double jaccard(long[] a, long[] b) {
+        int i = 0;
+        int j = 0;
+        int common = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] == b[j]) {
+                common++;
+                i++;
+                j++;
+            } else if (a[i] < b[j]) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        return (double) common / (a.length + b.length - common);
+    }
+
+    /**
+     * Финализатор SplitMix64.
+     */
+    private static long mix(long h) {
+        h = (h ^ (h >>> 30)) * 0xBF58476D1CE4E5B9L;
+        h = (h ^ (h >>> 27)) * 0x94D049BB133111EBL;
+        return h ^ (h >>> 31);
+    }
+
+    private static final class Cluster {
+        private final String canonical;
+
+        private final String signature;
+
+        private final String numbers;
+
+        private final long[] shingles;
+
+        private final long[] bandKeys;
+
+        private Cluster(String canonical, String signature, String numbers, long[] shingles, long[] bandKeys) {
+            this.canonical = canonical;
+            this.signature = signature;
+            this.numbers = numbers;
+            this.shingles = shingles;
+            this.bandKeys = bandKeys;
+        }
+    }
+}
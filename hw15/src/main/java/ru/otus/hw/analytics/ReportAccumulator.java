@@ -0,0 +1,199 @@
+package ru.otus.hw.analytics;
+
+import org.apache.commons.lang3.StringUtils;
+import ru.otus.hw.domain.AnalyticsReport;
+import ru.otus.hw.domain.ClassifiedItem;
+import ru.otus.hw.domain.Intent;
+import ru.otus.hw.domain.SourceReport;
+import ru.otus.hw.util.GeoUtil;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.ObjLongConsumer;
+import java.util.function.Supplier;
+
+/**
+ * Накопитель счетчиков для отчета: счетчики по Intent и TopKTracker для запросов, общие и по источникам,
+ * и число COORDS-запросов по ячейкам geohash. Разбивка по источникам считается в том же проходе по элементам.
+ * Не потокобезопасен.
+ */
+public class ReportAccumulator {
+
+    /**
+     * Источник для элементов без source.
+     */
+    public static final String UNKNOWN_SOURCE = "unknown";
+
+    private static final Intent[] INTENTS = Intent.values();
+
+    private final Supplier<TopKTracker> trackers;
+
+    private final Counts total;
+
+    private final Map<String, Counts> sources = new HashMap<>();
+
+    private final LongCountMap cells = new LongCountMap();
+
+    /**
+     * @param trackers создает TopKTracker для общего топа и для топа каждого источника
+     */
+    public ReportAccumulator(Supplier<TopKTracker> trackers) {
+        this.trackers = trackers;
+        this.total = new Counts(trackers.get());
+    }
+
+    public void add(ClassifiedItem item) {
+        int intent = item.getIntent().ordinal();
+        String query = StringUtils.isNotBlank(item.getNormalizedQuery()) ? item.getNormalizedQuery() : null;
+        total.add(intent, query, 1);
+        source(item.getSource()).add(intent, query, 1);
+        if (item.getGeoCell() != GeoUtil.NO_CELL) {
+            cells.add(item.getGeoCell());
+        }
+    }
+
+    /**
+     * Учитывает колоночный пакет целиком: в TopKTracker попадает по одному вызову на различный запрос.
+     * Элементы группируются по номеру источника сортировкой подсчетом, поэтому разбивка по источникам
+     * обходится без хэширования на каждый элемент.
+     */
+    public void add(ClassifiedBatch batch) {
+        int size = batch.size();
+        int[] sourceStart = new int[batch.distinctSources() + 1];
+        for (int i = 0; i < size; i++) {
+            sourceStart[batch.sourceId(i) + 1]++;
+        }
+        for (int s = 1; s < sourceStart.length; s++) {
+            sourceStart[s] += sourceStart[s - 1];
+        }
+        int[] order = new int[size];
+        int[] next = Arrays.copyOf(sourceStart, sourceStart.length - 1);
+        for (int i = 0; i < size; i++) {
+            order[next[batch.sourceId(i)]++] = i;
+        }
+        long[] totalIntents = new long[INTENTS.length];
+        int[] totalQueries = new int[batch.distinctQueries()];
+        int[] sourceQueries = new int[batch.distinctQueries()];
+        for (int s = 0; s < sourceStart.length - 1; s++) {
+            long[] intents = new long[INTENTS.length];
+            for (int k = sourceStart[s]; k < sourceStart[s + 1]; k++) {
+                int i = order[k];
+                intents[batch.intent(i).ordinal()]++;
+                int queryId = batch.queryId(i);
+                if (queryId != ClassifiedBatch.NO_QUERY) {
+                    sourceQueries[queryId]++;
+                }
+            }
+            Counts source = source(batch.source(s));
+            for (int intent = 0; intent < intents.length; intent++) {
+                source.add(intent, null, intents[intent]);
+                totalIntents[intent] += intents[intent];
+            }
+            for (int queryId = 0; queryId < sourceQueries.length; queryId++) {
+                if (sourceQueries[queryId] > 0) {
+                    source.queries.add(batch.query(queryId), sourceQueries[queryId]);
+                    totalQueries[queryId] += sourceQueries[queryId];
+                    sourceQueries[queryId] = 0;
+                }
+            }
+        }
+        for (int intent = 0; intent < totalIntents.length; intent++) {
+            total.add(intent, null, totalIntents[intent]);
+        }
+        for (int queryId = 0; queryId < totalQueries.length; queryId++) {
+            total.queries.add(batch.query(queryId), totalQueries[queryId]);
+        }
+        cells.merge(batch.cellCounts());
+    }
+
+    public void merge(ReportAccumulator other) {
+        total.merge(other.total);
+        other.sources.forEach((source, counts) -> source(source).merge(counts));
+        cells.merge(other.cells);
+    }
+
+    /**
+     * Запросы общего топа с их (оценкой) частотой.
+     */
+    public void forEachQuery(ObjLongConsumer<String> consumer) {
+        total.queries.forEachEntry(consumer);
+    }
+
+    public long getTotal() {
+        return total.items;
+    }
+
+    public boolean isEmpty() {
+        return total.items == 0;
+    }
+
+    public void clear() {
+        total.clear();
+        sources.clear();
+        cells.clear();
+    }
+
+    public AnalyticsReport toReport(int topQueriesLimit) {
+        Map<String, SourceReport> bySource = new TreeMap<>();
+        sources.forEach((source, counts) -> bySource.put(source,
+                new SourceReport(counts.intentCounts(), counts.queries.top(topQueriesLimit))));
+        Map<String, Long> hotSpots = new LinkedHashMap<>();
+        for (long cell : cells.top(topQueriesLimit)) {
+            hotSpots.put(GeoUtil.geohashString(cell), cells.get(cell));
+        }
+        return new AnalyticsReport(total.intentCounts(), total.queries.top(topQueriesLimit), bySource, hotSpots);
+    }
+
+    private Counts source(String source) {
+        String key = StringUtils.isNotBlank(source) ? source : UNKNOWN_SOURCE;
+        return sources.computeIfAbsent(key, k -> new Counts(trackers.get()));
+    }
+
+    private static final class Counts {
+        private final long[] intentCounts = new long[INTENTS.length];
+
+        private final TopKTracker queries;
+
+        private long items;
+
+        private Counts(TopKTracker queries) {
+            this.queries = queries;
+        }
+
+        private void add(int intent, String query, long count) {
+            intentCounts[intent] += count;
+            items += count;
+            if (query != null) {
+                queries.add(query, count);
+            }
+        }
+
+        private void merge(Counts other) {
+            for (int i = 0; i < intentCounts.length; i++) {
+                intentCounts[i] += other.intentCounts[i];
+            }
+            items += other.items;
+            queries.merge(other.queries);
+        }
+
+        private void clear() {
+            Arrays.fill(intentCounts, 0);
+            queries.clear();
+            items = 0;
+        }
+
+        private Map<Intent, Long> intentCounts() {
+            Map<Intent, Long> counts = new EnumMap<>(Intent.class);
+            for (Intent intent : INTENTS) {
+                if (intentCounts[intent.ordinal()] > 0) {
+                    counts.put(intent, intentCounts[intent.ordinal()]);
+                }
+            }
+            return counts;
+        }
+    }
+}
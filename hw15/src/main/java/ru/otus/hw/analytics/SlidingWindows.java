@@ -0,0 +1,136 @@
+package ru.otus.hw.analytics;
+
+import ru.otus.hw.domain.AnalyticsReport;
+import ru.otus.hw.domain.ClassifiedItem;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Скользящие (или, при size == slide, неперекрывающиеся) окна по времени обработки.
+ * Окно складывается из сегментов длиной slide, которые лежат в кольцевом буфере и переиспользуются,
+ * а запросы считаются в TopKTracker фиксированного размера, так что объем памяти не зависит от трафика.
+ */
+public class SlidingWindows {
+
+    private final Clock clock;
+
+    private final long sizeMillis;
+
+    private final long slideMillis;
+
+    private final int topQueriesLimit;
+
+    private final Supplier<ReportAccumulator> accumulators;
+
+    private final Pane[] panes;
+
+    private final AtomicLong processed = new AtomicLong();
+
+    private long lastEmittedEnd;
+
+    public SlidingWindows(long sizeMillis, long slideMillis, int topQueriesLimit,
+                          Supplier<ReportAccumulator> accumulators, Clock clock) {
+        if (slideMillis <= 0 || sizeMillis < slideMillis || sizeMillis % slideMillis != 0) {
+            throw new IllegalArgumentException("Window size must be a positive multiple of window slide: size="
+                    + sizeMillis + "ms, slide=" + slideMillis + "ms");
+        }
+        this.clock = clock;
+        this.sizeMillis = sizeMillis;
+        this.slideMillis = slideMillis;
+        this.topQueriesLimit = topQueriesLimit;
+        this.accumulators = accumulators;
+        // +1 сегмент, чтобы новые данные не затирали сегмент еще не отданного окна
+        this.panes = new Pane[(int) (sizeMillis / slideMillis) + 1];
+        for (int i = 0; i < panes.length; i++) {
+            panes[i] = new Pane(accumulators.get());
+        }
+        this.lastEmittedEnd = alignToSlide(clock.millis());
+    }
+
+    public void accept(ClassifiedItem item) {
+        long paneStart = alignToSlide(clock.millis());
+        Pane pane = panes[(int) Math.floorMod(paneStart / slideMillis, (long) panes.length)];
+        synchronized (pane) {
+            if (pane.start != paneStart) {
+                pane.start = paneStart;
+                pane.accumulator.clear();
+            }
+            pane.accumulator.add(item);
+        }
+    }
+
+    /**
+     * Отмечает запрос, дошедший до окон или упавший по дороге; по этому счетчику отдельный поток запросов
+     * узнает, что все отправленное уже учтено.
+     */
+    public void markProcessed() {
+        processed.incrementAndGet();
+    }
+
+    public long getProcessed() {
+        return processed.get();
+    }
+
+    /**
+     * Возвращает отчеты по окнам, закрывшимся с момента предыдущего вызова. Пустые окна пропускаются.
+     */
+    public synchronized List<AnalyticsReport> pollCompletedWindows() {
+        long now = clock.millis();
+        List<AnalyticsReport> reports = new ArrayList<>();
+        for (long end = lastEmittedEnd + slideMillis; end <= now; end += slideMillis) {
+            emit(end, reports);
+        }
+        return reports;
+    }
+
+    /**
+     * Закрытые окна и, если в нем что-то есть, текущее незакрытое окно - для завершения потока запросов.
+     */
+    public synchronized List<AnalyticsReport> flush() {
+        List<AnalyticsReport> reports = pollCompletedWindows();
+        emit(lastEmittedEnd + slideMillis, reports);
+        return reports;
+    }
+
+    private void emit(long end, List<AnalyticsReport> reports) {
+        ReportAccumulator window = collectWindow(end - sizeMillis, end);
+        lastEmittedEnd = end;
+        if (!window.isEmpty()) {
+            AnalyticsReport report = window.toReport(topQueriesLimit);
+            report.setWindowStart(Instant.ofEpochMilli(end - sizeMillis));
+            report.setWindowEnd(Instant.ofEpochMilli(end));
+            reports.add(report);
+        }
+    }
+
+    private ReportAccumulator collectWindow(long start, long end) {
+        ReportAccumulator window = accumulators.get();
+        for (Pane pane : panes) {
+            synchronized (pane) {
+                if (pane.start >= start && pane.start < end) {
+                    window.merge(pane.accumulator);
+                }
+            }
+        }
+        return window;
+    }
+
+    private long alignToSlide(long millis) {
+        return millis - Math.floorMod(millis, slideMillis);
+    }
+
+    private static final class Pane {
+        private final ReportAccumulator accumulator;
+
+        private long start = Long.MIN_VALUE;
+
+        private Pane(ReportAccumulator accumulator) {
+            this.accumulator = accumulator;
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package ru.otus.hw.analytics;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.ObjLongConsumer;
+
+/**
+ * Алгоритм Space-Saving на фиксированном числе счетчиков (min-куча + индекс по ключу).
+ * Оценка частоты завышена не более чем на N / capacity. Если задан Count-Min sketch,
+ * вытесняющий ключ получает меньшую из двух верхних оценок, что уменьшает ошибку для редких ключей.
+ */
+public class SpaceSavingTopKTracker implements TopKTracker {
+
+    private final Counter[] heap;
+
+    private final Map<String, Counter> counters;
+
+    private final CountMinSketch sketch;
+
+    private int size;
+
+    public SpaceSavingTopKTracker(int capacity, CountMinSketch sketch) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        }
+        this.heap = new Counter[capacity];
+        this.counters = new HashMap<>(capacity * 2);
+        this.sketch = sketch;
+    }
+
+    @Override
+    public void add(String key, long count) {
+        if (sketch != null) {
+            sketch.add(key, count);
+        }
+        Counter counter = counters.get(key);
+        if (counter != null) {
+            counter.count += count;
+            siftDown(counter.pos);
+        } else if (size < heap.length) {
+            counter = new Counter();
+            counter.key = key;
+            counter.count = count;
+            counter.pos = size;
+            heap[size++] = counter;
+            counters.put(key, counter);
+            siftUp(counter.pos);
+        } else {
+            replaceMin(key, count);
+        }
+    }
+
+    @Override
+    public List<String> top(int k) {
+        return Arrays.stream(heap, 0, size)
+                .sorted(Comparator.comparingLong((Counter c) -> c.count).reversed())
+                .limit(k)
+                .map(c -> c.key)
+                .toList();
+    }
+
+    @Override
+    public void forEachEntry(ObjLongConsumer<String> consumer) {
+        for (int i = 0; i < size; i++) {
+            consumer.accept(heap[i].key, heap[i].count);
+        }
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(heap, 0, size, null);
+        counters.clear();
+        size = 0;
+        if (sketch != null) {
+            sketch.clear();
+        }
+    }
+
+    /**
+     * Гарантированный нижний предел частоты ключа, 0 если ключ не отслеживается.
+     */
+    public long guaranteedCount(String key) {
+        Counter counter = counters.get(key);
+        return counter == null ? 0 : counter.count - counter.error;
+    }
+
+    private void replaceMin(String key, long count) {
+        Counter min = heap[0];
+        long estimate = min.count + count;
+        if (sketch != null) {
+            estimate = Math.min(estimate, sketch.estimate(key));
+        }
+        counters.remove(min.key);
+        min.key = key;
+        min.count = estimate;
+        min.error = estimate - count;
+        counters.put(key, min);
+        siftDown(0);
+    }
+
+    private void siftUp(int pos) {
+        Counter c = heap[pos];
+        while (pos > 0) {
+            int parent = (pos - 1) >>> 1;
+            if (heap[parent].count <= c.count) {
+                break;
+            }
+            place(heap[parent], pos);
+            pos = parent;
+        }
+        place(c, pos);
+    }
+
+    private void siftDown(int pos) {
+        Counter c = heap[pos];
+        int half = size >>> 1;
+        while (pos < half) {
+            int child = 2 * pos + 1;
+            int right = child + 1;
+            if (right < size && heap[right].count < heap[child].count) {
+                child = right;
+            }
+            if (c.count <= heap[child].count) {
+                break;
+            }
+            place(heap[child], pos);
+            pos = child;
+        }
+        place(c, pos);
+    }
+
+    private void place(Counter c, int pos) {
+        heap[pos] = c;
+        c.pos = pos;
+    }
+
+    private static final class Counter {
+        private String key;
+
+        private long count;
+
+        private long error;
+
+        private int pos;
+    }
+}
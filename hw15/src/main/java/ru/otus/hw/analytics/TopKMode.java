@@ -0,0 +1,5 @@
+package ru.otus.hw.analytics;
+
+public enum TopKMode {
+    EXACT, APPROXIMATE, AUTO
+}
@@ -0,0 +1,30 @@
+package ru.otus.hw.analytics;
+
+import java.util.List;
+import java.util.function.ObjLongConsumer;
+
+/**
+ * Счетчик самых частых запросов. Реализации могут быть точными или приближенными с фиксированной памятью.
+ * Не потокобезопасен.
+ */
+public interface TopKTracker {
+
+    void add(String key, long count);
+
+    default void add(String key) {
+        add(key, 1);
+    }
+
+    /**
+     * Ключи по убыванию (оценки) частоты, не более k штук.
+     */
+    List<String> top(int k);
+
+    void forEachEntry(ObjLongConsumer<String> consumer);
+
+    void clear();
+
+    default void merge(TopKTracker other) {
+        other.forEachEntry(this::add);
+    }
+}
@@ -0,0 +1,44 @@
+package ru.otus.hw.analytics;
+
+import ru.otus.hw.configurations.AnalyticsProperties;
+
+/**
+ * Выбирает реализацию TopKTracker по настройкам app.integration.analytics.top-k.
+ */
+public class TopKTrackerFactory {
+
+    private final AnalyticsProperties.TopK props;
+
+    public TopKTrackerFactory(AnalyticsProperties.TopK props) {
+        this.props = props;
+    }
+
+    /**
+     * Трекер для пакета известного размера: в режиме AUTO маленькие пакеты считаются точно.
+     */
+    public TopKTracker create(long expectedItems) {
+        return switch (props.getMode()) {
+            case EXACT -> new ExactTopKTracker();
+            case APPROXIMATE -> createBounded();
+            case AUTO -> expectedItems <= props.getExactThreshold() ? new ExactTopKTracker() : createBounded();
+        };
+    }
+
+    /**
+     * Трекер с фиксированной памятью независимо от режима - для потоков неограниченной длины.
+     */
+    public TopKTracker createBounded() {
+        int capacity = (int) Math.ceil(1 / props.getEpsilon());
+        CountMinSketch sketch = props.isCountMinSketch()
+                ? new CountMinSketch(props.getEpsilon(), props.getDelta())
+                : null;
+        return new SpaceSavingTopKTracker(capacity, sketch);
+    }
+
+    /**
+     * Трекер на capacity счетчиков без Count-Min sketch - для множества мелких окон.
+     */
+    public TopKTracker createBounded(int capacity) {
+        return new SpaceSavingTopKTracker(capacity, null);
+    }
+}
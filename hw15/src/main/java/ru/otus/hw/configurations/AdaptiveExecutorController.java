@@ -0,0 +1,157 @@
+package ru.otus.hw.configurations;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+
+import java.lang.management.ManagementFactory;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Подстройка integrationFlowTaskExecutor по измеренному ожиданию задач в очереди и загрузке CPU.
+ * За один шаг выполняется не больше одного действия:
+ * <ul>
+ *     <li>GROW - ожидание выше цели, CPU не насыщен: пул растет в 1.5 раза;</li>
+ *     <li>THROTTLE - ожидание выше цели, но CPU насыщен или пул на максимуме: новые потоки не помогут,
+ *     очередь уменьшается вдвое, и CallerRunsPolicy раньше притормаживает отправителей;</li>
+ *     <li>RELAX - ожидание ниже половины цели, но очередь отказывала: очередь растет вдвое;</li>
+ *     <li>SHRINK - ожидание ниже половины цели, отказов нет и занято не больше половины потоков:
+ *     пул уменьшается на четверть.</li>
+ * </ul>
+ * maxPoolSize держится равным удвоенному corePoolSize: потоки сверх core запускаются только при полной очереди.
+ * Все значения остаются в границах из app.integration.executor.adaptive.
+ */
+@Slf4j
+public class AdaptiveExecutorController implements MeterBinder {
+
+    public static final String CORE_SIZE = "analytics.executor.adaptive.core.size";
+
+    public static final String MAX_SIZE = "analytics.executor.adaptive.max.size";
+
+    public static final String QUEUE_CAPACITY = "analytics.executor.adaptive.queue.capacity";
+
+    public static final String QUEUE_WAIT = "analytics.executor.adaptive.queue.wait";
+
+    public static final String CPU = "analytics.executor.adaptive.cpu";
+
+    public static final String ADJUSTMENTS = "analytics.executor.adaptive.adjustments";
+
+    private static final String EXECUTOR = "integrationFlowTaskExecutor";
+
+    public enum Action { GROW, SHRINK, THROTTLE, RELAX }
+
+    private final AdaptiveThreadPoolTaskExecutor executor;
+
+    private final IntegrationProperties.Adaptive props;
+
+    private final DoubleSupplier cpuLoad;
+
+    private final Map<Action, AtomicLong> adjustments = new EnumMap<>(Action.class);
+
+    private volatile double lastQueueWaitMillis;
+
+    private volatile double lastCpuLoad;
+
+    /**
+     * @param cpuLoad загрузка CPU от 0 до 1; отрицательное значение означает, что она неизвестна
+     */
+    public AdaptiveExecutorController(AdaptiveThreadPoolTaskExecutor executor, IntegrationProperties.Adaptive props,
+                                      DoubleSupplier cpuLoad) {
+        this.executor = executor;
+        this.props = props;
+        this.cpuLoad = cpuLoad;
+        for (Action action : Action.values()) {
+            adjustments.put(action, new AtomicLong());
+        }
+    }
+
+    /**
+     * Загрузка CPU всей машины: если она насыщена, новые потоки пула не ускорят обработку.
+     */
+    public static DoubleSupplier systemCpuLoad() {
+        if (ManagementFactory.getOperatingSystemMXBean() instanceof com.sun.management.OperatingSystemMXBean os) {
+            return os::getCpuLoad;
+        }
+        return () -> -1;
+    }
+
+    /**
+     * Шаг подстройки по данным, накопленным исполнителем с прошлого шага.
+     */
+    public void adjust() {
+        adjust(executor.drainQueueWaitMillis(), executor.drainRejected(), cpuLoad.getAsDouble());
+    }
+
+    synchronized Action adjust(double queueWaitMillis, long rejected, double cpu) {
+        lastQueueWaitMillis = queueWaitMillis;
+        lastCpuLoad = cpu;
+        double target = props.getTargetQueueWait().toNanos() / 1e6;
+        int core = executor.getCorePoolSize();
+        int queueLimit = executor.getQueueLimit();
+        Action action = null;
+        if (queueWaitMillis > target) {
+            boolean cpuSaturated = cpu >= props.getCpuHighWatermark();
+            if (!cpuSaturated && core < props.getMaxPoolSize()) {
+                resizePool(Math.min(props.getMaxPoolSize(), core + Math.max(1, core / 2)));
+                action = Action.GROW;
+            } else if (queueLimit > props.getMinQueueCapacity()) {
+                executor.setQueueLimit(Math.max(props.getMinQueueCapacity(), queueLimit / 2));
+                action = Action.THROTTLE;
+            }
+        } else if (queueWaitMillis <= target / 2) {
+            if (rejected > 0 && queueLimit < props.getMaxQueueCapacity()) {
+                executor.setQueueLimit(Math.min(props.getMaxQueueCapacity(), queueLimit * 2));
+                action = Action.RELAX;
+            } else if (rejected == 0 && executor.getActiveCount() <= core / 2 && core > props.getMinPoolSize()) {
+                resizePool(Math.max(props.getMinPoolSize(), core - Math.max(1, core / 4)));
+                action = Action.SHRINK;
+            }
+        }
+        if (action != null) {
+            adjustments.get(action).incrementAndGet();
+            log.debug("Executor {}: queue wait {} ms, cpu {}, rejected {} -> core {}, max {}, queue {}", action,
+                    queueWaitMillis, cpu, rejected, executor.getCorePoolSize(), executor.getMaxPoolSize(),
+                    executor.getQueueLimit());
+        }
+        return action;
+    }
+
+    public long adjustments(Action action) {
+        return adjustments.get(action).get();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder(CORE_SIZE, executor, AdaptiveThreadPoolTaskExecutor::getCorePoolSize)
+                .tag("name", EXECUTOR).register(registry);
+        Gauge.builder(MAX_SIZE, executor, AdaptiveThreadPoolTaskExecutor::getMaxPoolSize)
+                .tag("name", EXECUTOR).register(registry);
+        Gauge.builder(QUEUE_CAPACITY, executor, AdaptiveThreadPoolTaskExecutor::getQueueLimit)
+                .tag("name", EXECUTOR).register(registry);
+        Gauge.builder(QUEUE_WAIT, this, c -> c.lastQueueWaitMillis)
+                .tag("name", EXECUTOR).baseUnit("milliseconds").register(registry);
+        Gauge.builder(CPU, this, c -> c.lastCpuLoad)
+                .tag("name", EXECUTOR).register(registry);
+        adjustments.forEach((action, count) -> FunctionCounter.builder(ADJUSTMENTS, count, AtomicLong::get)
+                .tag("name", EXECUTOR).tag("action", action.name().toLowerCase()).register(registry));
+    }
+
+    /**
+     * Порядок вызовов сохраняет core <= max: ThreadPoolExecutor отвергает промежуточное состояние core > max.
+     */
+    private void resizePool(int core) {
+        int max = Math.max(core, Math.min(props.getMaxPoolSize(), core * 2));
+        if (core > executor.getMaxPoolSize()) {
+            executor.setMaxPoolSize(max);
+            executor.setCorePoolSize(core);
+        } else {
+            executor.setCorePoolSize(core);
+            executor.setMaxPoolSize(max);
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package ru.otus.hw.configurations;
+
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * ThreadPoolTaskExecutor, у которого емкость очереди меняется на ходу и считаются отказы очереди, а с
+ * setMeasureQueueWait(true) для задач измеряется время от постановки в очередь до начала выполнения.
+ * Размеры пула меняются штатными setCorePoolSize/setMaxPoolSize. Обе величины забирает
+ * AdaptiveExecutorController; без него обертка задач не ставится.
+ */
+public class AdaptiveThreadPoolTaskExecutor extends ThreadPoolTaskExecutor {
+
+    private final LongAdder waitNanos = new LongAdder();
+
+    private final LongAdder started = new LongAdder();
+
+    private final LongAdder rejected = new LongAdder();
+
+    private volatile ResizableQueue queue;
+
+    private boolean measureQueueWait;
+
+    /**
+     * Включает замер ожидания задач в очереди; как и setTaskDecorator, действует, если вызван до initialize().
+     */
+    public void setMeasureQueueWait(boolean measureQueueWait) {
+        this.measureQueueWait = measureQueueWait;
+        setTaskDecorator(measureQueueWait ? this::timed : null);
+    }
+
+    private Runnable timed(Runnable task) {
+        long enqueuedAt = System.nanoTime();
+        return () -> {
+            waitNanos.add(System.nanoTime() - enqueuedAt);
+            started.increment();
+            task.run();
+        };
+    }
+
+    @Override
+    public void setRejectedExecutionHandler(RejectedExecutionHandler handler) {
+        super.setRejectedExecutionHandler((task, executor) -> {
+            rejected.increment();
+            handler.rejectedExecution(task, executor);
+        });
+    }
+
+    @Override
+    protected BlockingQueue<Runnable> createQueue(int queueCapacity) {
+        queue = new ResizableQueue(Math.max(1, queueCapacity));
+        return queue;
+    }
+
+    public int getQueueLimit() {
+        return queue == null ? 0 : queue.limit;
+    }
+
+    /**
+     * Новая емкость очереди. Уже стоящие задачи остаются, новые принимаются, пока очередь короче limit.
+     */
+    public void setQueueLimit(int limit) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("Queue limit must be positive: " + limit);
+        }
+        if (queue == null) {
+            throw new IllegalStateException("Executor is not initialized");
+        }
+        queue.limit = limit;
+    }
+
+    /**
+     * Ожидание задачи до передачи в пул (например, в FairTaskExecutor); учитывается в среднем ожидании
+     * вместе с ожиданием в очереди пула.
+     */
+    public void addQueueWait(long nanos) {
+        if (measureQueueWait) {
+            waitNanos.add(nanos);
+        }
+    }
+
+    /**
+     * Среднее ожидание в очереди с прошлого вызова, мс; 0, если задачи не запускались.
+     */
+    public double drainQueueWaitMillis() {
+        long count = started.sumThenReset();
+        long nanos = waitNanos.sumThenReset();
+        return count == 0 ? 0 : (double) nanos / count / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    /**
+     * Число задач, не принятых очередью с прошлого вызова (они ушли в RejectedExecutionHandler).
+     */
+    public long drainRejected() {
+        return rejected.sumThenReset();
+    }
+
+    /**
+     * Очередь без жесткой границы с проверкой limit в offer: ThreadPoolExecutor ставит задачи только через offer.
+     * Проверка длины и вставка не атомарны, поэтому при гонке очередь может превысить limit на число
+     * одновременно отправляющих потоков.
+     */
+    private static final class ResizableQueue extends LinkedBlockingQueue<Runnable> {
+        private volatile int limit;
+
+        private ResizableQueue(int limit) {
+            this.limit = limit;
+        }
+
+        @Override
+        public boolean offer(Runnable task) {
+            return size() < limit && super.offer(task);
+        }
+
+        @Override
+        public int remainingCapacity() {
+            return Math.max(0, limit - size());
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package ru.otus.hw.configurations;
+
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.integration.store.MessageGroupStore;
+import org.springframework.integration.store.SimpleMessageStore;
+import org.springframework.scheduling.TaskScheduler;
+import ru.otus.hw.analytics.TopKTrackerFactory;
+import ru.otus.hw.integration.ColumnarReportAggregator;
+import ru.otus.hw.integration.FileBackedMessageGroupStore;
+import ru.otus.hw.integration.ShardedReportAggregator;
+import ru.otus.hw.services.TrendingQueriesService;
+import ru.otus.hw.services.TrendingQueriesServiceImpl;
+
+import java.time.Clock;
+import java.time.Duration;
+
+@Configuration
+@EnableConfigurationProperties(AnalyticsProperties.class)
+public class AnalyticsConfig {
+
+    @Bean
+    public TopKTrackerFactory topKTrackerFactory(AnalyticsProperties props) {
+        return new TopKTrackerFactory(props.getTopK());
+    }
+
+    /**
+     * Просроченные группы снимает expiredGroupsFlow: их частичные отчеты уходят вызывающим.
+     */
+    @Bean
+    public ShardedReportAggregator shardedReportAggregator(AnalyticsProperties props,
+                                                           IntegrationProperties integrationProps,
+                                                           TopKTrackerFactory topKTrackerFactory,
+                                                           Clock analyticsClock,
+                                                           TrendingQueriesService trendingQueriesService) {
+        var aggregation = props.getAggregation();
+        int shards = aggregation.getShards() > 0 ? aggregation.getShards() : integrationProps.getMaxPoolSize();
+        var aggregator = new ShardedReportAggregator(shards, topKTrackerFactory, props.getTopQueriesLimit(),
+                analyticsClock);
+        aggregator.setBatchListener(trendingQueriesService::merge);
+        return aggregator;
+    }
+
+    @Bean
+    public ColumnarReportAggregator columnarReportAggregator(AnalyticsProperties props,
+                                                             TopKTrackerFactory topKTrackerFactory,
+                                                             Clock analyticsClock,
+                                                             TrendingQueriesService trendingQueriesService) {
+        var aggregator = new ColumnarReportAggregator(topKTrackerFactory, props.getTopQueriesLimit(), analyticsClock);
+        aggregator.setBatchListener(trendingQueriesService::merge);
+        return aggregator;
+    }
+
+    /**
+     * Снимок таблицы пишется по расписанию, только если задан snapshotFile.
+     */
+    @Bean
+    public TrendingQueriesService trendingQueriesService(AnalyticsProperties props, Clock analyticsClock,
+                                                         TaskScheduler taskScheduler) {
+        var service = new TrendingQueriesServiceImpl(props, analyticsClock);
+        var trending = props.getTrending();
+        if (trending.getSnapshotFile() != null) {
+            taskScheduler.scheduleWithFixedDelay(service::snapshot, trending.getSnapshotInterval());
+        }
+        return service;
+    }
+
+    /**
+     * Время ожидания отчета в SearchAnalyticsGateway.process, мс. По умолчанию - три groupTimeout: группа
+     * истекает не позже чем через два groupTimeout, и частичный отчет успевает прийти раньше.
+     */
+    @Bean
+    public Long analyticsReplyTimeout(AnalyticsProperties props) {
+        var aggregation = props.getAggregation();
+        Duration replyTimeout = aggregation.getReplyTimeout() != null
+                ? aggregation.getReplyTimeout()
+                : aggregation.getGroupTimeout().multipliedBy(3);
+        return replyTimeout.toMillis();
+    }
+
+    /**
+     * Хранилища групп агрегаторов вынесены в бины, чтобы число групп было видно в метриках.
+     * У каждого агрегатора свое хранилище: общее хранилище не допускает второй UniqueExpiryCallback.
+     */
+    @Bean
+    public MessageGroupStore aggregatorMessageStore(AnalyticsProperties props) {
+        var store = props.getAggregation().getStore();
+        if (store.getType() == MessageStoreType.FILE) {
+            return new FileBackedMessageGroupStore(store.getDirectory(), store.getCapacity(),
+                    (int) store.getSegmentSize().toBytes());
+        }
+        return new SimpleMessageStore();
+    }
+
+    @Bean
+    public MessageGroupStore chunkMessageStore() {
+        return new SimpleMessageStore();
+    }
+
+    @Bean
+    public Clock analyticsClock() {
+        return Clock.systemUTC();
+    }
+}
@@ -0,0 +1,257 @@
+package ru.otus.hw.configurations;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+import ru.otus.hw.analytics.AggregationMode;
+import ru.otus.hw.analytics.PunctuationRules;
+import ru.otus.hw.analytics.TopKMode;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "app.integration.analytics")
+public class AnalyticsProperties {
+    private int topQueriesLimit = 5;
+
+    /**
+     * Размер чанка для пакетного режима. 0 - каждый запрос идет отдельным сообщением через geo/text подпотоки,
+     * иначе пакет режется на чанки, которые классифицируются целиком в одном потоке.
+     */
+    private int chunkSize = 0;
+
+    /**
+     * Лог "Stage ..." на каждое сообщение. При выключенном логе этапы наблюдаются по метрикам.
+     */
+    private boolean stageLogging = true;
+
+    private Streaming streaming = new Streaming();
+
+    private EventTime eventTime = new EventTime();
+
+    private TopK topK = new TopK();
+
+    private Normalizer normalizer = new Normalizer();
+
+    private Aggregation aggregation = new Aggregation();
+
+    private Geo geo = new Geo();
+
+    private Ingest ingest = new Ingest();
+
+    private Trending trending = new Trending();
+
+    @Data
+    public static class Streaming {
+        /**
+         * Длина окна. Должна быть кратна windowSlide; при равенстве окно становится "tumbling".
+         */
+        private Duration windowSize = Duration.ofMinutes(1);
+
+        private Duration windowSlide = Duration.ofMinutes(1);
+
+        private Duration emitInterval = Duration.ofSeconds(1);
+
+        /**
+         * Отчетов одного вызова ReactiveSearchAnalyticsService.stream, ждущих подписчика; сверх - старые
+         * отбрасываются.
+         */
+        private int streamBufferSize = 64;
+    }
+
+    /**
+     * Поминутные и почасовые отчеты по времени события (SearchRequest.timestamp).
+     */
+    @Data
+    public static class EventTime {
+        /**
+         * Выключено по умолчанию: каждый элемент конвейера учитывается под общей блокировкой сервиса.
+         */
+        private boolean enabled = false;
+
+        /**
+         * Насколько событие может отстать от самого позднего увиденного: watermark = max(timestamp) - lateness.
+         * События из уже закрытых интервалов отбрасываются и считаются в analytics.eventtime.dropped.
+         */
+        private Duration allowedLateness = Duration.ofMinutes(1);
+
+        /**
+         * Если событий нет дольше этого времени обработки, интервалы до конца часа последнего события
+         * отдаются досрочно, чтобы не висели открытыми. Watermark при этом не сдвигается: события, пришедшие
+         * в эти интервалы позже в пределах allowedLateness, отдаются дополнительным отчетом за тот же интервал.
+         */
+        private Duration idleTimeout = Duration.ofMinutes(1);
+
+        private Duration emitInterval = Duration.ofSeconds(1);
+
+        /**
+         * Число счетчиков Space-Saving в топе запросов каждого интервала и каждого источника в нем,
+         * без Count-Min sketch: интервалов и источников много, общие настройки top-k для них слишком велики.
+         */
+        private int queryCapacity = 100;
+    }
+
+    @Data
+    public static class TopK {
+        private TopKMode mode = TopKMode.AUTO;
+
+        /**
+         * В режиме AUTO пакеты не больше этого размера считаются точно.
+         */
+        private int exactThreshold = 10_000;
+
+        /**
+         * Допустимая ошибка частоты в долях от размера пакета; число счетчиков Space-Saving = 1 / epsilon.
+         */
+        private double epsilon = 0.0005;
+
+        /**
+         * Вероятность превышения ошибки для Count-Min sketch.
+         */
+        private double delta = 0.01;
+
+        private boolean countMinSketch = true;
+    }
+
+    @Data
+    public static class Geo {
+        /**
+         * Число символов geohash ячейки для горячих точек COORDS-запросов: 6 - около 1.2 x 0.6 км,
+         * 7 - около 150 x 150 м, 8 - около 38 x 19 м. Не больше GeoUtil.MAX_GEOHASH_PRECISION.
+         */
+        private int precision = 7;
+    }
+
+    @Data
+    public static class Normalizer {
+        private PunctuationRules punctuation = PunctuationRules.ASCII;
+
+        /**
+         * Число различных текстов запросов в кэше классификации, 0 - без кэша. Кэш окупается, только если
+         * большая часть запросов попадает в него (см. cache.gets и QueryClassifierBenchmark).
+         */
+        private int cacheSize = 10_000;
+
+        private Clustering clustering = new Clustering();
+    }
+
+    /**
+     * Схлопывание почти одинаковых текстовых запросов в один ключ отчета (QueryClusterer).
+     */
+    @Data
+    public static class Clustering {
+        private boolean enabled = false;
+
+        /**
+         * Максимум различных запросов в индексе кластеров; самые старые вытесняются.
+         */
+        private int capacity = 10_000;
+
+        /**
+         * Минимальное сходство Жаккара символьных триграмм, при котором запрос присоединяется к кластеру.
+         */
+        private double threshold = 0.6;
+
+        /**
+         * Полосы и строки в полосе MinHash: больше полос - выше шанс найти похожий запрос, больше строк -
+         * меньше ложных кандидатов. Значения по умолчанию находят пару со сходством 0.6 с вероятностью ~0.9.
+         */
+        private int bands = 10;
+
+        private int rows = 3;
+    }
+
+    /**
+     * Таблица "популярно сейчас" по всем обработанным пакетам (TrendingQueriesService).
+     */
+    @Data
+    public static class Trending {
+        /**
+         * Число отслеживаемых запросов; запросы вне таблицы вытесняются по алгоритму Space-Saving.
+         */
+        private int capacity = 1_000;
+
+        /**
+         * Сколько запросов отдает trending().
+         */
+        private int limit = 10;
+
+        /**
+         * Время, за которое вклад обращения уменьшается вдвое.
+         */
+        private Duration halfLife = Duration.ofHours(1);
+
+        /**
+         * Файл снимка счетчиков; не задан - таблица не сохраняется между запусками.
+         */
+        private Path snapshotFile;
+
+        private Duration snapshotInterval = Duration.ofMinutes(1);
+    }
+
+    /**
+     * Загрузка журналов запросов из файлов (FileIngestionService).
+     */
+    @Data
+    public static class Ingest {
+        /**
+         * Сколько запросов читается из файла и отправляется в конвейер одним пакетом.
+         */
+        private int chunkSize = 10_000;
+
+        /**
+         * Размер окна отображения файла в память; самая длинная строка журнала должна в него помещаться.
+         */
+        private DataSize regionSize = DataSize.ofMegabytes(64);
+
+        private Duration progressInterval = Duration.ofSeconds(5);
+    }
+
+    @Data
+    public static class Aggregation {
+        private AggregationMode mode = AggregationMode.STORE;
+
+        /**
+         * Режим SHARDED: число частей групп по correlationId и частичных агрегатов на пакет;
+         * 0 - по maxPoolSize исполнителя интеграции.
+         */
+        private int shards = 0;
+
+        /**
+         * Группа, не заполненная за это время, выпускается частичным отчетом (partial, missingItems).
+         */
+        private Duration groupTimeout = Duration.ofSeconds(10);
+
+        /**
+         * Сколько вызывающий SearchAnalyticsGateway.process ждет отчет, прежде чем получить
+         * MessageTimeoutException. Не задано - три groupTimeout; должно быть больше groupTimeout.
+         */
+        private Duration replyTimeout;
+
+        private Store store = new Store();
+    }
+
+    /**
+     * Хранилище групп агрегатора в режиме STORE.
+     */
+    @Data
+    public static class Store {
+        private MessageStoreType type = MessageStoreType.MEMORY;
+
+        /**
+         * Каталог журналов групп для типа FILE.
+         */
+        private Path directory = Path.of("aggregator-store");
+
+        /**
+         * Максимум элементов во всех группах для типа FILE, 0 - без ограничения.
+         */
+        private int capacity = 0;
+
+        /**
+         * Кусок журнала группы, отображаемый в память за раз; журналы в один кусок переиспользуются.
+         */
+        private DataSize segmentSize = DataSize.ofMegabytes(1);
+    }
+}
@@ -0,0 +1,55 @@
+package ru.otus.hw.configurations;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.core.task.TaskExecutor;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Исполнители для executor-каналов интеграции. В режиме POOL все каналы делят integrationFlowTaskExecutor
+ * (через FairTaskExecutor, если он включен), в режиме VIRTUAL у каждого канала свой SimpleAsyncTaskExecutor
+ * на виртуальных потоках с лимитом параллелизма: ожидание слота идет только вниз по потоку
+ * (split -> geo/text -> classified -> return), поэтому взаимной блокировки нет. На JDK до 21 режим VIRTUAL
+ * не запускается: поток платформы на задачу с тем же лимитом дал бы тысячи потоков ОС.
+ */
+public class ChannelTaskExecutors implements DisposableBean {
+
+    private static final int JDK_WITH_VIRTUAL_THREADS = 21;
+
+    private final IntegrationProperties props;
+
+    private final TaskExecutor sharedExecutor;
+
+    private final Map<String, SimpleAsyncTaskExecutor> perChannel = new ConcurrentHashMap<>();
+
+    public ChannelTaskExecutors(IntegrationProperties props, TaskExecutor sharedExecutor) {
+        this.props = props;
+        this.sharedExecutor = sharedExecutor;
+        if (props.getMode() == ExecutorMode.VIRTUAL && Runtime.version().feature() < JDK_WITH_VIRTUAL_THREADS) {
+            throw new IllegalStateException("Executor mode VIRTUAL requires JDK " + JDK_WITH_VIRTUAL_THREADS
+                    + "+, running " + Runtime.version());
+        }
+    }
+
+    public TaskExecutor forChannel(String channelName) {
+        if (props.getMode() == ExecutorMode.POOL) {
+            return sharedExecutor;
+        }
+        return perChannel.computeIfAbsent(channelName, this::createLimitedExecutor);
+    }
+
+    @Override
+    public void destroy() {
+        perChannel.values().forEach(SimpleAsyncTaskExecutor::close);
+    }
+
+    private SimpleAsyncTaskExecutor createLimitedExecutor(String channelName) {
+        SimpleAsyncTaskExecutor ex = new SimpleAsyncTaskExecutor(props.getThreadNamePrefix() + channelName + "-");
+        ex.setVirtualThreads(true);
+        ex.setConcurrencyLimit(props.getConcurrencyLimit());
+        ex.setTaskTerminationTimeout(props.getAwaitTerminationSeconds() * 1000L);
+        return ex;
+    }
+}
@@ -0,0 +1,13 @@
+package ru.otus.hw.configurations;
+
+public enum ExecutorMode {
+    /**
+     * Общий ThreadPoolTaskExecutor с очередью и CallerRunsPolicy для всех каналов.
+     */
+    POOL,
+    /**
+     * Отдельный исполнитель на каждый канал: виртуальный поток на задачу (только JDK 21+)
+     * и явный лимит параллелизма, при достижении которого отправитель ждет, а не выполняет работу сам.
+     */
+    VIRTUAL
+}
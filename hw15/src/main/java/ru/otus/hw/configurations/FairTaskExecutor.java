@@ -0,0 +1,190 @@
+package ru.otus.hw.configurations;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.integration.IntegrationMessageHeaderAccessor;
+import org.springframework.integration.util.ErrorHandlingTaskExecutor;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.support.MessageHandlingRunnable;
+import org.springframework.util.ErrorHandler;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Справедливая очередь перед integrationFlowTaskExecutor для executor-каналов режима POOL. Задачи раскладываются
+ * по очередям пакетов (correlationId сообщения, для сообщений вне пакета - id сообщения), а в пул отдаются
+ * по кругу, по одной из каждого пакета, не больше maxPoolSize одновременно. Поэтому элементы маленького пакета
+ * не стоят за всеми элементами большого, отправленного раньше.
+ * Если в очереди пакета уже maxPendingPerBatch задач, новая выполняется в отправляющем потоке, как
+ * при CallerRunsPolicy: большой пакет притормаживает собственный split, не трогая остальные.
+ * Наследует ErrorHandlingTaskExecutor, чтобы ExecutorChannel передавал сюда MessageHandlingRunnable без обертки.
+ */
+public class FairTaskExecutor extends ErrorHandlingTaskExecutor implements MeterBinder {
+
+    public static final String PENDING = "analytics.executor.fair.pending";
+
+    public static final String BATCHES = "analytics.executor.fair.batches";
+
+    public static final String CALLER_RUNS = "analytics.executor.fair.caller.runs";
+
+    /**
+     * Очередь задач, не связанных с сообщением.
+     */
+    private static final Object NO_MESSAGE = new Object();
+
+    private final AdaptiveThreadPoolTaskExecutor delegate;
+
+    private final ErrorHandler errorHandler;
+
+    private final int maxPendingPerBatch;
+
+    private final Map<Object, ArrayDeque<Pending>> queues = new HashMap<>();
+
+    /**
+     * Пакеты с ожидающими задачами в порядке обхода.
+     */
+    private final ArrayDeque<Object> ready = new ArrayDeque<>();
+
+    private final AtomicLong callerRuns = new AtomicLong();
+
+    private int pending;
+
+    private int inFlight;
+
+    public FairTaskExecutor(AdaptiveThreadPoolTaskExecutor delegate, ErrorHandler errorHandler,
+                            int maxPendingPerBatch) {
+        super(delegate, errorHandler);
+        this.delegate = delegate;
+        this.errorHandler = errorHandler;
+        this.maxPendingPerBatch = maxPendingPerBatch;
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        Object batch = batchOf(task);
+        boolean full;
+        synchronized (this) {
+            ArrayDeque<Pending> queue = queues.computeIfAbsent(batch, b -> new ArrayDeque<>());
+            full = queue.size() >= maxPendingPerBatch;
+            if (!full) {
+                if (queue.isEmpty()) {
+                    ready.add(batch);
+                }
+                queue.add(new Pending(task, System.nanoTime()));
+                pending++;
+            }
+        }
+        if (full) {
+            callerRuns.incrementAndGet();
+            runInCaller(task);
+            return;
+        }
+        dispatch();
+    }
+
+    public synchronized int pending() {
+        return pending;
+    }
+
+    /**
+     * Пакеты, у которых есть задачи в очереди.
+     */
+    public synchronized int batches() {
+        return ready.size();
+    }
+
+    public long callerRuns() {
+        return callerRuns.get();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder(PENDING, this, FairTaskExecutor::pending)
+                .description("Tasks waiting in per-batch queues in front of the pool")
+                .register(registry);
+        Gauge.builder(BATCHES, this, FairTaskExecutor::batches)
+                .description("Batches with tasks waiting for the pool")
+                .register(registry);
+        FunctionCounter.builder(CALLER_RUNS, this, FairTaskExecutor::callerRuns)
+                .description("Tasks run by the sending thread because their batch queue was full")
+                .register(registry);
+    }
+
+    /**
+     * Отдает в пул задачи по кругу пакетов, пока есть свободные места. Сам вызов пула идет вне блокировки:
+     * при CallerRunsPolicy задача может выполниться прямо в этом потоке.
+     */
+    private void dispatch() {
+        while (true) {
+            Pending next;
+            synchronized (this) {
+                if (ready.isEmpty() || inFlight >= delegate.getMaxPoolSize()) {
+                    return;
+                }
+                Object batch = ready.poll();
+                ArrayDeque<Pending> queue = queues.get(batch);
+                next = queue.poll();
+                if (queue.isEmpty()) {
+                    queues.remove(batch);
+                } else {
+                    ready.add(batch);
+                }
+                pending--;
+                inFlight++;
+            }
+            delegate.addQueueWait(System.nanoTime() - next.enqueuedAt);
+            try {
+                super.execute(() -> {
+                    try {
+                        next.task.run();
+                    } finally {
+                        release();
+                    }
+                });
+            } catch (RuntimeException e) {
+                release();
+                throw e;
+            }
+        }
+    }
+
+    private void release() {
+        synchronized (this) {
+            inFlight--;
+        }
+        dispatch();
+    }
+
+    private void runInCaller(Runnable task) {
+        try {
+            task.run();
+        } catch (Throwable t) {
+            errorHandler.handleError(t);
+        }
+    }
+
+    private static Object batchOf(Runnable task) {
+        if (task instanceof MessageHandlingRunnable handling) {
+            MessageHeaders headers = handling.getMessage().getHeaders();
+            Object correlationId = headers.get(IntegrationMessageHeaderAccessor.CORRELATION_ID);
+            return correlationId != null ? correlationId : headers.getId();
+        }
+        return NO_MESSAGE;
+    }
+
+    private static final class Pending {
+        private final Runnable task;
+
+        private final long enqueuedAt;
+
+        private Pending(Runnable task, long enqueuedAt) {
+            this.task = task;
+            this.enqueuedAt = enqueuedAt;
+        }
+    }
+}
@@ -2,86 +2,258 @@ package ru.otus.hw.configurations;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.commons.lang3.StringUtils;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.core.task.TaskExecutor;
+import org.springframework.integration.IntegrationMessageHeaderAccessor;
+import org.springframework.integration.channel.FluxMessageChannel;
+import org.springframework.integration.channel.PublishSubscribeChannel;
 import org.springframework.integration.dsl.IntegrationFlow;
+import org.springframework.integration.dsl.IntegrationFlowBuilder;
+import org.springframework.integration.dsl.IntegrationFlowDefinition;
 import org.springframework.integration.dsl.MessageChannels;
+import org.springframework.integration.dsl.Pollers;
 import org.springframework.integration.handler.LoggingHandler;
+import org.springframework.integration.store.MessageGroup;
+import org.springframework.integration.store.MessageGroupStore;
+import org.springframework.integration.support.MessageBuilder;
+import org.springframework.messaging.Message;
 import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHeaders;
 import org.springframework.messaging.MessagingException;
+import org.springframework.messaging.support.ChannelInterceptor;
+import ru.otus.hw.analytics.AggregationMode;
+import ru.otus.hw.analytics.ReportAccumulator;
+import ru.otus.hw.analytics.SlidingWindows;
+import ru.otus.hw.analytics.TopKTrackerFactory;
 import ru.otus.hw.domain.AnalyticsReport;
 import ru.otus.hw.domain.ClassifiedItem;
-import ru.otus.hw.domain.Intent;
+import ru.otus.hw.domain.NormalizedQuery;
 import ru.otus.hw.domain.SearchRequest;
+import ru.otus.hw.domain.TimeBucketReport;
+import ru.otus.hw.integration.AnalyticsHeaders;
+import ru.otus.hw.integration.ColumnarReportAggregator;
+import ru.otus.hw.integration.FailedItems;
+import ru.otus.hw.integration.RingBufferChannel;
+import ru.otus.hw.integration.ShardedReportAggregator;
+import ru.otus.hw.metrics.PipelineMetrics;
+import ru.otus.hw.services.EventTimeAnalyticsService;
+import ru.otus.hw.services.QueryClassifier;
+import ru.otus.hw.services.StreamingAnalyticsService;
+import ru.otus.hw.services.TrendingQueriesService;
 import ru.otus.hw.util.GeoUtil;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
-import java.util.Map;
-import java.util.function.Function;
-import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 @Slf4j
 @Configuration
 @RequiredArgsConstructor
 public class IntegrationConfig {
 
-    private final TaskExecutor integrationFlowTaskExecutor;
+    private static final String FAILED_ITEM_CHANNEL = "failedItemChannel";
 
     /**
-     * Проверяет, является ли строка валидными координатами, используя GeoUtil.
+     * Фаза агрегатора режима STORE - сразу после обычных подписчиков (Integer.MIN_VALUE + 1000): при старте
+     * он снимает просроченные восстановленные группы, и aggregatorDiscardFlow к этому моменту уже подписан.
      */
-    private static boolean looksLikeCoords(String s) {
-        // Передаем null, так как нам нужен только булев результат, а не сами координаты
-        return GeoUtil.parseLatLon(s, null);
-    }
+    private static final int AGGREGATOR_PHASE = Integer.MIN_VALUE + 1001;
+
+    private final ChannelTaskExecutors channelTaskExecutors;
+
+    private final IntegrationProperties integrationProperties;
+
+    private final StreamingAnalyticsService streamingAnalyticsService;
+
+    private final EventTimeAnalyticsService eventTimeAnalyticsService;
+
+    private final TrendingQueriesService trendingQueriesService;
+
+    private final AnalyticsProperties analyticsProperties;
+
+    private final TopKTrackerFactory topKTrackerFactory;
+
+    private final QueryClassifier queryClassifier;
+
+    private final ShardedReportAggregator shardedReportAggregator;
+
+    private final ColumnarReportAggregator columnarReportAggregator;
+
+    private final MessageGroupStore aggregatorMessageStore;
+
+    private final MessageGroupStore chunkMessageStore;
+
+    private final PipelineMetrics pipelineMetrics;
 
     /**
-     * Нормализует строку:
-     * - для координат - возвращает строку "lat lon" в формате целых чисел (умноженных на 100_000),
-     * - для текста приводит к нижнему регистру, удаляет пунктуацию, сводит пробелы.
+     * Канал передачи между потоками для поэлементных этапов: executor-канал или, с executor.ring.enabled,
+     * RingBufferChannel со своими потоками.
      */
-    private static String normalize(String s) {
-        if (s == null) {
-            return "";
+    private MessageChannel handOffChannel(String name) {
+        IntegrationProperties.Ring ring = integrationProperties.getRing();
+        if (!ring.isEnabled()) {
+            return MessageChannels.executor(channelTaskExecutors.forChannel(name)).getObject();
         }
-        double[] coords = new double[2];
-        if (GeoUtil.parseLatLon(s, coords)) {
-            long latInt = Math.round(coords[0] * 100_000);
-            long lonInt = Math.round(coords[1] * 100_000);
-            return latInt + " " + lonInt;
-        } else {
-            return s.toLowerCase()
-                    .trim()
-                    .replaceAll("\\p{Punct}", "")
-                    .replaceAll("\\s+", " ");
+        int consumers = ring.getConsumers() > 0 ? ring.getConsumers() : integrationProperties.getCorePoolSize();
+        return new RingBufferChannel(ring.getBufferSize(), consumers, ring.getBatchSize(), ring.getWaitStrategy(),
+                integrationProperties.getThreadNamePrefix() + name + "-");
+    }
+
+    private ClassifiedItem toItem(SearchRequest sr, NormalizedQuery query) {
+        return new ClassifiedItem(sr.getId(), query.getIntent(), query.getText(), sr.getSource(), geoCell(query));
+    }
+
+    /**
+     * Ячейка geohash для горячих точек считается из упакованных координат, строка по координате не строится.
+     */
+    private long geoCell(NormalizedQuery query) {
+        return query.getCoords() == GeoUtil.NO_COORDS
+                ? GeoUtil.NO_CELL
+                : GeoUtil.geohash(query.getCoords(), analyticsProperties.getGeo().getPrecision());
+    }
+
+    /**
+     * При включенных отчетах по времени события классифицированный запрос сразу учитывается и в них.
+     */
+    private NormalizedQuery countEventTime(SearchRequest sr, NormalizedQuery query) {
+        if (analyticsProperties.getEventTime().isEnabled()) {
+            eventTimeAnalyticsService.accept(toItem(sr, query), sr.getTimestamp());
         }
+        return query;
+    }
+
+    /**
+     * Классификация через общий кеш QueryClassifier в потоке этапа - для потоков без geo/text подпотоков.
+     */
+    private NormalizedQuery classifyQuery(SearchRequest sr) {
+        return countEventTime(sr, queryClassifier.classify(sr.getQueryText()));
+    }
+
+    /**
+     * Классификация в geo/text подпотоке: координаты разобраны при маршрутизации (заголовок
+     * AnalyticsHeaders.COORDS), поэтому на промахе кеша запрос повторно не разбирается.
+     */
+    private NormalizedQuery classifyRouted(SearchRequest sr, MessageHeaders headers) {
+        Long coords = headers.get(AnalyticsHeaders.COORDS, Long.class);
+        return countEventTime(sr,
+                queryClassifier.classify(sr.getQueryText(), coords != null ? coords : GeoUtil.NO_COORDS));
+    }
+
+    private ClassifiedItem classify(SearchRequest sr) {
+        return toItem(sr, classifyQuery(sr));
+    }
+
+    private ClassifiedItem classifyMessage(Message<SearchRequest> message) {
+        return toItem(message.getPayload(), classifyRouted(message.getPayload(), message.getHeaders()));
+    }
+
+    /**
+     * Значение заголовка AnalyticsHeaders.COORDS: null (заголовок не ставится), если это не координаты.
+     * Нормализация текста идет уже на исполнителе подпотока.
+     */
+    private static Long coordsHeader(Message<SearchRequest> message) {
+        long coords = GeoUtil.parseFixed(message.getPayload().getQueryText());
+        return coords != GeoUtil.NO_COORDS ? coords : null;
     }
 
     @Bean
     public MessageChannel receiveSearchBatchChannel() {
-        return MessageChannels.executor(integrationFlowTaskExecutor).getObject();
+        return MessageChannels.executor(channelTaskExecutors.forChannel("receiveSearchBatchChannel")).getObject();
     }
 
     @Bean
     public MessageChannel returnReportChannel() {
-        return MessageChannels.executor(integrationFlowTaskExecutor).getObject();
+        return MessageChannels.executor(channelTaskExecutors.forChannel("returnReportChannel"))
+                .interceptor(new ChannelInterceptor() {
+                    @Override
+                    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+                        if (message.getPayload() instanceof AnalyticsReport report) {
+                            pipelineMetrics.countReport(report);
+                        }
+                        return message;
+                    }
+                })
+                .getObject();
     }
 
     @Bean
     public MessageChannel geoSubflowChannel() {
-        return MessageChannels.executor(integrationFlowTaskExecutor).getObject();
+        return handOffChannel("geoSubflowChannel");
     }
 
     @Bean
     public MessageChannel textSubflowChannel() {
-        return MessageChannels.executor(integrationFlowTaskExecutor).getObject();
+        return handOffChannel("textSubflowChannel");
     }
 
     @Bean
     public MessageChannel classifiedChannel() {
-        return MessageChannels.executor(integrationFlowTaskExecutor).getObject();
+        return handOffChannel("classifiedChannel");
+    }
+
+    /**
+     * Вход агрегатора режима STORE за classifiedChannel. FailedItems отправляются сюда напрямую, а не
+     * в classifiedChannel: ошибка в потоке classifiedChannel иначе ждала бы места в его же полном буфере.
+     */
+    @Bean
+    public MessageChannel aggregateChannel() {
+        return MessageChannels.direct().getObject();
+    }
+
+    @Bean
+    public MessageChannel aggregatorDiscardChannel() {
+        return MessageChannels.direct().getObject();
+    }
+
+    @Bean
+    public MessageChannel chunkSubflowChannel() {
+        return MessageChannels.executor(channelTaskExecutors.forChannel("chunkSubflowChannel")).getObject();
+    }
+
+    /**
+     * Вход агрегатора чанков: кроме частичных отчетов сюда приходят FailedItems упавших чанков.
+     */
+    @Bean
+    public MessageChannel chunkAggregateChannel() {
+        return MessageChannels.direct().getObject();
+    }
+
+    /**
+     * Реактивный канал: потребитель запрашивает сообщения по мере обработки, поэтому при отставании
+     * submit() ждет, а подписанные через subscribeTo издатели получают меньший demand, вместо роста очереди.
+     */
+    @Bean
+    public FluxMessageChannel receiveSearchStreamChannel() {
+        return MessageChannels.flux().getObject();
+    }
+
+    @Bean
+    public PublishSubscribeChannel streamReportChannel() {
+        return MessageChannels.publishSubscribe().getObject();
+    }
+
+    /**
+     * Частичные отчеты групп, ответа по которым никто не ждет, прежде всего восстановленных
+     * FileBackedMessageGroupStore после перезапуска: replyChannel в журнал не попадает.
+     */
+    @Bean
+    public PublishSubscribeChannel unclaimedReportChannel() {
+        return MessageChannels.publishSubscribe().getObject();
+    }
+
+    /**
+     * Поминутные и почасовые отчеты по времени события (TimeBucketReport).
+     */
+    @Bean
+    public PublishSubscribeChannel eventTimeReportChannel() {
+        return MessageChannels.publishSubscribe().getObject();
+    }
+
+    @Bean
+    public MessageChannel failedItemChannel() {
+        return MessageChannels.direct().getObject();
     }
 
     @Bean(name = "errorChannel")
@@ -91,12 +263,23 @@ public class IntegrationConfig {
 
     @Bean
     public IntegrationFlow searchAnalyticsFlow() {
-        return IntegrationFlow.from(receiveSearchBatchChannel())
-                .log(LoggingHandler.Level.INFO, "flow", m -> "Stage 0: received batch")
-                .split()
-                .<SearchRequest, Boolean>route(
-                        sr -> looksLikeCoords(sr.getQueryText()),
+        if (analyticsProperties.getChunkSize() > 0) {
+            return stageLog(IntegrationFlow.from(receiveSearchBatchChannel()), "Stage 0: received batch (chunked)")
+                    .enrichHeaders(h -> h.headerFunction(AnalyticsHeaders.BATCH_SIZE,
+                            m -> ((List<?>) m.getPayload()).size()))
+                    .splitWith(sp -> sp.id("splitStage").<List<SearchRequest>>function(this::chunks))
+                    .enrichHeaders(h -> h.errorChannel(FAILED_ITEM_CHANNEL, true))
+                    .channel(chunkSubflowChannel())
+                    .get();
+        }
+        return stageLog(IntegrationFlow.from(receiveSearchBatchChannel()), "Stage 0: received batch")
+                .splitWith(sp -> sp.id("splitStage"))
+                .enrichHeaders(h -> h
+                        .errorChannel(FAILED_ITEM_CHANNEL, true)
+                        .headerFunction(AnalyticsHeaders.COORDS, IntegrationConfig::coordsHeader))
+                .<Message, Boolean>route(Message.class, m -> m.getHeaders().containsKey(AnalyticsHeaders.COORDS),
                         r -> r
+                                .id("routeStage")
                                 .channelMapping(true, "geoSubflowChannel")
                                 .channelMapping(false, "textSubflowChannel")
                 )
@@ -105,42 +288,186 @@ public class IntegrationConfig {
 
     @Bean
     public IntegrationFlow geoSubflow() {
-        return IntegrationFlow.from(geoSubflowChannel())
-                .log(LoggingHandler.Level.INFO, "flow", m -> "Stage 1.GEO: classify as COORDS")
-                .<SearchRequest, ClassifiedItem>transform(sr ->
-                        new ClassifiedItem(
-                                sr.getId(),
-                                Intent.COORDS,
-                                normalize(sr.getQueryText()),
-                                sr.getSource()
-                        )
-                )
+        var flow = stageLog(IntegrationFlow.from(geoSubflowChannel()), "Stage 1.GEO: classify as COORDS");
+        if (analyticsProperties.getAggregation().getMode() == AggregationMode.COLUMNAR) {
+            return columnarStage(flow, "geoStage");
+        }
+        return flow
+                .transformWith(t -> t
+                        .id("geoStage")
+                        .expectedType(Message.class)
+                        .transformer(this::classifyMessage))
                 .channel("classifiedChannel")
                 .get();
     }
 
     @Bean
     public IntegrationFlow textSubflow() {
-        return IntegrationFlow.from(textSubflowChannel())
-                .log(LoggingHandler.Level.INFO, "flow", m -> "Stage 1.TEXT: normalize & classify")
-                .<SearchRequest, ClassifiedItem>transform(sr -> {
-                    String norm = normalize(sr.getQueryText());
-                    Intent intent = StringUtils.isBlank(norm) ? Intent.UNKNOWN : Intent.TEXT;
-                    return new ClassifiedItem(sr.getId(), intent, norm, sr.getSource());
-                })
+        var flow = stageLog(IntegrationFlow.from(textSubflowChannel()), "Stage 1.TEXT: classify as TEXT/UNKNOWN");
+        if (analyticsProperties.getAggregation().getMode() == AggregationMode.COLUMNAR) {
+            return columnarStage(flow, "textStage");
+        }
+        return flow
+                .transformWith(t -> t
+                        .id("textStage")
+                        .expectedType(Message.class)
+                        .transformer(this::classifyMessage))
                 .channel("classifiedChannel")
                 .get();
     }
 
+    /**
+     * В режиме COLUMNAR элемент не превращается в ClassifiedItem: результат классификации сразу
+     * дописывается в колоночный пакет, а последний элемент группы выдает отчет.
+     */
+    private IntegrationFlow columnarStage(IntegrationFlowBuilder flow, String stageId) {
+        var aggregated = flow.handle(SearchRequest.class, (sr, headers) -> {
+            NormalizedQuery query = classifyRouted(sr, headers);
+            return columnarReportAggregator.add(query, sr.getSource(), geoCell(query), headers);
+        }, e -> e.id(stageId));
+        return stageLog(aggregated, "Stage 3: aggregated (columnar)")
+                .channel(returnReportChannel())
+                .get();
+    }
+
+    /**
+     * Чанк классифицируется и сворачивается в частичный отчет в одном потоке, агрегатор держит только
+     * по одному частичному отчету на чанк.
+     */
+    @Bean
+    public IntegrationFlow chunkSubflow() {
+        var flow = stageLog(IntegrationFlow.from(chunkSubflowChannel()), "Stage 1.CHUNK: classify chunk")
+                .transformWith(t -> t.id("chunkStage").transformer(this::classifyChunk))
+                .channel(chunkAggregateChannel())
+                .aggregate(a -> a
+                        .id("chunkAggregateStage")
+                        .messageStore(chunkMessageStore)
+                        .discardChannel(aggregatorDiscardChannel())
+                        .discardIndividuallyOnExpiry(false)
+                        .outputProcessor(this::mergeChunks)
+                        .groupTimeout(analyticsProperties.getAggregation().getGroupTimeout().toMillis())
+                        .expireGroupsUponCompletion(true)
+                );
+        return stageLog(flow, "Stage 3: aggregated (chunks)")
+                .channel(returnReportChannel())
+                .get();
+    }
+
     @Bean
     public IntegrationFlow aggregateAndReportFlow() {
-        return IntegrationFlow.from(classifiedChannel())
+        var aggregation = analyticsProperties.getAggregation();
+        if (aggregation.getMode() == AggregationMode.SHARDED) {
+            var flow = IntegrationFlow.from(classifiedChannel())
+                    .handle(ClassifiedItem.class, shardedReportAggregator::add, e -> e.id("aggregateStage"));
+            return stageLog(flow, "Stage 3: aggregated (sharded)")
+                    .channel(returnReportChannel())
+                    .get();
+        }
+        var flow = IntegrationFlow.from(classifiedChannel())
+                .channel(aggregateChannel())
                 .aggregate(a -> a
-                        .groupTimeout(10_000) // таймаут в миллисекундах
+                        .id("aggregateStage")
+                        .messageStore(aggregatorMessageStore)
+                        .discardChannel(aggregatorDiscardChannel())
+                        .discardIndividuallyOnExpiry(false)
+                        .groupTimeout(aggregation.getGroupTimeout().toMillis()) // таймаут в миллисекундах
                         .expireGroupsUponCompletion(true)
-                )
-                .log(LoggingHandler.Level.INFO, "flow", m -> "Stage 3: aggregated (full)")
-                .transform(this::toReport)
+                        // группы, восстановленные хранилищем после рестарта, не получат новых сообщений
+                        // и groupTimeout для них не запустится: их снимает периодическая проверка
+                        .expireTimeout(aggregation.getGroupTimeout().toMillis())
+                        .expireDuration(aggregation.getGroupTimeout())
+                        .phase(AGGREGATOR_PHASE)
+                );
+        return stageLog(flow, "Stage 3: aggregated (full)")
+                .transformWith(t -> t.id("reportStage").transformer(this::toReport))
+                .channel(returnReportChannel())
+                .get();
+    }
+
+    @Bean
+    public IntegrationFlow streamingAnalyticsFlow() {
+        return IntegrationFlow.from((MessageChannel) receiveSearchStreamChannel())
+                .handle(SearchRequest.class, (sr, headers) -> {
+                    SlidingWindows windows = headers.get(AnalyticsHeaders.STREAM_WINDOWS, SlidingWindows.class);
+                    try {
+                        ClassifiedItem item = classify(sr);
+                        pipelineMetrics.countItem(item.getIntent());
+                        if (windows != null) {
+                            windows.accept(item);
+                        } else {
+                            streamingAnalyticsService.accept(item);
+                        }
+                    } finally {
+                        if (windows != null) {
+                            windows.markProcessed();
+                        }
+                    }
+                    return null;
+                }, e -> e.id("streamWindowStage"))
+                .get();
+    }
+
+    @Bean
+    public IntegrationFlow windowReportFlow() {
+        Duration emitInterval = analyticsProperties.getStreaming().getEmitInterval();
+        var flow = IntegrationFlow.fromSupplier(() -> {
+                    List<AnalyticsReport> reports = streamingAnalyticsService.pollCompletedWindows();
+                    return reports.isEmpty() ? null : reports;
+                }, s -> s.poller(Pollers.fixedDelay(emitInterval)))
+                .split();
+        return stageLog(flow, "Stream: window report emitted")
+                .channel(streamReportChannel())
+                .get();
+    }
+
+    @Bean
+    public IntegrationFlow eventTimeReportFlow() {
+        Duration emitInterval = analyticsProperties.getEventTime().getEmitInterval();
+        var flow = IntegrationFlow.fromSupplier(() -> {
+                    List<TimeBucketReport> reports = eventTimeAnalyticsService.pollClosedBuckets();
+                    return reports.isEmpty() ? null : reports;
+                }, s -> s.poller(Pollers.fixedDelay(emitInterval)))
+                .split();
+        return stageLog(flow, "Event time: bucket report emitted")
+                .channel(eventTimeReportChannel())
+                .get();
+    }
+
+    /**
+     * Просроченные группы агрегаторов: недошедшие элементы видны в метриках analytics.aggregator.expired.*,
+     * а вызывающий получает частичный отчет по тому, что успело дойти. Отчет группы без вызывающего
+     * уходит в unclaimedReportChannel.
+     */
+    @Bean
+    public IntegrationFlow aggregatorDiscardFlow() {
+        return IntegrationFlow.from(aggregatorDiscardChannel())
+                .handle(Collection.class, (messages, headers) -> {
+                    @SuppressWarnings("unchecked")
+                    Collection<Message<?>> group = messages;
+                    pipelineMetrics.countExpiredGroup(group);
+                    log.warn("Aggregation group expired with {} messages", group.size());
+                    return replyOrUnclaimed(partialReport(group));
+                })
+                .channel(returnReportChannel())
+                .get();
+    }
+
+    /**
+     * Группы SHARDED и COLUMNAR, не заполненные за groupTimeout, снимаются с той же периодичностью и тоже
+     * отдаются вызывающим частичными отчетами, а без вызывающего - в unclaimedReportChannel.
+     */
+    @Bean
+    public IntegrationFlow expiredGroupsFlow() {
+        Duration timeout = analyticsProperties.getAggregation().getGroupTimeout();
+        var flow = IntegrationFlow.fromSupplier(() -> {
+                    List<Message<AnalyticsReport>> reports = new ArrayList<>(
+                            shardedReportAggregator.expireStaleGroups(timeout.toMillis()));
+                    reports.addAll(columnarReportAggregator.expireStaleGroups(timeout.toMillis()));
+                    reports.removeIf(m -> replyOrUnclaimed(m) == null);
+                    return reports.isEmpty() ? null : reports;
+                }, s -> s.poller(Pollers.fixedDelay(timeout)))
+                .split();
+        return stageLog(flow, "Stage 3: partial report on group timeout")
                 .channel(returnReportChannel())
                 .get();
     }
@@ -164,20 +491,159 @@ public class IntegrationConfig {
                 .get();
     }
 
-    private AnalyticsReport toReport(List<ClassifiedItem> items) {
-        Map<Intent, Long> counts = items.stream()
-                .collect(Collectors.groupingBy(ClassifiedItem::getIntent, Collectors.counting()));
+    /**
+     * Ошибки отдельных элементов пакета: после split им ставится заголовок errorChannel на этот поток, поэтому
+     * упавший элемент не обрывает весь вызов шлюза, а засчитывается агрегатору как упавший.
+     */
+    @Bean
+    public IntegrationFlow failedItemFlow() {
+        return IntegrationFlow.from(failedItemChannel())
+                .handle(Throwable.class, (error, headers) -> {
+                    Message<?> failed = error instanceof MessagingException ex ? ex.getFailedMessage() : null;
+                    log.error("Batch item failed: {}, failedPayload={}", error,
+                            failed != null ? failed.getPayload() : "n/a", error);
+                    releaseFailedItems(failed);
+                    return null;
+                })
+                .get();
+    }
+
+    /**
+     * Элемент пакета, упавший после split, засчитывается агрегатору текущего режима как FailedItems: группа
+     * заполняется, и вызывающий сразу получает частичный отчет вместо ожидания groupTimeout.
+     */
+    private void releaseFailedItems(Message<?> failed) {
+        if (failed == null || failed.getHeaders().get(IntegrationMessageHeaderAccessor.SEQUENCE_SIZE) == null) {
+            return;
+        }
+        Object payload = failed.getPayload();
+        int count;
+        if (payload instanceof SearchRequest || payload instanceof ClassifiedItem) {
+            count = 1;
+        } else if (payload instanceof List<?> chunk) {
+            count = chunk.size();
+        } else if (payload instanceof ReportAccumulator chunk) {
+            count = (int) chunk.getTotal();
+        } else {
+            // FailedItems и готовые отчеты повторно не засчитываются, иначе ошибка агрегатора зациклится
+            return;
+        }
+        Message<FailedItems> failedItems = MessageBuilder.withPayload(new FailedItems(count))
+                .copyHeaders(failed.getHeaders())
+                .build();
+        if (analyticsProperties.getChunkSize() > 0) {
+            chunkAggregateChannel().send(failedItems);
+            return;
+        }
+        AnalyticsReport report = switch (analyticsProperties.getAggregation().getMode()) {
+            case SHARDED -> shardedReportAggregator.fail(count, failed.getHeaders());
+            case COLUMNAR -> columnarReportAggregator.fail(count, failed.getHeaders());
+            case STORE -> {
+                aggregateChannel().send(failedItems);
+                yield null;
+            }
+        };
+        if (report != null) {
+            returnReportChannel().send(MessageBuilder.withPayload(report).copyHeaders(failed.getHeaders()).build());
+        }
+    }
+
+    /**
+     * Построчный лог этапа; отключается app.integration.analytics.stage-logging=false, вместо него
+     * время этапов видно в метриках spring.integration.send и в actuator-эндпоинте analytics.
+     */
+    private <B extends IntegrationFlowDefinition<B>> B stageLog(B flow, String stage) {
+        return analyticsProperties.isStageLogging() ? flow.log(LoggingHandler.Level.INFO, "flow", m -> stage) : flow;
+    }
 
-        List<String> top5 = items.stream()
-                .map(ClassifiedItem::getNormalizedQuery)
-                .filter(StringUtils::isNotBlank)
-                .collect(Collectors.groupingBy(Function.identity(), Collectors.counting()))
-                .entrySet().stream()
-                .sorted((a, b) -> Long.compare(b.getValue(), a.getValue()))
-                .limit(5)
-                .map(Map.Entry::getKey)
+    private List<List<SearchRequest>> chunks(List<SearchRequest> batch) {
+        int chunkSize = analyticsProperties.getChunkSize();
+        int chunks = (batch.size() + chunkSize - 1) / chunkSize;
+        return IntStream.range(0, chunks)
+                .mapToObj(i -> batch.subList(i * chunkSize, Math.min(batch.size(), (i + 1) * chunkSize)))
                 .toList();
+    }
+
+    private ReportAccumulator classifyChunk(List<SearchRequest> chunk) {
+        ReportAccumulator accumulator = new ReportAccumulator(() -> topKTrackerFactory.create(chunk.size()));
+        for (SearchRequest sr : chunk) {
+            accumulator.add(classify(sr));
+        }
+        return accumulator;
+    }
+
+    private AnalyticsReport mergeChunks(MessageGroup group) {
+        return mergeGroup(group.getMessages(), group.getOne());
+    }
+
+    /**
+     * Частичный отчет просроченной группы с заголовками ее первого сообщения, по которым ответ найдет шлюз.
+     */
+    private Message<AnalyticsReport> partialReport(Collection<Message<?>> group) {
+        Message<?> first = group.iterator().next();
+        return MessageBuilder.withPayload(mergeGroup(group, first)).copyHeaders(first.getHeaders()).build();
+    }
+
+    /**
+     * Отчет без replyChannel отправляется в unclaimedReportChannel.
+     *
+     * @return report, если его ждет вызывающий, иначе null
+     */
+    private Message<AnalyticsReport> replyOrUnclaimed(Message<AnalyticsReport> report) {
+        if (report.getHeaders().getReplyChannel() != null) {
+            return report;
+        }
+        unclaimedReportChannel().send(report);
+        return null;
+    }
 
-        return new AnalyticsReport(counts, top5);
+    /**
+     * Отчет по сообщениям группы: частичным отчетам чанков, элементам и FailedItems. Ожидаемое число элементов
+     * для чанков берется из AnalyticsHeaders.BATCH_SIZE, для элементов - из размера последовательности.
+     */
+    private AnalyticsReport mergeGroup(Collection<? extends Message<?>> messages, Message<?> first) {
+        long total = 0;
+        long failed = 0;
+        for (Message<?> m : messages) {
+            if (m.getPayload() instanceof ReportAccumulator chunk) {
+                total += chunk.getTotal();
+            } else if (m.getPayload() instanceof FailedItems items) {
+                failed += items.getCount();
+            } else {
+                total++;
+            }
+        }
+        long size = total;
+        ReportAccumulator merged = new ReportAccumulator(() -> topKTrackerFactory.create(size));
+        for (Message<?> m : messages) {
+            if (m.getPayload() instanceof ReportAccumulator chunk) {
+                merged.merge(chunk);
+            } else if (m.getPayload() instanceof ClassifiedItem item) {
+                merged.add(item);
+            }
+        }
+        Integer expected = first.getHeaders().containsKey(AnalyticsHeaders.BATCH_SIZE)
+                ? first.getHeaders().get(AnalyticsHeaders.BATCH_SIZE, Integer.class)
+                : first.getHeaders().get(IntegrationMessageHeaderAccessor.SEQUENCE_SIZE, Integer.class);
+        long missing = expected == null ? 0 : Math.max(0, expected - total - failed);
+        trendingQueriesService.merge(merged);
+        return merged.toReport(analyticsProperties.getTopQueriesLimit()).withIncomplete(missing, failed);
+    }
+
+    /**
+     * Группа заполнена, недошедших элементов нет; FailedItems считаются упавшими.
+     */
+    private AnalyticsReport toReport(List<?> payloads) {
+        ReportAccumulator accumulator = new ReportAccumulator(() -> topKTrackerFactory.create(payloads.size()));
+        long failed = 0;
+        for (Object payload : payloads) {
+            if (payload instanceof FailedItems items) {
+                failed += items.getCount();
+            } else {
+                accumulator.add((ClassifiedItem) payload);
+            }
+        }
+        trendingQueriesService.merge(accumulator);
+        return accumulator.toReport(analyticsProperties.getTopQueriesLimit()).withIncomplete(0, failed);
     }
 }
@@ -2,17 +2,105 @@ package ru.otus.hw.configurations;
 
 import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
+import ru.otus.hw.integration.RingBufferChannel;
+
+import java.time.Duration;
 
 @Data
 @ConfigurationProperties(prefix = "app.integration.executor")
 public class IntegrationProperties {
+    /**
+     * VIRTUAL только на JDK 21+; модуль собирается под JDK 17, поэтому по умолчанию POOL, а сравнение
+     * режимов (ExecutorModeGatewayTest, PipelineBenchmark) на JDK 17 пропускается.
+     */
+    private ExecutorMode mode = ExecutorMode.POOL;
+
     private int corePoolSize = 4;
 
     private int maxPoolSize = 8;
 
     private int queueCapacity = 64;
 
+    /**
+     * Максимум одновременно выполняемых задач на канал в режиме VIRTUAL.
+     */
+    private int concurrencyLimit = 256;
+
     private String threadNamePrefix = "integration-";
 
     private int awaitTerminationSeconds = 10;
+
+    private Adaptive adaptive = new Adaptive();
+
+    private Fair fair = new Fair();
+
+    private Ring ring = new Ring();
+
+    /**
+     * Подстройка пула режима POOL во время работы (AdaptiveExecutorController). corePoolSize, maxPoolSize
+     * и queueCapacity выше задают стартовые значения, здесь - границы и цели.
+     */
+    @Data
+    public static class Adaptive {
+        private boolean enabled;
+
+        private Duration interval = Duration.ofSeconds(1);
+
+        /**
+         * Среднее ожидание задачи в очереди, выше которого пул растет или очередь сокращается.
+         */
+        private Duration targetQueueWait = Duration.ofMillis(10);
+
+        /**
+         * Загрузка CPU (от 0 до 1), начиная с которой потоки больше не добавляются.
+         */
+        private double cpuHighWatermark = 0.85;
+
+        private int minPoolSize = 1;
+
+        private int maxPoolSize = 32;
+
+        private int minQueueCapacity = 8;
+
+        private int maxQueueCapacity = 1024;
+    }
+
+    /**
+     * Справедливая очередь по пакетам перед пулом режима POOL (FairTaskExecutor).
+     */
+    @Data
+    public static class Fair {
+        private boolean enabled;
+
+        /**
+         * Задач одного пакета в очереди, сверх которых задача выполняется в отправляющем потоке.
+         */
+        private int maxPendingPerBatch = 1024;
+    }
+
+    /**
+     * Каналы geoSubflowChannel, textSubflowChannel и classifiedChannel на кольцевом буфере (RingBufferChannel)
+     * вместо executor-каналов; у каждого канала свои потоки-потребители, mode и fair на них не действуют.
+     */
+    @Data
+    public static class Ring {
+        private boolean enabled;
+
+        /**
+         * Емкость буфера канала, округляется вверх до степени двойки.
+         */
+        private int bufferSize = 1024;
+
+        /**
+         * Потоков-потребителей на канал, 0 - по corePoolSize.
+         */
+        private int consumers = 0;
+
+        /**
+         * Сколько готовых сообщений потребитель забирает из буфера за раз.
+         */
+        private int batchSize = 32;
+
+        private RingBufferChannel.WaitStrategy waitStrategy = RingBufferChannel.WaitStrategy.BLOCKING;
+    }
 }
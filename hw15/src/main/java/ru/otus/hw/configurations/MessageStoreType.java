@@ -0,0 +1,14 @@
+package ru.otus.hw.configurations;
+
+public enum MessageStoreType {
+    /**
+     * SimpleMessageStore: группы только в памяти и теряются при падении.
+     */
+    MEMORY,
+    /**
+     * FileBackedMessageGroupStore: группы в памяти плюс журнал долговечности в файлах, отображенных в память,
+     * с восстановлением при старте и ограничением общего числа элементов. Памяти не экономит:
+     * сообщения групп в куче те же, что у MEMORY.
+     */
+    FILE
+}
@@ -1,11 +1,15 @@
 package ru.otus.hw.configurations;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.core.task.TaskExecutor;
-import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.integration.channel.ChannelUtils;
+import org.springframework.scheduling.TaskScheduler;
 
 import java.util.concurrent.ThreadPoolExecutor;
 
@@ -17,8 +21,8 @@ public class TaskExecutionConfig {
     private final IntegrationProperties props;
 
     @Bean
-    public TaskExecutor integrationFlowTaskExecutor() {
-        ThreadPoolTaskExecutor ex = new ThreadPoolTaskExecutor();
+    public AdaptiveThreadPoolTaskExecutor integrationFlowTaskExecutor() {
+        AdaptiveThreadPoolTaskExecutor ex = new AdaptiveThreadPoolTaskExecutor();
         ex.setCorePoolSize(props.getCorePoolSize());
         ex.setMaxPoolSize(props.getMaxPoolSize());
         ex.setQueueCapacity(props.getQueueCapacity());
@@ -26,7 +30,33 @@ public class TaskExecutionConfig {
         ex.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
         ex.setWaitForTasksToCompleteOnShutdown(true);
         ex.setAwaitTerminationSeconds(props.getAwaitTerminationSeconds());
+        ex.setMeasureQueueWait(props.getAdaptive().isEnabled());
         ex.initialize();
         return ex;
     }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "app.integration.executor.adaptive", name = "enabled", havingValue = "true")
+    public AdaptiveExecutorController adaptiveExecutorController(AdaptiveThreadPoolTaskExecutor executor,
+                                                                 TaskScheduler taskScheduler) {
+        var adaptive = props.getAdaptive();
+        var controller = new AdaptiveExecutorController(executor, adaptive,
+                AdaptiveExecutorController.systemCpuLoad());
+        taskScheduler.scheduleWithFixedDelay(controller::adjust, adaptive.getInterval());
+        return controller;
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "app.integration.executor.fair", name = "enabled", havingValue = "true")
+    public FairTaskExecutor fairTaskExecutor(AdaptiveThreadPoolTaskExecutor executor, BeanFactory beanFactory) {
+        return new FairTaskExecutor(executor, ChannelUtils.getErrorHandler(beanFactory),
+                props.getFair().getMaxPendingPerBatch());
+    }
+
+    @Bean
+    public ChannelTaskExecutors channelTaskExecutors(AdaptiveThreadPoolTaskExecutor integrationFlowTaskExecutor,
+                                                     ObjectProvider<FairTaskExecutor> fairTaskExecutor) {
+        TaskExecutor fair = fairTaskExecutor.getIfAvailable();
+        return new ChannelTaskExecutors(props, fair != null ? fair : integrationFlowTaskExecutor);
+    }
 }
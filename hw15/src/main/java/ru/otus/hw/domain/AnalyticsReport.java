@@ -2,14 +2,68 @@ package ru.otus.hw.domain;
 
 import lombok.AllArgsConstructor;
 import lombok.Data;
+import lombok.NoArgsConstructor;
 
+import java.time.Instant;
 import java.util.List;
 import java.util.Map;
 
 @Data
+@NoArgsConstructor
 @AllArgsConstructor
 public class AnalyticsReport {
     private Map<Intent, Long> countsByIntent;
 
     private List<String> top5Queries;
+
+    /**
+     * Счетчики и топ запросов по источникам, считаются в том же проходе, что и общие.
+     */
+    private Map<String, SourceReport> bySource;
+
+    /**
+     * Самые частые ячейки geohash COORDS-запросов по убыванию числа запросов: ячейка -> число.
+     */
+    private Map<String, Long> hotSpots;
+
+    /**
+     * Границы окна для потоковых отчетов, для пакетных - null.
+     */
+    private Instant windowStart;
+
+    private Instant windowEnd;
+
+    /**
+     * Отчет выпущен по таймауту группы или с ошибками: часть элементов пакета в нем не учтена.
+     */
+    private boolean partial;
+
+    /**
+     * Элементы, не дошедшие до агрегатора к таймауту группы.
+     */
+    private long missingItems;
+
+    /**
+     * Элементы, обработка которых завершилась ошибкой; они засчитываются в заполнение группы.
+     */
+    private long failedItems;
+
+    public AnalyticsReport(Map<Intent, Long> countsByIntent, List<String> top5Queries) {
+        this(countsByIntent, top5Queries, Map.of(), Map.of(), null, null, false, 0, 0);
+    }
+
+    public AnalyticsReport(Map<Intent, Long> countsByIntent, List<String> top5Queries,
+                           Map<String, SourceReport> bySource, Map<String, Long> hotSpots) {
+        this(countsByIntent, top5Queries, bySource, hotSpots, null, null, false, 0, 0);
+    }
+
+    /**
+     * Отмечает отчет частичным, если в пакете есть недошедшие или упавшие элементы.
+     */
+    public AnalyticsReport withIncomplete(long missingItems, long failedItems) {
+        this.missingItems = missingItems;
+        this.failedItems = failedItems;
+        this.partial = missingItems > 0 || failedItems > 0;
+        return this;
+    }
 }
@@ -2,6 +2,7 @@ package ru.otus.hw.domain;
 
 import lombok.AllArgsConstructor;
 import lombok.Data;
+import ru.otus.hw.util.GeoUtil;
 
 @Data
 @AllArgsConstructor
@@ -13,4 +14,13 @@ public class ClassifiedItem {
     private String normalizedQuery;
 
     private String source;
+
+    /**
+     * Ячейка geohash для COORDS (GeoUtil.geohash), иначе GeoUtil.NO_CELL.
+     */
+    private long geoCell;
+
+    public ClassifiedItem(String id, Intent intent, String normalizedQuery, String source) {
+        this(id, intent, normalizedQuery, source, GeoUtil.NO_CELL);
+    }
 }
@@ -0,0 +1,52 @@
+package ru.otus.hw.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Ход и итог загрузки файла журнала: прочитанные байты и строки, отправленные в конвейер запросы
+ * и суммарные счетчики по Intent из отчетов по пакетам.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class IngestionStats {
+    private String file;
+
+    private long totalBytes;
+
+    private long bytesRead;
+
+    private long lines;
+
+    private long requests;
+
+    private long malformed;
+
+    private int chunks;
+
+    private Map<Intent, Long> countsByIntent;
+
+    private Duration elapsed;
+
+    public double getProgress() {
+        return totalBytes == 0 ? 1 : (double) bytesRead / totalBytes;
+    }
+
+    public double getRequestsPerSecond() {
+        return perSecond(requests);
+    }
+
+    public double getMegabytesPerSecond() {
+        return perSecond(bytesRead) / (1024 * 1024);
+    }
+
+    private double perSecond(long count) {
+        long nanos = elapsed == null ? 0 : elapsed.toNanos();
+        return nanos == 0 ? 0 : count * 1e9 / nanos;
+    }
+}
@@ -0,0 +1,25 @@
+package ru.otus.hw.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Value;
+import ru.otus.hw.util.GeoUtil;
+
+/**
+ * Результат классификации текста запроса без привязки к конкретному запросу - то, что можно кэшировать.
+ */
+@Value
+@AllArgsConstructor
+public class NormalizedQuery {
+    private Intent intent;
+
+    private String text;
+
+    /**
+     * Координаты COORDS-запроса в виде GeoUtil.parseFixed, иначе GeoUtil.NO_COORDS.
+     */
+    private long coords;
+
+    public NormalizedQuery(Intent intent, String text) {
+        this(intent, text, GeoUtil.NO_COORDS);
+    }
+}
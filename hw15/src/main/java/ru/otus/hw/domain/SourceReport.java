@@ -0,0 +1,20 @@
+package ru.otus.hw.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Часть отчета по одному источнику запросов (web, telegram, ...).
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SourceReport {
+    private Map<Intent, Long> countsByIntent;
+
+    private List<String> top5Queries;
+}
@@ -0,0 +1,17 @@
+package ru.otus.hw.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Отчет за закрытый интервал времени событий; границы интервала - в windowStart/windowEnd отчета.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TimeBucketReport {
+    private TimeBucket bucket;
+
+    private AnalyticsReport report;
+}
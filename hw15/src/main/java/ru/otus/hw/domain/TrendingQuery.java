@@ -0,0 +1,17 @@
+package ru.otus.hw.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Запрос в таблице "популярно сейчас": score - число обращений с экспоненциальным затуханием по времени.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TrendingQuery {
+    private String query;
+
+    private double score;
+}
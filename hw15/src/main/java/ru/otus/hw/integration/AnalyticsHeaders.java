@@ -0,0 +1,24 @@
+package ru.otus.hw.integration;
+
+import lombok.experimental.UtilityClass;
+
+@UtilityClass
+public class AnalyticsHeaders {
+
+    /**
+     * Число запросов в исходном пакете; по нему агрегатор чанков считает недошедшие элементы.
+     */
+    public static final String BATCH_SIZE = "analytics_batchSize";
+
+    /**
+     * Координаты COORDS-запроса, упакованные GeoUtil.parseFixed при маршрутизации; у текстовых запросов
+     * заголовка нет.
+     */
+    public static final String COORDS = "analytics_coords";
+
+    /**
+     * SlidingWindows отдельного вызова ReactiveSearchAnalyticsService.stream; без заголовка запрос
+     * учитывается в общих окнах.
+     */
+    public static final String STREAM_WINDOWS = "analytics_streamWindows";
+}
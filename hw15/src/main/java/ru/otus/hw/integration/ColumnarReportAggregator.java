@@ -0,0 +1,234 @@
+package ru.otus.hw.integration;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.integration.IntegrationMessageHeaderAccessor;
+import org.springframework.integration.support.MessageBuilder;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import ru.otus.hw.analytics.ClassifiedBatch;
+import ru.otus.hw.analytics.ReportAccumulator;
+import ru.otus.hw.analytics.TopKTrackerFactory;
+import ru.otus.hw.domain.AnalyticsReport;
+import ru.otus.hw.domain.NormalizedQuery;
+
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Агрегация пакета в колоночный ClassifiedBatch: geo и text этапы дописывают в него Intent и номера
+ * запроса и источника вместо того, чтобы порождать ClassifiedItem на каждый элемент. Когда группа
+ * (correlationId) заполнена, отчет строится по пакету целиком. Группа, не заполненная к таймауту,
+ * выпускается частичным отчетом с заголовками своего первого элемента.
+ * Группа снимается под своей блокировкой и оставляет метку, как в ShardedReportAggregator: отчет по ней
+ * выпускается ровно один раз, а поздние элементы отбрасываются, а не создают группу заново.
+ */
+@Slf4j
+public class ColumnarReportAggregator {
+
+    /**
+     * Меток снятых групп; старые вытесняются.
+     */
+    private static final int TOMBSTONES = 1024;
+
+    private final Map<Object, Group> groups = new ConcurrentHashMap<>();
+
+    /**
+     * Метки снятых групп; по этой же блокировке создаются и снимаются группы.
+     */
+    private final Map<Object, Boolean> tombstones = new LinkedHashMap<>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Object, Boolean> eldest) {
+            return size() > TOMBSTONES;
+        }
+    };
+
+    private final AtomicLong expiredGroups = new AtomicLong();
+
+    private final AtomicLong expiredItems = new AtomicLong();
+
+    private final AtomicLong lateItems = new AtomicLong();
+
+    private final TopKTrackerFactory topKTrackerFactory;
+
+    private final int topQueriesLimit;
+
+    private final Clock clock;
+
+    /**
+     * Получает накопитель каждого выпущенного отчета, полного или частичного.
+     */
+    private Consumer<ReportAccumulator> batchListener = batch -> { };
+
+    public ColumnarReportAggregator(TopKTrackerFactory topKTrackerFactory, int topQueriesLimit, Clock clock) {
+        this.topKTrackerFactory = topKTrackerFactory;
+        this.topQueriesLimit = topQueriesLimit;
+        this.clock = clock;
+    }
+
+    public void setBatchListener(Consumer<ReportAccumulator> batchListener) {
+        this.batchListener = batchListener;
+    }
+
+    /**
+     * @return отчет, если элемент был последним в своей группе, иначе null; null и для элемента уже снятой группы
+     */
+    public AnalyticsReport add(NormalizedQuery query, String source, long geoCell, MessageHeaders headers) {
+        Object correlationId = correlationId(headers, query);
+        Group group = group(correlationId, headers);
+        if (group == null) {
+            return null;
+        }
+        synchronized (group) {
+            group.batch.add(query.getIntent(), query.getText(), source, geoCell);
+            if (!group.isComplete() || !remove(correlationId, group)) {
+                return null;
+            }
+        }
+        return group.toReport();
+    }
+
+    /**
+     * Засчитывает count упавших элементов в заполнение группы.
+     *
+     * @return частичный отчет, если упавшие элементы были последними в группе, иначе null
+     */
+    public AnalyticsReport fail(int count, MessageHeaders headers) {
+        Object correlationId = correlationId(headers, "failed items");
+        Group group = group(correlationId, headers);
+        if (group == null) {
+            return null;
+        }
+        synchronized (group) {
+            group.failed += count;
+            if (!group.isComplete() || !remove(correlationId, group)) {
+                return null;
+            }
+        }
+        return group.toReport();
+    }
+
+    /**
+     * Снимает группы старше timeoutMillis, как groupTimeout с sendPartialResultOnExpiry у агрегатора.
+     *
+     * @return частичные отчеты снятых групп с заголовками их первых элементов (в том числе replyChannel)
+     */
+    public List<Message<AnalyticsReport>> expireStaleGroups(long timeoutMillis) {
+        long deadline = clock.millis() - timeoutMillis;
+        List<Message<AnalyticsReport>> reports = new ArrayList<>();
+        groups.forEach((correlationId, group) -> {
+            if (group.createdAt >= deadline) {
+                return;
+            }
+            synchronized (group) {
+                if (!remove(correlationId, group)) {
+                    return;
+                }
+                log.warn("Columnar aggregation group {} expired with {}/{} items", correlationId, group.batch.size(),
+                        group.size);
+                expiredGroups.incrementAndGet();
+                expiredItems.addAndGet(group.batch.size());
+                reports.add(MessageBuilder.withPayload(group.toReport()).copyHeaders(group.headers).build());
+            }
+        });
+        return reports;
+    }
+
+    public int activeGroups() {
+        return groups.size();
+    }
+
+    public long expiredGroups() {
+        return expiredGroups.get();
+    }
+
+    /**
+     * Число элементов, попавших в группы, удаленные по таймауту.
+     */
+    public long expiredItems() {
+        return expiredItems.get();
+    }
+
+    /**
+     * Число элементов и упавших элементов, пришедших после снятия своей группы и отброшенных.
+     */
+    public long lateItems() {
+        return lateItems.get();
+    }
+
+    private static Object correlationId(MessageHeaders headers, Object item) {
+        Object correlationId = headers.get(IntegrationMessageHeaderAccessor.CORRELATION_ID);
+        if (correlationId == null || headers.get(IntegrationMessageHeaderAccessor.SEQUENCE_SIZE) == null) {
+            throw new IllegalStateException("Item has no sequence details, was it produced by split()? " + item);
+        }
+        return correlationId;
+    }
+
+    /**
+     * @return группа correlationId, новая, если ее еще не было, или null, если она уже снята
+     */
+    private Group group(Object correlationId, MessageHeaders headers) {
+        Group group = groups.get(correlationId);
+        if (group != null) {
+            return group;
+        }
+        synchronized (tombstones) {
+            group = groups.get(correlationId);
+            if (group == null && !tombstones.containsKey(correlationId)) {
+                group = new Group(headers.get(IntegrationMessageHeaderAccessor.SEQUENCE_SIZE, Integer.class), headers);
+                groups.put(correlationId, group);
+            }
+        }
+        if (group == null) {
+            lateItems.incrementAndGet();
+            log.debug("Dropping late item of released aggregation group {}", correlationId);
+        }
+        return group;
+    }
+
+    private boolean remove(Object correlationId, Group group) {
+        synchronized (tombstones) {
+            if (!groups.remove(correlationId, group)) {
+                return false;
+            }
+            tombstones.put(correlationId, Boolean.TRUE);
+            return true;
+        }
+    }
+
+    private final class Group {
+        private final ClassifiedBatch batch;
+
+        private final int size;
+
+        private final MessageHeaders headers;
+
+        private final long createdAt;
+
+        private int failed;
+
+        private Group(int size, MessageHeaders headers) {
+            this.size = size;
+            this.headers = headers;
+            this.createdAt = clock.millis();
+            this.batch = new ClassifiedBatch(size);
+        }
+
+        private boolean isComplete() {
+            return batch.size() + failed >= size;
+        }
+
+        private AnalyticsReport toReport() {
+            ReportAccumulator total = new ReportAccumulator(() -> topKTrackerFactory.create(size));
+            total.add(batch);
+            batchListener.accept(total);
+            return total.toReport(topQueriesLimit)
+                    .withIncomplete(Math.max(0, size - batch.size() - failed), failed);
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package ru.otus.hw.integration;
+
+import lombok.Value;
+
+/**
+ * Замена элементов группы, обработка которых завершилась ошибкой: агрегатор засчитывает их в заполнение
+ * группы, и вызывающий получает частичный отчет сразу, а не по таймауту.
+ */
+@Value
+public class FailedItems {
+    int count;
+}
@@ -0,0 +1,511 @@
+package ru.otus.hw.integration;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.integration.IntegrationMessageHeaderAccessor;
+import org.springframework.integration.store.MessageGroup;
+import org.springframework.integration.store.SimpleMessageStore;
+import org.springframework.integration.support.MessageBuilder;
+import org.springframework.messaging.Message;
+import ru.otus.hw.domain.ClassifiedItem;
+import ru.otus.hw.domain.Intent;
+import ru.otus.hw.util.GeoUtil;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Хранилище групп агрегатора с журналом долговечности на диске. Сами группы, как в SimpleMessageStore,
+ * лежат в куче и читаются оттуда; файлы только повторяют их, чтобы группы пережили падение процесса
+ * (но не ОС: force() не вызывается), и при старте группы восстанавливаются из них.
+ * Кучу и нагрузку на сборщик мусора это хранилище не уменьшает: сообщения групп остаются в куче ровно
+ * как в SimpleMessageStore, вынос их из кучи в его задачу не входит. Объем кучи сдерживает только capacity.
+ * У каждой группы свой файл, отображенный в память кусками по segmentSize байт, поэтому запись элемента -
+ * копирование в страничный кэш без системного вызова. Файлы снятых групп, уместившиеся в один кусок,
+ * очищаются и до FREE_JOURNALS штук переиспользуются вместе с отображением, остальные удаляются.
+ * Заголовки replyChannel/errorChannel не сохраняются, поэтому восстановленные группы уже некому вернуть:
+ * они дожидаются истечения у агрегатора (expireTimeout) и уходят частичным отчетом в unclaimedReportChannel.
+ * Число сообщений во всех группах ограничено capacity: сверх него добавление отклоняется,
+ * а не ждет освобождения места, так как место освобождается только завершением тех же групп.
+ * FailedItems принимаются и сверх capacity: ими закрываются в том числе отклоненные здесь элементы,
+ * и без них группа дожидалась бы истечения.
+ * Хранит только сообщения с ClassifiedItem и FailedItems.
+ */
+@Slf4j
+public class FileBackedMessageGroupStore extends SimpleMessageStore implements DisposableBean {
+
+    private static final String JOURNAL_SUFFIX = ".journal";
+
+    private static final int MAGIC = 0x48573135;
+
+    private static final int FREE_JOURNALS = 16;
+
+    private static final byte[] ZEROS = new byte[4096];
+
+    private static final byte GROUP_ID_UUID = 0;
+
+    private static final byte GROUP_ID_STRING = 1;
+
+    private static final byte OP_ADD = 1;
+
+    private static final byte OP_COMPLETE = 2;
+
+    private static final byte OP_LAST_RELEASED = 3;
+
+    private static final byte OP_CONDITION = 4;
+
+    private static final byte OP_FAILED = 5;
+
+    private static final Intent[] INTENTS = Intent.values();
+
+    private final Map<Object, Journal> journals = new ConcurrentHashMap<>();
+
+    private final BlockingQueue<Journal> freeJournals = new ArrayBlockingQueue<>(FREE_JOURNALS);
+
+    private final AtomicInteger size = new AtomicInteger();
+
+    private final Path directory;
+
+    private final int capacity;
+
+    private final int segmentSize;
+
+    private final int recoveredGroups;
+
+    /**
+     * @param capacity    максимум сообщений во всех группах, 0 - без ограничения
+     * @param segmentSize размер куска файла, отображаемого в память за один раз
+     */
+    public FileBackedMessageGroupStore(Path directory, int capacity, int segmentSize) {
+        if (segmentSize < 64) {
+            throw new IllegalArgumentException("segmentSize is too small: " + segmentSize);
+        }
+        this.directory = directory;
+        this.capacity = capacity;
+        this.segmentSize = segmentSize;
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot create message store directory " + directory, e);
+        }
+        this.recoveredGroups = recover();
+    }
+
+    public int getRecoveredGroups() {
+        return recoveredGroups;
+    }
+
+    /**
+     * Число сообщений во всех группах, то же, что ограничивается capacity.
+     */
+    public int getSize() {
+        return size.get();
+    }
+
+    /**
+     * SimpleMessageStore добавляет сообщения мимо doAddMessagesToGroup, поэтому журнал пишется здесь,
+     * под той же (реентерабельной) блокировкой группы. Сообщения проверяются до записи, а в память
+     * попадают только после журнала, поэтому отклоненное добавление не меняет ни то, ни другое.
+     */
+    @Override
+    public void addMessagesToGroup(Object groupId, Message<?>... messages) {
+        boolean items = false;
+        for (Message<?> message : messages) {
+            if (message.getPayload() instanceof ClassifiedItem) {
+                items = true;
+            } else if (!(message.getPayload() instanceof FailedItems)) {
+                throw new IllegalArgumentException("Only ClassifiedItem and FailedItems payloads can be stored, got "
+                        + message.getPayload().getClass().getName());
+            }
+        }
+        boolean checkCapacity = capacity > 0 && items;
+        executeLocked(groupId, () -> {
+            int newSize = size.addAndGet(messages.length);
+            if (checkCapacity && newSize > capacity) {
+                size.addAndGet(-messages.length);
+                throw new IllegalStateException("Message store capacity " + capacity + " exceeded, group "
+                        + groupId);
+            }
+            Journal journal = journalFor(groupId);
+            for (Message<?> message : messages) {
+                journal.appendItem(message);
+            }
+            super.addMessagesToGroup(groupId, messages);
+        });
+    }
+
+    @Override
+    protected void doCompleteGroup(Object groupId) {
+        super.doCompleteGroup(groupId);
+        journalFor(groupId).append(OP_COMPLETE, new byte[0]);
+    }
+
+    @Override
+    protected void doSetLastReleasedSequenceNumberForGroup(Object groupId, int sequenceNumber) {
+        super.doSetLastReleasedSequenceNumberForGroup(groupId, sequenceNumber);
+        journalFor(groupId).append(OP_LAST_RELEASED, ByteBuffer.allocate(4).putInt(sequenceNumber).array());
+    }
+
+    @Override
+    protected void doSetGroupCondition(Object groupId, String condition) {
+        super.doSetGroupCondition(groupId, condition);
+        journalFor(groupId).append(OP_CONDITION, condition == null ? new byte[0] : utf8(condition));
+    }
+
+    @Override
+    protected void doRemoveMessageGroup(Object groupId) {
+        size.addAndGet(-messageGroupSize(groupId));
+        super.doRemoveMessageGroup(groupId);
+        Journal journal = journals.remove(groupId);
+        if (journal != null) {
+            release(journal);
+        }
+    }
+
+    /**
+     * Удаление отдельных сообщений (агрегатор без expireGroupsUponCompletion) редкое,
+     * поэтому журнал группы просто переписывается из текущего состояния.
+     */
+    @Override
+    protected void doRemoveMessagesFromGroup(Object groupId, Collection<Message<?>> messages) {
+        int before = messageGroupSize(groupId);
+        super.doRemoveMessagesFromGroup(groupId, messages);
+        afterRemove(groupId, before);
+    }
+
+    @Override
+    protected boolean doRemoveMessageFromGroupById(Object groupId, UUID messageId) {
+        int before = messageGroupSize(groupId);
+        boolean removed = super.doRemoveMessageFromGroupById(groupId, messageId);
+        afterRemove(groupId, before);
+        return removed;
+    }
+
+    @Override
+    protected Message<?> doPollMessageFromGroup(Object groupId) {
+        int before = messageGroupSize(groupId);
+        Message<?> message = super.doPollMessageFromGroup(groupId);
+        afterRemove(groupId, before);
+        return message;
+    }
+
+    @Override
+    public void destroy() {
+        journals.values().forEach(Journal::close);
+        journals.clear();
+        for (Journal journal = freeJournals.poll(); journal != null; journal = freeJournals.poll()) {
+            journal.delete();
+        }
+    }
+
+    private void afterRemove(Object groupId, int sizeBefore) {
+        int removed = sizeBefore - messageGroupSize(groupId);
+        if (removed == 0) {
+            return;
+        }
+        size.addAndGet(-removed);
+        MessageGroup group = getMessageGroup(groupId);
+        Journal journal = createJournal(groupId);
+        group.getMessages().forEach(journal::appendItem);
+        if (group.getLastReleasedMessageSequenceNumber() > 0) {
+            journal.append(OP_LAST_RELEASED,
+                    ByteBuffer.allocate(4).putInt(group.getLastReleasedMessageSequenceNumber()).array());
+        }
+        if (group.isComplete()) {
+            journal.append(OP_COMPLETE, new byte[0]);
+        }
+        Journal old = journals.put(groupId, journal);
+        if (old != null) {
+            release(old);
+        }
+    }
+
+    private void release(Journal journal) {
+        if (!journal.clear() || !freeJournals.offer(journal)) {
+            journal.delete();
+        }
+    }
+
+    private Journal journalFor(Object groupId) {
+        return journals.computeIfAbsent(groupId, this::createJournal);
+    }
+
+    private Journal createJournal(Object groupId) {
+        byte[] id = groupId instanceof UUID ? null : utf8(groupId.toString());
+        ByteBuffer header = ByteBuffer.allocate(4 + 1 + (id == null ? 16 : 4 + id.length)).putInt(MAGIC);
+        if (groupId instanceof UUID uuid) {
+            header.put(GROUP_ID_UUID).putLong(uuid.getMostSignificantBits()).putLong(uuid.getLeastSignificantBits());
+        } else {
+            header.put(GROUP_ID_STRING).putInt(id.length).put(id);
+        }
+        Journal journal = freeJournals.poll();
+        if (journal == null) {
+            journal = new Journal(directory.resolve(UUID.randomUUID() + JOURNAL_SUFFIX), 0);
+        }
+        journal.write(header.flip());
+        return journal;
+    }
+
+    private int recover() {
+        int groups = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + JOURNAL_SUFFIX)) {
+            for (Path file : files) {
+                if (recover(file)) {
+                    groups++;
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read message store directory " + directory, e);
+        }
+        if (groups > 0) {
+            log.warn("Recovered {} in-flight aggregation groups ({} messages) from {}", groups, size.get(), directory);
+        }
+        return groups;
+    }
+
+    private boolean recover(Path file) throws IOException {
+        ByteBuffer data;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        Object groupId;
+        try {
+            int magic = data.getInt();
+            if (magic == 0) {
+                // очищенный файл из пула свободных журналов
+                Files.deleteIfExists(file);
+                return false;
+            }
+            if (magic != MAGIC) {
+                log.warn("Skipping {}: not a message group journal", file);
+                return false;
+            }
+            groupId = data.get() == GROUP_ID_UUID
+                    ? new UUID(data.getLong(), data.getLong())
+                    : new String(bytes(data, data.getInt()), StandardCharsets.UTF_8);
+        } catch (BufferUnderflowException e) {
+            Files.deleteIfExists(file);
+            return false;
+        }
+        int end = replay(groupId, data);
+        if (messageGroupSize(groupId) == 0) {
+            super.doRemoveMessageGroup(groupId);
+            Files.deleteIfExists(file);
+            return false;
+        }
+        journals.put(groupId, new Journal(file, end));
+        return true;
+    }
+
+    /**
+     * Проигрывает записи журнала до первой пустой (недописанной) и возвращает позицию конца данных.
+     */
+    private int replay(Object groupId, ByteBuffer data) {
+        while (data.remaining() >= 4) {
+            int start = data.position();
+            int length = data.getInt();
+            if (length <= 0 || length > data.remaining()) {
+                return start;
+            }
+            ByteBuffer record = data.slice(data.position(), length);
+            data.position(data.position() + length);
+            byte op = record.get();
+            switch (op) {
+                case OP_ADD, OP_FAILED -> {
+                    super.addMessagesToGroup(groupId, decodeItem(groupId, op, record));
+                    size.incrementAndGet();
+                }
+                case OP_COMPLETE -> super.doCompleteGroup(groupId);
+                case OP_LAST_RELEASED -> super.doSetLastReleasedSequenceNumberForGroup(groupId, record.getInt());
+                case OP_CONDITION -> super.doSetGroupCondition(groupId, record.hasRemaining()
+                        ? new String(bytes(record, record.remaining()), StandardCharsets.UTF_8) : null);
+                default -> {
+                    return start;
+                }
+            }
+        }
+        return data.position();
+    }
+
+    private static Message<?> decodeItem(Object groupId, byte op, ByteBuffer record) {
+        int sequenceNumber = record.getInt();
+        int sequenceSize = record.getInt();
+        Object payload;
+        if (op == OP_FAILED) {
+            payload = new FailedItems(record.getInt());
+        } else {
+            Intent intent = INTENTS[record.get()];
+            String id = readString(record);
+            String query = readString(record);
+            String source = readString(record);
+            // журналы без ячейки записаны до ее появления
+            long geoCell = record.remaining() >= 8 ? record.getLong() : GeoUtil.NO_CELL;
+            payload = new ClassifiedItem(id, intent, query, source, geoCell);
+        }
+        return MessageBuilder.withPayload(payload)
+                .setCorrelationId(groupId)
+                .setSequenceNumber(sequenceNumber)
+                .setSequenceSize(sequenceSize)
+                .build();
+    }
+
+    private static byte[] utf8(String s) {
+        return s == null ? null : s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static int length(byte[] bytes) {
+        return bytes == null ? 0 : bytes.length;
+    }
+
+    private static void writeString(ByteBuffer buffer, byte[] bytes) {
+        if (bytes == null) {
+            buffer.putInt(-1);
+        } else {
+            buffer.putInt(bytes.length).put(bytes);
+        }
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        return length < 0 ? null : new String(bytes(buffer, length), StandardCharsets.UTF_8);
+    }
+
+    private static byte[] bytes(ByteBuffer buffer, int length) {
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    /**
+     * Журнал одной группы. Записи - [длина][операция][данные]; файл дорастает отображением следующего куска,
+     * хвост куска остается нулевым, и нулевая длина при восстановлении означает конец журнала.
+     * Прежние куски отображения освобождает сборщик мусора, явного unmap в JDK нет.
+     * Доступ под блокировкой группы в AbstractMessageGroupStore, своей синхронизации не нужно.
+     */
+    private final class Journal {
+
+        private final Path file;
+
+        private final FileChannel channel;
+
+        private MappedByteBuffer region;
+
+        private long regionStart;
+
+        private Journal(Path file, long position) {
+            this.file = file;
+            try {
+                this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                        StandardOpenOption.WRITE);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot open message group journal " + file, e);
+            }
+            map(position, segmentSize);
+        }
+
+        /**
+         * Элемент пишется сразу в отображенный кусок, без промежуточного буфера.
+         */
+        private void appendItem(Message<?> message) {
+            var headers = new IntegrationMessageHeaderAccessor(message);
+            if (message.getPayload() instanceof FailedItems failed) {
+                ensureRoom(4 + 1 + 3 * 4);
+                region.putInt(1 + 3 * 4)
+                        .put(OP_FAILED)
+                        .putInt(headers.getSequenceNumber())
+                        .putInt(headers.getSequenceSize())
+                        .putInt(failed.getCount());
+                return;
+            }
+            ClassifiedItem item = (ClassifiedItem) message.getPayload();
+            byte[] id = utf8(item.getId());
+            byte[] query = utf8(item.getNormalizedQuery());
+            byte[] source = utf8(item.getSource());
+            int length = 1 + 4 + 4 + 1 + 3 * 4 + length(id) + length(query) + length(source) + 8;
+            ensureRoom(4 + length);
+            region.putInt(length)
+                    .put(OP_ADD)
+                    .putInt(headers.getSequenceNumber())
+                    .putInt(headers.getSequenceSize())
+                    .put((byte) item.getIntent().ordinal());
+            writeString(region, id);
+            writeString(region, query);
+            writeString(region, source);
+            region.putLong(item.getGeoCell());
+        }
+
+        private void append(byte op, byte[] data) {
+            ensureRoom(4 + 1 + data.length);
+            region.putInt(1 + data.length).put(op).put(data);
+        }
+
+        private void write(ByteBuffer data) {
+            ensureRoom(data.remaining());
+            region.put(data);
+        }
+
+        private void ensureRoom(int bytes) {
+            if (region.remaining() < bytes) {
+                map(regionStart + region.position(), Math.max(segmentSize, bytes));
+            }
+        }
+
+        private void map(long position, int length) {
+            try {
+                region = channel.map(FileChannel.MapMode.READ_WRITE, position, length);
+                regionStart = position;
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot map message group journal " + file, e);
+            }
+        }
+
+        /**
+         * Обнуляет записанное, начиная с MAGIC, чтобы файл можно было отдать другой группе; false, если журнал
+         * уже вырос за первый кусок и переиспользовать его невыгодно.
+         */
+        private boolean clear() {
+            if (regionStart != 0) {
+                return false;
+            }
+            int used = region.position();
+            for (int offset = 0; offset < used; offset += ZEROS.length) {
+                region.put(offset, ZEROS, 0, Math.min(ZEROS.length, used - offset));
+            }
+            region.position(0);
+            return true;
+        }
+
+        private void close() {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                log.warn("Cannot close message group journal {}", file, e);
+            }
+        }
+
+        private void delete() {
+            close();
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                log.warn("Cannot delete message group journal {}", file, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package ru.otus.hw.integration;
+
+import org.springframework.integration.annotation.Gateway;
+import org.springframework.integration.annotation.MessagingGateway;
+import reactor.core.publisher.Mono;
+import ru.otus.hw.domain.AnalyticsReport;
+import ru.otus.hw.domain.SearchRequest;
+
+import java.util.List;
+
+/**
+ * Таймаут ответа и частичные отчеты - как у SearchAnalyticsGateway; по таймауту Mono завершается ошибкой.
+ */
+@MessagingGateway(defaultReplyTimeout = "#{@analyticsReplyTimeout}", errorOnTimeout = true)
+public interface ReactiveSearchAnalyticsGateway {
+
+    /**
+     * Пакет отправляется только при подписке, ответ приходит без блокировки вызывающего потока.
+     */
+    @Gateway(requestChannel = "receiveSearchBatchChannel", replyChannel = "returnReportChannel")
+    Mono<AnalyticsReport> process(List<SearchRequest> batch);
+}
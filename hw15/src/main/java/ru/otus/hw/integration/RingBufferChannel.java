@@ -0,0 +1,383 @@
+package ru.otus.hw.integration;
+
+import org.springframework.context.SmartLifecycle;
+import org.springframework.integration.channel.AbstractSubscribableChannel;
+import org.springframework.integration.channel.ChannelUtils;
+import org.springframework.integration.dispatcher.MessageDispatcher;
+import org.springframework.integration.dispatcher.UnicastingDispatcher;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageDeliveryException;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.util.ErrorHandler;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Замена executor-канала на заранее выделенном кольцевом буфере в духе Disruptor: отправитель занимает слот
+ * CAS-ом по курсору записи и кладет в него само сообщение, без узла LinkedBlockingQueue и Runnable на каждое
+ * сообщение. Собственные потоки канала забирают за один CAS до batchSize готовых подряд слотов, сразу
+ * освобождают их для отправителей и передают сообщения подписчикам по очереди (как ExecutorChannel -
+ * одному подписчику с балансировкой). Номер круга в слоте (как в ограниченной очереди Вьюкова) отличает
+ * записанный слот от свободного, поэтому отправителей и потребителей может быть сколько угодно.
+ * Когда буфер полон, отправитель ждет, а не выполняет работу сам, как при CallerRunsPolicy; ожидание
+ * отправителей и потребителей задает WaitStrategy. Ошибки обработки уходят в errorChannel сообщения,
+ * как у ExecutorChannel. Потоки канала запускаются и останавливаются как SmartLifecycle, в фазе раньше
+ * конечных точек: при остановке потребители дорабатывают то, что уже в буфере, после остановки отправителей.
+ */
+public class RingBufferChannel extends AbstractSubscribableChannel implements SmartLifecycle {
+
+    /**
+     * Раньше конечных точек интеграции при старте и позже них при остановке.
+     */
+    public static final int PHASE = Integer.MIN_VALUE / 2;
+
+    private static final int SPIN_TRIES = 100;
+
+    private static final int YIELD_TRIES = 200;
+
+    private static final long PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+    private static final long BLOCKING_TIMEOUT_MILLIS = 10;
+
+    public enum WaitStrategy {
+        /**
+         * Постоянный опрос с Thread.onSpinWait: минимальная задержка, но каждый ждущий поток занимает ядро.
+         * Только если свободных ядер больше, чем потоков канала и отправителей, иначе они вытесняют друг друга.
+         */
+        BUSY_SPIN,
+        /**
+         * Опрос, затем Thread.yield: задержка почти как у BUSY_SPIN, ядро отдается другим готовым потокам.
+         */
+        YIELDING,
+        /**
+         * Опрос, yield, затем парковка на 100 мкс: простаивающий канал почти не тратит CPU.
+         */
+        SLEEPING,
+        /**
+         * Ожидание на Condition с сигналом от другой стороны; сигнал отправляется, только если кто-то ждет.
+         */
+        BLOCKING
+    }
+
+    private final Message<?>[] slots;
+
+    /**
+     * Для слота i: позиция + 1, если сообщение записано, позиция + емкость, если слот снова свободен.
+     */
+    private final AtomicLongArray sequences;
+
+    private final int mask;
+
+    private final AtomicLong tail = new AtomicLong();
+
+    private final AtomicLong head = new AtomicLong();
+
+    private final int consumers;
+
+    private final int batchSize;
+
+    private final WaitStrategy waitStrategy;
+
+    private final String threadNamePrefix;
+
+    private final UnicastingDispatcher delivery = new UnicastingDispatcher();
+
+    private final MessageDispatcher dispatcher = new RingDispatcher();
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final Condition notEmpty = lock.newCondition();
+
+    private final Condition notFull = lock.newCondition();
+
+    private final AtomicInteger waitingConsumers = new AtomicInteger();
+
+    private final AtomicInteger waitingProducers = new AtomicInteger();
+
+    private final List<Thread> threads = new ArrayList<>();
+
+    private volatile boolean running;
+
+    private ErrorHandler errorHandler;
+
+    /**
+     * @param bufferSize емкость, округляется вверх до степени двойки
+     */
+    public RingBufferChannel(int bufferSize, int consumers, int batchSize, WaitStrategy waitStrategy,
+                             String threadNamePrefix) {
+        if (bufferSize <= 0 || consumers <= 0 || batchSize <= 0) {
+            throw new IllegalArgumentException("bufferSize, consumers and batchSize must be positive: "
+                    + bufferSize + ", " + consumers + ", " + batchSize);
+        }
+        int capacity = bufferSize == 1 ? 1 : Integer.highestOneBit(bufferSize - 1) << 1;
+        this.slots = new Message<?>[capacity];
+        this.sequences = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            sequences.set(i, i);
+        }
+        this.mask = capacity - 1;
+        this.consumers = consumers;
+        this.batchSize = Math.min(batchSize, capacity);
+        this.waitStrategy = waitStrategy;
+        this.threadNamePrefix = threadNamePrefix;
+    }
+
+    public void setErrorHandler(ErrorHandler errorHandler) {
+        this.errorHandler = errorHandler;
+    }
+
+    public int getCapacity() {
+        return slots.length;
+    }
+
+    /**
+     * Сообщения, записанные в буфер и еще не забранные потребителями.
+     */
+    public int size() {
+        return (int) Math.max(0, tail.get() - head.get());
+    }
+
+    @Override
+    protected MessageDispatcher getDispatcher() {
+        return dispatcher;
+    }
+
+    @Override
+    protected void onInit() {
+        super.onInit();
+        if (errorHandler == null && getBeanFactory() != null) {
+            errorHandler = ChannelUtils.getErrorHandler(getBeanFactory());
+        }
+    }
+
+    @Override
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        for (int i = 0; i < consumers; i++) {
+            Thread thread = new Thread(this::consume, threadNamePrefix + (i + 1));
+            thread.setDaemon(true);
+            threads.add(thread);
+            thread.start();
+        }
+    }
+
+    /**
+     * Новые сообщения отклоняются, потребители дорабатывают буфер; ждет их завершения до 10 с.
+     */
+    @Override
+    public synchronized void stop() {
+        running = false;
+        signal(notEmpty, waitingConsumers);
+        signal(notFull, waitingProducers);
+        for (Thread thread : threads) {
+            try {
+                thread.join(TimeUnit.SECONDS.toMillis(10));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        threads.clear();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        return PHASE;
+    }
+
+    @Override
+    public void destroy() {
+        stop();
+        super.destroy();
+    }
+
+    private void publish(Message<?> message) {
+        int attempt = 0;
+        while (true) {
+            if (!running) {
+                throw new MessageDeliveryException(message, "Channel '" + getComponentName() + "' is stopped");
+            }
+            long pos = tail.get();
+            int index = (int) pos & mask;
+            long diff = sequences.get(index) - pos;
+            if (diff == 0 && tail.compareAndSet(pos, pos + 1)) {
+                slots[index] = message;
+                sequences.set(index, pos + 1);
+                signal(notEmpty, waitingConsumers);
+                return;
+            }
+            if (diff < 0) {
+                idle(attempt, notFull, waitingProducers, () -> !isFull() || !running);
+                attempt = Math.min(attempt + 1, YIELD_TRIES);
+            }
+        }
+    }
+
+    private void consume() {
+        Message<?>[] batch = new Message<?>[batchSize];
+        int attempt = 0;
+        while (true) {
+            int n = claim(batch);
+            if (n > 0) {
+                attempt = 0;
+                for (int i = 0; i < n; i++) {
+                    Message<?> message = batch[i];
+                    batch[i] = null;
+                    handle(message);
+                }
+            } else if (n == 0) {
+                if (!running) {
+                    return;
+                }
+                idle(attempt, notEmpty, waitingConsumers, () -> !isEmpty() || !running);
+                attempt = Math.min(attempt + 1, YIELD_TRIES);
+            }
+        }
+    }
+
+    /**
+     * @return число забранных сообщений, 0 - буфер пуст, -1 - слоты забрал другой потребитель
+     */
+    private int claim(Message<?>[] batch) {
+        long pos = head.get();
+        int n = 0;
+        while (n < batchSize && sequences.get((int) (pos + n) & mask) == pos + n + 1) {
+            n++;
+        }
+        if (n == 0) {
+            return 0;
+        }
+        if (!head.compareAndSet(pos, pos + n)) {
+            return -1;
+        }
+        for (int i = 0; i < n; i++) {
+            int index = (int) (pos + i) & mask;
+            batch[i] = slots[index];
+            slots[index] = null;
+            sequences.set(index, pos + i + slots.length);
+        }
+        signal(notFull, waitingProducers);
+        return n;
+    }
+
+    private void handle(Message<?> message) {
+        try {
+            delivery.dispatch(message);
+        } catch (Throwable t) {
+            if (errorHandler != null) {
+                errorHandler.handleError(t);
+            } else {
+                logger.error(t, () -> "Failed to handle message in channel '" + getComponentName() + "'");
+            }
+        }
+    }
+
+    private boolean isEmpty() {
+        long pos = head.get();
+        return sequences.get((int) pos & mask) != pos + 1;
+    }
+
+    private boolean isFull() {
+        long pos = tail.get();
+        return sequences.get((int) pos & mask) < pos;
+    }
+
+    private void idle(int attempt, Condition condition, AtomicInteger waiting, BooleanSupplier ready) {
+        switch (waitStrategy) {
+            case BUSY_SPIN -> Thread.onSpinWait();
+            case YIELDING -> {
+                if (attempt < SPIN_TRIES) {
+                    Thread.onSpinWait();
+                } else {
+                    Thread.yield();
+                }
+            }
+            case SLEEPING -> {
+                if (attempt < SPIN_TRIES) {
+                    Thread.onSpinWait();
+                } else if (attempt < YIELD_TRIES) {
+                    Thread.yield();
+                } else {
+                    LockSupport.parkNanos(PARK_NANOS);
+                }
+            }
+            case BLOCKING -> block(condition, waiting, ready);
+            default -> throw new IllegalStateException("Unknown wait strategy " + waitStrategy);
+        }
+    }
+
+    /**
+     * Счетчик ждущих увеличивается до проверки условия, а другая сторона читает его после записи слота,
+     * поэтому сигнал не теряется; ожидание с таймаутом - страховка на остановку канала.
+     */
+    private void block(Condition condition, AtomicInteger waiting, BooleanSupplier ready) {
+        lock.lock();
+        waiting.incrementAndGet();
+        try {
+            while (!ready.getAsBoolean()) {
+                condition.await(BLOCKING_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MessageDeliveryException("Interrupted while waiting on channel '" + getComponentName() + "'");
+        } finally {
+            waiting.decrementAndGet();
+            lock.unlock();
+        }
+    }
+
+    private void signal(Condition condition, AtomicInteger waiting) {
+        if (waiting.get() > 0) {
+            lock.lock();
+            try {
+                condition.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Подписчики хранятся в UnicastingDispatcher, а dispatch лишь кладет сообщение в буфер.
+     */
+    private final class RingDispatcher implements MessageDispatcher {
+
+        @Override
+        public boolean addHandler(MessageHandler handler) {
+            return delivery.addHandler(handler);
+        }
+
+        @Override
+        public boolean removeHandler(MessageHandler handler) {
+            return delivery.removeHandler(handler);
+        }
+
+        @Override
+        public boolean dispatch(Message<?> message) {
+            publish(message);
+            return true;
+        }
+
+        @Override
+        public int getHandlerCount() {
+            return delivery.getHandlerCount();
+        }
+    }
+}
@@ -7,9 +7,20 @@ import ru.otus.hw.domain.SearchRequest;
 
 import java.util.List;
 
-@MessagingGateway
+/**
+ * Ответ ждется не дольше analyticsReplyTimeout, после чего вызов завершается MessageTimeoutException.
+ * Если часть элементов пакета упала или не дошла за groupTimeout, приходит отчет с partial=true.
+ */
+@MessagingGateway(defaultReplyTimeout = "#{@analyticsReplyTimeout}", errorOnTimeout = true)
 public interface SearchAnalyticsGateway {
 
     @Gateway(requestChannel = "receiveSearchBatchChannel", replyChannel = "returnReportChannel")
     AnalyticsReport process(List<SearchRequest> batch);
+
+    /**
+     * Потоковый режим: запрос учитывается в текущем окне, отчеты по окнам публикуются в streamReportChannel.
+     * Если обработка отстает, вызов ждет освобождения места в реактивном канале.
+     */
+    @Gateway(requestChannel = "receiveSearchStreamChannel")
+    void submit(SearchRequest request);
 }
@@ -0,0 +1,33 @@
+package ru.otus.hw.integration;
+
+import java.nio.file.Path;
+import java.util.Locale;
+
+/**
+ * Формат файла журнала запросов для SearchLogReader.
+ */
+public enum SearchLogFormat {
+    /**
+     * По объекту JSON в строке: {"id":..,"queryText":..,"source":..,"timestamp":..}, timestamp - ISO-8601
+     * или миллисекунды эпохи. Неизвестные поля пропускаются.
+     */
+    NDJSON,
+    /**
+     * Колонки id,queryText,source,timestamp с кавычками по RFC 4180; строка заголовка пропускается.
+     */
+    CSV;
+
+    /**
+     * Формат по расширению: .ndjson/.jsonl/.json - NDJSON, .csv - CSV.
+     */
+    public static SearchLogFormat of(Path file) {
+        String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+        if (name.endsWith(".csv")) {
+            return CSV;
+        }
+        if (name.endsWith(".ndjson") || name.endsWith(".jsonl") || name.endsWith(".json")) {
+            return NDJSON;
+        }
+        throw new IllegalArgumentException("Unknown search log format: " + file);
+    }
+}
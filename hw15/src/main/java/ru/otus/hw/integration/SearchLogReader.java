@@ -0,0 +1,292 @@
+package ru.otus.hw.integration;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import lombok.extern.slf4j.Slf4j;
+import ru.otus.hw.domain.SearchRequest;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Потоковое чтение журнала запросов через отображение файла в память окнами по regionSize байт.
+ * Без копирования только выделение строки: она - срез отображенного буфера. Дальше байты копируются:
+ * поля CSV собираются в переиспользуемый scratch, а Jackson читает NDJSON через ByteBufferInputStream
+ * в свой буфер.
+ * Строки Java создаются только для значений полей. Строка, не поместившаяся в окно, начинает следующее окно.
+ * Строки, которые не удалось разобрать, пропускаются и считаются в malformed(). Не потокобезопасен.
+ */
+@Slf4j
+public class SearchLogReader implements Closeable {
+
+    private static final JsonFactory JSON = new JsonFactory();
+
+    private static final String[] CSV_HEADER = {"id", "queryText", "source", "timestamp"};
+
+    private final FileChannel channel;
+
+    private final SearchLogFormat format;
+
+    private final long size;
+
+    private final int regionSize;
+
+    private final String[] fields = new String[CSV_HEADER.length];
+
+    private byte[] scratch = new byte[256];
+
+    private MappedByteBuffer region;
+
+    private long regionStart;
+
+    private long lines;
+
+    private long malformed;
+
+    public SearchLogReader(Path file, SearchLogFormat format, int regionSize) throws IOException {
+        if (regionSize <= 0) {
+            throw new IllegalArgumentException("regionSize must be positive: " + regionSize);
+        }
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+        this.format = format;
+        this.size = channel.size();
+        this.regionSize = regionSize;
+        map(0);
+    }
+
+    /**
+     * Дочитывает в chunk не более max запросов.
+     *
+     * @return false, если файл закончился и chunk не пополнился
+     */
+    public boolean read(List<SearchRequest> chunk, int max) throws IOException {
+        int before = chunk.size();
+        while (chunk.size() - before < max) {
+            ByteBuffer line = nextLine();
+            if (line == null) {
+                break;
+            }
+            SearchRequest request = parse(line);
+            if (request != null) {
+                chunk.add(request);
+            }
+        }
+        return chunk.size() > before;
+    }
+
+    /**
+     * Позиция в файле, до которой он прочитан.
+     */
+    public long position() {
+        return regionStart + region.position();
+    }
+
+    public long size() {
+        return size;
+    }
+
+    public long lines() {
+        return lines;
+    }
+
+    public long malformed() {
+        return malformed;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private void map(long start) throws IOException {
+        regionStart = start;
+        region = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(regionSize, size - start));
+    }
+
+    /**
+     * Срез следующей непустой строки без перевода строки, или null в конце файла.
+     */
+    private ByteBuffer nextLine() throws IOException {
+        while (true) {
+            int from = region.position();
+            int end = indexOfNewline(region, from);
+            if (end < 0) {
+                if (regionStart + region.limit() < size) {
+                    if (from == 0) {
+                        throw new IOException("Line at offset " + regionStart + " is longer than the mapped region ("
+                                + regionSize + " bytes)");
+                    }
+                    map(regionStart + from);
+                    continue;
+                }
+                if (from == region.limit()) {
+                    return null;
+                }
+                end = region.limit();
+            }
+            region.position(Math.min(end + 1, region.limit()));
+            int to = end > from && region.get(end - 1) == '\r' ? end - 1 : end;
+            if (to > from) {
+                lines++;
+                return region.slice(from, to - from);
+            }
+        }
+    }
+
+    private static int indexOfNewline(ByteBuffer buffer, int from) {
+        for (int i = from, limit = buffer.limit(); i < limit; i++) {
+            if (buffer.get(i) == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private SearchRequest parse(ByteBuffer line) {
+        try {
+            return format == SearchLogFormat.NDJSON ? parseJson(line) : parseCsv(line);
+        } catch (IOException | DateTimeException | NumberFormatException e) {
+            malformed++;
+            log.debug("Malformed search log line {} at {}: {}", lines, position(), e.getMessage());
+            return null;
+        }
+    }
+
+    private SearchRequest parseJson(ByteBuffer line) throws IOException {
+        String id = null;
+        String queryText = null;
+        String source = null;
+        Instant timestamp = null;
+        try (JsonParser parser = JSON.createParser(new ByteBufferInputStream(line))) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("Line is not a JSON object");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                switch (field) {
+                    case "id" -> id = parser.getValueAsString();
+                    case "queryText" -> queryText = parser.getValueAsString();
+                    case "source" -> source = parser.getValueAsString();
+                    case "timestamp" -> timestamp = value == JsonToken.VALUE_NUMBER_INT
+                            ? Instant.ofEpochMilli(parser.getLongValue())
+                            : toInstant(parser.getValueAsString());
+                    default -> parser.skipChildren();
+                }
+            }
+            if (parser.currentToken() != JsonToken.END_OBJECT) {
+                throw new IOException("Unterminated JSON object");
+            }
+        }
+        return new SearchRequest(id, queryText, source, timestamp);
+    }
+
+    /**
+     * Поля по RFC 4180: в кавычках допускаются запятые и удвоенные кавычки.
+     *
+     * @return null для строки заголовка
+     */
+    private SearchRequest parseCsv(ByteBuffer line) throws IOException {
+        int count = 0;
+        int i = 0;
+        int limit = line.limit();
+        while (count < fields.length) {
+            int length = 0;
+            if (i < limit && line.get(i) == '"') {
+                i++;
+                while (true) {
+                    if (i >= limit) {
+                        throw new IOException("Unterminated quoted field");
+                    }
+                    byte b = line.get(i++);
+                    if (b == '"') {
+                        if (i < limit && line.get(i) == '"') {
+                            i++;
+                        } else {
+                            break;
+                        }
+                    }
+                    length = append(length, b);
+                }
+            } else {
+                while (i < limit && line.get(i) != ',') {
+                    length = append(length, line.get(i++));
+                }
+            }
+            fields[count++] = length == 0 ? null : new String(scratch, 0, length, StandardCharsets.UTF_8);
+            if (i >= limit) {
+                break;
+            }
+            if (line.get(i++) != ',') {
+                throw new IOException("Unexpected character after quoted field");
+            }
+        }
+        if (count < 2) {
+            throw new IOException("Expected at least id and queryText, got " + count + " fields");
+        }
+        if (lines == 1 && CSV_HEADER[0].equals(fields[0]) && CSV_HEADER[1].equals(fields[1])) {
+            return null;
+        }
+        return new SearchRequest(fields[0], fields[1], count > 2 ? fields[2] : null,
+                count > 3 ? toInstant(fields[3]) : null);
+    }
+
+    private int append(int length, byte b) {
+        if (length == scratch.length) {
+            scratch = Arrays.copyOf(scratch, length * 2);
+        }
+        scratch[length] = b;
+        return length + 1;
+    }
+
+    /**
+     * ISO-8601 или миллисекунды эпохи.
+     */
+    private static Instant toInstant(String value) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        if (value.indexOf('T') < 0 && value.indexOf('-', 1) < 0) {
+            return Instant.ofEpochMilli(Long.parseLong(value));
+        }
+        return Instant.parse(value);
+    }
+
+    /**
+     * Поток над срезом буфера: read(byte[]) копирует байты в массив вызывающего.
+     */
+    private static final class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        private ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int count = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, count);
+            return count;
+        }
+    }
+}
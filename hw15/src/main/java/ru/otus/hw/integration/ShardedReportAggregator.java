@@ -0,0 +1,268 @@
+package ru.otus.hw.integration;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.integration.IntegrationMessageHeaderAccessor;
+import org.springframework.integration.support.MessageBuilder;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import ru.otus.hw.analytics.ReportAccumulator;
+import ru.otus.hw.analytics.TopKTrackerFactory;
+import ru.otus.hw.domain.AnalyticsReport;
+import ru.otus.hw.domain.ClassifiedItem;
+
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Агрегация пакета без MessageGroupStore. Группы (correlationId) разложены по shards частям по хешу
+ * correlationId, и блокировка части берется только при создании и снятии группы; уже созданная группа
+ * находится без блокировок. Внутри группы элемент учитывается в частичном накопителе своего рабочего потока
+ * (до shards накопителей на группу), поэтому при shards >= числа потоков блокировка накопителя
+ * не конкурирует, в отличие от общей блокировки группы у AggregatingMessageHandler. По заполнении группы
+ * частичные счетчики и топ объединяются в отчет.
+ * Снятая группа, полная или по таймауту, оставляет в своей части метку: поздние элементы с ее correlationId
+ * отбрасываются, а не создают группу заново, которая потом ушла бы лишним частичным отчетом.
+ * Группа, не заполненная к таймауту, выпускается частичным отчетом с заголовками своего первого элемента.
+ */
+@Slf4j
+public class ShardedReportAggregator {
+
+    /**
+     * Меток снятых групп на часть; старые вытесняются.
+     */
+    private static final int TOMBSTONES = 1024;
+
+    private final Partition[] partitions;
+
+    private final AtomicInteger nextSlot = new AtomicInteger();
+
+    private final AtomicLong expiredGroups = new AtomicLong();
+
+    private final AtomicLong expiredItems = new AtomicLong();
+
+    private final AtomicLong lateItems = new AtomicLong();
+
+    private final ThreadLocal<Integer> threadSlot = ThreadLocal.withInitial(nextSlot::getAndIncrement);
+
+    private final int shards;
+
+    private final TopKTrackerFactory topKTrackerFactory;
+
+    private final int topQueriesLimit;
+
+    private final Clock clock;
+
+    /**
+     * Получает накопитель каждого выпущенного отчета, полного или частичного.
+     */
+    private Consumer<ReportAccumulator> batchListener = batch -> { };
+
+    public ShardedReportAggregator(int shards, TopKTrackerFactory topKTrackerFactory, int topQueriesLimit,
+                                   Clock clock) {
+        if (shards <= 0) {
+            throw new IllegalArgumentException("shards must be positive: " + shards);
+        }
+        this.shards = shards;
+        this.partitions = new Partition[shards];
+        for (int i = 0; i < shards; i++) {
+            partitions[i] = new Partition();
+        }
+        this.topKTrackerFactory = topKTrackerFactory;
+        this.topQueriesLimit = topQueriesLimit;
+        this.clock = clock;
+    }
+
+    public void setBatchListener(Consumer<ReportAccumulator> batchListener) {
+        this.batchListener = batchListener;
+    }
+
+    /**
+     * @return отчет, если элемент был последним в своей группе, иначе null; null и для элемента уже снятой группы
+     */
+    public AnalyticsReport add(ClassifiedItem item, MessageHeaders headers) {
+        Object correlationId = correlationId(headers, item);
+        Group group = group(correlationId, headers);
+        if (group == null) {
+            return null;
+        }
+        ReportAccumulator shard = group.shards[threadSlot.get() % group.shards.length];
+        synchronized (shard) {
+            shard.add(item);
+        }
+        return complete(correlationId, group, 1);
+    }
+
+    /**
+     * Засчитывает count упавших элементов в заполнение группы.
+     *
+     * @return частичный отчет, если упавшие элементы были последними в группе, иначе null
+     */
+    public AnalyticsReport fail(int count, MessageHeaders headers) {
+        Object correlationId = correlationId(headers, "failed items");
+        Group group = group(correlationId, headers);
+        if (group == null) {
+            return null;
+        }
+        group.failed.addAndGet(count);
+        return complete(correlationId, group, count);
+    }
+
+    /**
+     * Снимает группы старше timeoutMillis, как groupTimeout с sendPartialResultOnExpiry у агрегатора.
+     *
+     * @return частичные отчеты снятых групп с заголовками их первых элементов (в том числе replyChannel)
+     */
+    public List<Message<AnalyticsReport>> expireStaleGroups(long timeoutMillis) {
+        long deadline = clock.millis() - timeoutMillis;
+        List<Message<AnalyticsReport>> reports = new ArrayList<>();
+        for (Partition partition : partitions) {
+            partition.groups.forEach((correlationId, group) -> {
+                if (group.createdAt >= deadline || !partition.remove(correlationId, group)) {
+                    return;
+                }
+                log.warn("Sharded aggregation group {} expired with {}/{} items", correlationId, group.received,
+                        group.size);
+                expiredGroups.incrementAndGet();
+                expiredItems.addAndGet(group.received.get() - group.failed.get());
+                reports.add(MessageBuilder.withPayload(group.toReport()).copyHeaders(group.headers).build());
+            });
+        }
+        return reports;
+    }
+
+    public int activeGroups() {
+        int active = 0;
+        for (Partition partition : partitions) {
+            active += partition.groups.size();
+        }
+        return active;
+    }
+
+    public long expiredGroups() {
+        return expiredGroups.get();
+    }
+
+    /**
+     * Число элементов, попавших в группы, удаленные по таймауту.
+     */
+    public long expiredItems() {
+        return expiredItems.get();
+    }
+
+    /**
+     * Число элементов и упавших элементов, пришедших после снятия своей группы и отброшенных.
+     */
+    public long lateItems() {
+        return lateItems.get();
+    }
+
+    private static Object correlationId(MessageHeaders headers, Object item) {
+        Object correlationId = headers.get(IntegrationMessageHeaderAccessor.CORRELATION_ID);
+        if (correlationId == null || headers.get(IntegrationMessageHeaderAccessor.SEQUENCE_SIZE) == null) {
+            throw new IllegalStateException("Item has no sequence details, was it produced by split()? " + item);
+        }
+        return correlationId;
+    }
+
+    private Partition partition(Object correlationId) {
+        return partitions[Math.floorMod(correlationId.hashCode(), partitions.length)];
+    }
+
+    /**
+     * @return группа correlationId, новая, если ее еще не было, или null, если она уже снята
+     */
+    private Group group(Object correlationId, MessageHeaders headers) {
+        Partition partition = partition(correlationId);
+        Group group = partition.groups.get(correlationId);
+        if (group != null) {
+            return group;
+        }
+        synchronized (partition) {
+            group = partition.groups.get(correlationId);
+            if (group == null && !partition.tombstones.containsKey(correlationId)) {
+                group = new Group(headers.get(IntegrationMessageHeaderAccessor.SEQUENCE_SIZE, Integer.class), headers);
+                partition.groups.put(correlationId, group);
+            }
+        }
+        if (group == null) {
+            lateItems.incrementAndGet();
+            log.debug("Dropping late item of released aggregation group {}", correlationId);
+        }
+        return group;
+    }
+
+    private AnalyticsReport complete(Object correlationId, Group group, int count) {
+        if (group.received.addAndGet(count) >= group.size && partition(correlationId).remove(correlationId, group)) {
+            return group.toReport();
+        }
+        return null;
+    }
+
+    /**
+     * Часть групп с общим хешем correlationId и метками снятых из них групп.
+     */
+    private static final class Partition {
+        private final Map<Object, Group> groups = new ConcurrentHashMap<>();
+
+        private final Map<Object, Boolean> tombstones = new LinkedHashMap<>() {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Object, Boolean> eldest) {
+                return size() > TOMBSTONES;
+            }
+        };
+
+        private synchronized boolean remove(Object correlationId, Group group) {
+            if (!groups.remove(correlationId, group)) {
+                return false;
+            }
+            tombstones.put(correlationId, Boolean.TRUE);
+            return true;
+        }
+    }
+
+    private final class Group {
+        private final ReportAccumulator[] shards;
+
+        /**
+         * Учтенные и упавшие элементы.
+         */
+        private final AtomicInteger received = new AtomicInteger();
+
+        private final AtomicInteger failed = new AtomicInteger();
+
+        private final int size;
+
+        private final MessageHeaders headers;
+
+        private final long createdAt;
+
+        private Group(int size, MessageHeaders headers) {
+            this.size = size;
+            this.headers = headers;
+            this.createdAt = clock.millis();
+            this.shards = new ReportAccumulator[Math.min(ShardedReportAggregator.this.shards, size)];
+            for (int i = 0; i < shards.length; i++) {
+                shards[i] = new ReportAccumulator(() -> topKTrackerFactory.create(size));
+            }
+        }
+
+        private AnalyticsReport toReport() {
+            ReportAccumulator total = new ReportAccumulator(() -> topKTrackerFactory.create(size));
+            for (ReportAccumulator shard : shards) {
+                synchronized (shard) {
+                    total.merge(shard);
+                }
+            }
+            batchListener.accept(total);
+            return total.toReport(topQueriesLimit)
+                    .withIncomplete(size - Math.min(size, received.get()), failed.get());
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package ru.otus.hw.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.HistogramSnapshot;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сводка по конвейеру аналитики: время этапов (эндпоинты с id *Stage), очередь и потоки
+ * integrationFlowTaskExecutor, группы агрегаторов, число элементов по Intent и попадания в кэш запросов.
+ */
+@Component
+@Endpoint(id = "analytics")
+@RequiredArgsConstructor
+public class AnalyticsEndpoint {
+
+    private static final String STAGE_TIMER = "spring.integration.send";
+
+    private static final String STAGE_SUFFIX = "Stage";
+
+    private static final String EXECUTOR = "integrationFlowTaskExecutor";
+
+    private static final List<String> EXECUTOR_GAUGES =
+            List.of("executor.active", "executor.queued", "executor.pool.size", "executor.queue.remaining");
+
+    private final MeterRegistry registry;
+
+    @ReadOperation
+    public Map<String, Object> analytics() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("stages", stages());
+        result.put("executor", executor());
+        result.put("aggregators", aggregators());
+        result.put("items", items());
+        result.put("queryCache", queryCache());
+        return result;
+    }
+
+    private Map<String, Map<String, Object>> stages() {
+        Map<String, Map<String, Object>> stages = new TreeMap<>();
+        for (Timer timer : registry.find(STAGE_TIMER).tag("type", "handler").timers()) {
+            String stage = timer.getId().getTag("name");
+            if (stage == null || !stage.endsWith(STAGE_SUFFIX)) {
+                continue;
+            }
+            Map<String, Object> stats = stages.computeIfAbsent(stage, s -> new LinkedHashMap<>());
+            if (!"success".equals(timer.getId().getTag("result"))) {
+                stats.merge("failures", timer.count(), (a, b) -> (Long) a + (Long) b);
+                continue;
+            }
+            HistogramSnapshot snapshot = timer.takeSnapshot();
+            stats.put("count", snapshot.count());
+            stats.put("meanMs", snapshot.mean(TimeUnit.MILLISECONDS));
+            stats.put("maxMs", snapshot.max(TimeUnit.MILLISECONDS));
+            for (ValueAtPercentile p : snapshot.percentileValues()) {
+                stats.put("p" + Math.round(p.percentile() * 100) + "Ms", p.value(TimeUnit.MILLISECONDS));
+            }
+        }
+        return stages;
+    }
+
+    private Map<String, Double> executor() {
+        Map<String, Double> executor = new LinkedHashMap<>();
+        for (String name : EXECUTOR_GAUGES) {
+            Gauge gauge = registry.find(name).tag("name", EXECUTOR).gauge();
+            if (gauge != null) {
+                executor.put(name.substring("executor.".length()), gauge.value());
+            }
+        }
+        return executor;
+    }
+
+    private Map<String, Map<String, Double>> aggregators() {
+        Map<String, Map<String, Double>> aggregators = new TreeMap<>();
+        for (Gauge gauge : registry.find(PipelineMetrics.AGGREGATOR_GROUPS).gauges()) {
+            aggregatorStats(aggregators, gauge.getId().getTag("aggregator")).put("groups", gauge.value());
+        }
+        for (Gauge gauge : registry.find(PipelineMetrics.AGGREGATOR_MESSAGES).gauges()) {
+            aggregatorStats(aggregators, gauge.getId().getTag("aggregator")).put("messages", gauge.value());
+        }
+        for (String name : List.of(PipelineMetrics.AGGREGATOR_EXPIRED_GROUPS,
+                PipelineMetrics.AGGREGATOR_EXPIRED_ITEMS)) {
+            String key = name.equals(PipelineMetrics.AGGREGATOR_EXPIRED_GROUPS) ? "expiredGroups" : "expiredItems";
+            for (Counter counter : registry.find(name).counters()) {
+                aggregatorStats(aggregators, counter.getId().getTag("aggregator")).put(key, counter.count());
+            }
+            for (FunctionCounter counter : registry.find(name).functionCounters()) {
+                aggregatorStats(aggregators, counter.getId().getTag("aggregator")).put(key, counter.count());
+            }
+        }
+        return aggregators;
+    }
+
+    private static Map<String, Double> aggregatorStats(Map<String, Map<String, Double>> aggregators,
+                                                       String aggregator) {
+        return aggregators.computeIfAbsent(aggregator, a -> new LinkedHashMap<>());
+    }
+
+    private Map<String, Double> queryCache() {
+        Map<String, Double> cache = new LinkedHashMap<>();
+        for (FunctionCounter gets : registry.find("cache.gets").tag("cache", PipelineMetrics.QUERY_CACHE)
+                .functionCounters()) {
+            cache.put(gets.getId().getTag("result"), gets.count());
+        }
+        Gauge size = registry.find("cache.size").tag("cache", PipelineMetrics.QUERY_CACHE).gauge();
+        if (size != null) {
+            cache.put("size", size.value());
+        }
+        double lookups = cache.getOrDefault("hit", 0.0) + cache.getOrDefault("miss", 0.0);
+        if (lookups > 0) {
+            cache.put("hitRatio", cache.getOrDefault("hit", 0.0) / lookups);
+        }
+        return cache;
+    }
+
+    private Map<String, Map<String, Double>> items() {
+        Map<String, Map<String, Double>> items = new TreeMap<>();
+        for (Counter counter : registry.find(PipelineMetrics.ITEMS).counters()) {
+            items.computeIfAbsent(counter.getId().getTag("pipeline"), p -> new TreeMap<>())
+                    .put(counter.getId().getTag("intent"), counter.count());
+        }
+        return items;
+    }
+}
@@ -0,0 +1,58 @@
+package ru.otus.hw.metrics;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.binder.cache.CacheMeterBinder;
+import ru.otus.hw.analytics.ClockCache;
+
+/**
+ * Стандартные метрики кэша (cache.gets с result=hit/miss, cache.evictions, cache.size) для ClockCache.
+ */
+public class ClockCacheMetrics extends CacheMeterBinder<ClockCache<?, ?>> {
+
+    public ClockCacheMetrics(ClockCache<?, ?> cache, String cacheName, Iterable<Tag> tags) {
+        super(cache, cacheName, tags);
+    }
+
+    @Override
+    protected Long size() {
+        ClockCache<?, ?> cache = getCache();
+        return cache == null ? null : cache.size();
+    }
+
+    @Override
+    protected long hitCount() {
+        ClockCache<?, ?> cache = getCache();
+        return cache == null ? 0 : cache.hitCount();
+    }
+
+    @Override
+    protected Long missCount() {
+        ClockCache<?, ?> cache = getCache();
+        return cache == null ? null : cache.missCount();
+    }
+
+    @Override
+    protected Long evictionCount() {
+        ClockCache<?, ?> cache = getCache();
+        return cache == null ? null : cache.evictionCount();
+    }
+
+    /**
+     * Каждый промах заканчивается вставкой.
+     */
+    @Override
+    protected long putCount() {
+        ClockCache<?, ?> cache = getCache();
+        return cache == null ? 0 : cache.missCount();
+    }
+
+    @Override
+    protected void bindImplementationSpecificMetrics(MeterRegistry registry) {
+        Gauge.builder("cache.capacity", getCache(), ClockCache::capacity)
+                .description("Maximum number of entries in the cache")
+                .tags(getTagsWithCacheName())
+                .register(registry);
+    }
+}
@@ -0,0 +1,36 @@
+package ru.otus.hw.metrics;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+import ru.otus.hw.domain.IngestionStats;
+import ru.otus.hw.integration.SearchLogFormat;
+import ru.otus.hw.services.FileIngestionService;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Загрузка файла журнала запросов в конвейер через FileIngestionService. Файл читается на стороне
+ * приложения, вызов возвращается после обработки последнего пакета.
+ */
+@Component
+@Endpoint(id = "ingest")
+@RequiredArgsConstructor
+public class IngestionEndpoint {
+
+    private final FileIngestionService fileIngestionService;
+
+    /**
+     * @param format формат журнала; без него определяется по расширению файла
+     */
+    @WriteOperation
+    public IngestionStats ingest(String file, @Nullable SearchLogFormat format) throws IOException {
+        Path path = Path.of(file);
+        return fileIngestionService.ingest(path, format == null ? SearchLogFormat.of(path) : format,
+                (report, stats) -> {
+                });
+    }
+}
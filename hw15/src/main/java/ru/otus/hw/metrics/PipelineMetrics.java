@@ -0,0 +1,218 @@
+package ru.otus.hw.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.integration.store.MessageGroupStore;
+import org.springframework.messaging.Message;
+import org.springframework.stereotype.Component;
+import ru.otus.hw.analytics.QueryClusterer;
+import ru.otus.hw.analytics.ReportAccumulator;
+import ru.otus.hw.domain.AnalyticsReport;
+import ru.otus.hw.domain.Intent;
+import ru.otus.hw.integration.ColumnarReportAggregator;
+import ru.otus.hw.integration.FailedItems;
+import ru.otus.hw.integration.ShardedReportAggregator;
+import ru.otus.hw.services.EventTimeAnalyticsService;
+import ru.otus.hw.services.QueryClassifier;
+
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Метрики конвейера аналитики, которых нет у самого Spring Integration: счетчики элементов по Intent,
+ * число активных и просроченных групп агрегаторов, попадания в кэш классификации запросов и кластеры запросов,
+ * события, не попавшие в отчеты по времени события, частичные отчеты пакетов.
+ * Время этапов и очередь исполнителя публикуются стандартными метриками spring.integration.send и executor.*.
+ */
+@Component
+public class PipelineMetrics {
+
+    public static final String ITEMS = "analytics.items";
+
+    public static final String QUERY_CACHE = "queryClassification";
+
+    public static final String AGGREGATOR_GROUPS = "analytics.aggregator.groups";
+
+    public static final String AGGREGATOR_MESSAGES = "analytics.aggregator.messages";
+
+    public static final String AGGREGATOR_EXPIRED_GROUPS = "analytics.aggregator.expired.groups";
+
+    public static final String AGGREGATOR_EXPIRED_ITEMS = "analytics.aggregator.expired.items";
+
+    public static final String AGGREGATOR_LATE_ITEMS = "analytics.aggregator.late.items";
+
+    public static final String EVENT_TIME_DROPPED = "analytics.eventtime.dropped";
+
+    public static final String PARTIAL_REPORTS = "analytics.reports.partial";
+
+    public static final String INCOMPLETE_ITEMS = "analytics.reports.incomplete.items";
+
+    public static final String QUERY_CLUSTERS = "analytics.queries.clusters";
+
+    public static final String QUERY_CLUSTER_MERGES = "analytics.queries.cluster.merges";
+
+    private final Map<Intent, Counter> batchItems = new EnumMap<>(Intent.class);
+
+    private final Map<Intent, Counter> streamItems = new EnumMap<>(Intent.class);
+
+    private final Counter storeExpiredGroups;
+
+    private final Counter storeExpiredItems;
+
+    private final Counter chunkExpiredGroups;
+
+    private final Counter chunkExpiredItems;
+
+    private final Counter partialReports;
+
+    private final Counter missingItems;
+
+    private final Counter failedItems;
+
+    public PipelineMetrics(MeterRegistry registry, MessageGroupStore aggregatorMessageStore,
+                           MessageGroupStore chunkMessageStore, ShardedReportAggregator shardedReportAggregator,
+                           ColumnarReportAggregator columnarReportAggregator, QueryClassifier queryClassifier,
+                           EventTimeAnalyticsService eventTimeAnalyticsService) {
+        if (queryClassifier.getCache() != null) {
+            new ClockCacheMetrics(queryClassifier.getCache(), QUERY_CACHE, List.of()).bindTo(registry);
+        }
+        if (queryClassifier.getClusterer() != null) {
+            Gauge.builder(QUERY_CLUSTERS, queryClassifier.getClusterer(), QueryClusterer::size)
+                    .description("Distinct queries held in the near-duplicate cluster index")
+                    .register(registry);
+            FunctionCounter.builder(QUERY_CLUSTER_MERGES, queryClassifier.getClusterer(), QueryClusterer::merges)
+                    .description("Queries collapsed into an existing cluster by similarity")
+                    .register(registry);
+        }
+        for (Intent intent : Intent.values()) {
+            batchItems.put(intent, itemsCounter(registry, intent, "batch"));
+            streamItems.put(intent, itemsCounter(registry, intent, "stream"));
+        }
+        groupsGauge(registry, "store", aggregatorMessageStore, MessageGroupStore::getMessageGroupCount);
+        groupsGauge(registry, "chunk", chunkMessageStore, MessageGroupStore::getMessageGroupCount);
+        groupsGauge(registry, "sharded", shardedReportAggregator, ShardedReportAggregator::activeGroups);
+        groupsGauge(registry, "columnar", columnarReportAggregator, ColumnarReportAggregator::activeGroups);
+        Gauge.builder(AGGREGATOR_MESSAGES, aggregatorMessageStore,
+                        MessageGroupStore::getMessageCountForAllMessageGroups)
+                .description("Messages held in aggregator groups")
+                .tag("aggregator", "store")
+                .register(registry);
+        storeExpiredGroups = expiredCounter(registry, AGGREGATOR_EXPIRED_GROUPS, "store");
+        storeExpiredItems = expiredCounter(registry, AGGREGATOR_EXPIRED_ITEMS, "store");
+        chunkExpiredGroups = expiredCounter(registry, AGGREGATOR_EXPIRED_GROUPS, "chunk");
+        chunkExpiredItems = expiredCounter(registry, AGGREGATOR_EXPIRED_ITEMS, "chunk");
+        FunctionCounter.builder(AGGREGATOR_EXPIRED_GROUPS, shardedReportAggregator,
+                        ShardedReportAggregator::expiredGroups)
+                .description("Groups and items discarded by the group timeout")
+                .tag("aggregator", "sharded")
+                .register(registry);
+        FunctionCounter.builder(AGGREGATOR_EXPIRED_ITEMS, shardedReportAggregator,
+                        ShardedReportAggregator::expiredItems)
+                .description("Groups and items discarded by the group timeout")
+                .tag("aggregator", "sharded")
+                .register(registry);
+        FunctionCounter.builder(AGGREGATOR_LATE_ITEMS, shardedReportAggregator, ShardedReportAggregator::lateItems)
+                .description("Items dropped because their group was already released")
+                .tag("aggregator", "sharded")
+                .register(registry);
+        FunctionCounter.builder(AGGREGATOR_EXPIRED_GROUPS, columnarReportAggregator,
+                        ColumnarReportAggregator::expiredGroups)
+                .description("Groups and items discarded by the group timeout")
+                .tag("aggregator", "columnar")
+                .register(registry);
+        FunctionCounter.builder(AGGREGATOR_EXPIRED_ITEMS, columnarReportAggregator,
+                        ColumnarReportAggregator::expiredItems)
+                .description("Groups and items discarded by the group timeout")
+                .tag("aggregator", "columnar")
+                .register(registry);
+        FunctionCounter.builder(AGGREGATOR_LATE_ITEMS, columnarReportAggregator, ColumnarReportAggregator::lateItems)
+                .description("Items dropped because their group was already released")
+                .tag("aggregator", "columnar")
+                .register(registry);
+        partialReports = Counter.builder(PARTIAL_REPORTS)
+                .description("Batch reports released with missing or failed items")
+                .register(registry);
+        missingItems = incompleteCounter(registry, "missing");
+        failedItems = incompleteCounter(registry, "failed");
+        droppedCounter(registry, "late", eventTimeAnalyticsService, EventTimeAnalyticsService::lateEvents);
+        droppedCounter(registry, "untimed", eventTimeAnalyticsService, EventTimeAnalyticsService::untimedEvents);
+    }
+
+    private static <T> void groupsGauge(MeterRegistry registry, String aggregator, T source,
+                                        ToDoubleFunction<T> groups) {
+        Gauge.builder(AGGREGATOR_GROUPS, source, groups)
+                .description("Groups currently held by the aggregator")
+                .tag("aggregator", aggregator)
+                .register(registry);
+    }
+
+    private static void droppedCounter(MeterRegistry registry, String reason, EventTimeAnalyticsService service,
+                                       ToDoubleFunction<EventTimeAnalyticsService> count) {
+        FunctionCounter.builder(EVENT_TIME_DROPPED, service, count)
+                .description("Events left out of the per-minute and per-hour reports")
+                .tag("reason", reason)
+                .register(registry);
+    }
+
+    private static Counter expiredCounter(MeterRegistry registry, String name, String aggregator) {
+        return Counter.builder(name)
+                .description("Groups and items discarded by the group timeout")
+                .tag("aggregator", aggregator)
+                .register(registry);
+    }
+
+    private static Counter incompleteCounter(MeterRegistry registry, String reason) {
+        return Counter.builder(INCOMPLETE_ITEMS)
+                .description("Batch items left out of partial reports")
+                .tag("reason", reason)
+                .register(registry);
+    }
+
+    private static Counter itemsCounter(MeterRegistry registry, Intent intent, String pipeline) {
+        return Counter.builder(ITEMS)
+                .description("Classified search requests")
+                .tag("intent", intent.name())
+                .tag("pipeline", pipeline)
+                .register(registry);
+    }
+
+    /**
+     * Пакетный отчет уже содержит счетчики по Intent, поэтому элементы учитываются один раз на пакет.
+     */
+    public void countReport(AnalyticsReport report) {
+        report.getCountsByIntent().forEach((intent, count) -> batchItems.get(intent).increment(count));
+        if (report.isPartial()) {
+            partialReports.increment();
+            missingItems.increment(report.getMissingItems());
+            failedItems.increment(report.getFailedItems());
+        }
+    }
+
+    public void countItem(Intent intent) {
+        streamItems.get(intent).increment();
+    }
+
+    /**
+     * Учитывает группу, просроченную агрегатором с discardIndividuallyOnExpiry(false): в payload
+     * лежат все сообщения группы (отдельные элементы или частичные отчеты чанков).
+     */
+    public void countExpiredGroup(Collection<? extends Message<?>> messages) {
+        long items = 0;
+        boolean chunks = false;
+        for (Message<?> m : messages) {
+            if (m.getPayload() instanceof ReportAccumulator chunk) {
+                chunks = true;
+                items += chunk.getTotal();
+            } else if (!(m.getPayload() instanceof FailedItems)) {
+                items++;
+            }
+        }
+        (chunks ? chunkExpiredGroups : storeExpiredGroups).increment();
+        (chunks ? chunkExpiredItems : storeExpiredItems).increment(items);
+    }
+}
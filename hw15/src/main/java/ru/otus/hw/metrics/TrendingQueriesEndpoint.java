@@ -0,0 +1,26 @@
+package ru.otus.hw.metrics;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+import ru.otus.hw.domain.TrendingQuery;
+import ru.otus.hw.services.TrendingQueriesService;
+
+import java.util.List;
+
+/**
+ * Таблица "популярно сейчас" по всем обработанным пакетам с затуханием по времени.
+ */
+@Component
+@Endpoint(id = "trending")
+@RequiredArgsConstructor
+public class TrendingQueriesEndpoint {
+
+    private final TrendingQueriesService trendingQueriesService;
+
+    @ReadOperation
+    public List<TrendingQuery> trending() {
+        return trendingQueriesService.trending();
+    }
+}
@@ -0,0 +1,28 @@
+package ru.otus.hw.services;
+
+import ru.otus.hw.domain.ClassifiedItem;
+import ru.otus.hw.domain.TimeBucketReport;
+
+import java.time.Instant;
+import java.util.List;
+
+public interface EventTimeAnalyticsService {
+
+    void accept(ClassifiedItem item, Instant eventTime);
+
+    /**
+     * Возвращает отчеты по интервалам, закрытым watermark с момента предыдущего вызова:
+     * сначала минутные, затем часовые, каждые по возрастанию времени.
+     */
+    List<TimeBucketReport> pollClosedBuckets();
+
+    /**
+     * Число событий, пришедших в уже закрытый интервал.
+     */
+    long lateEvents();
+
+    /**
+     * Число событий без timestamp.
+     */
+    long untimedEvents();
+}
@@ -0,0 +1,137 @@
+package ru.otus.hw.services;
+
+import org.springframework.stereotype.Service;
+import ru.otus.hw.analytics.ReportAccumulator;
+import ru.otus.hw.analytics.TopKTrackerFactory;
+import ru.otus.hw.configurations.AnalyticsProperties;
+import ru.otus.hw.domain.AnalyticsReport;
+import ru.otus.hw.domain.ClassifiedItem;
+import ru.otus.hw.domain.TimeBucket;
+import ru.otus.hw.domain.TimeBucketReport;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Поминутные и почасовые отчеты по времени события. Каждое событие учитывается только в своем минутном
+ * интервале; часовой интервал собирается слиянием закрытых минутных, поэтому элементы пакета нигде
+ * не накапливаются, а память ограничена числом открытых интервалов и размером TopKTracker.
+ * Интервал закрывается, когда watermark (максимальное время события минус allowedLateness) проходит его конец.
+ * После простоя интервалы до конца часа отдаются досрочно, но watermark при этом не сдвигается: события,
+ * пришедшие в такой интервал позже, отдаются еще одним отчетом за тот же интервал.
+ */
+@Service
+public class EventTimeAnalyticsServiceImpl implements EventTimeAnalyticsService {
+
+    private static final long MINUTE = TimeBucket.MINUTE.getDuration().toMillis();
+
+    private static final long HOUR = TimeBucket.HOUR.getDuration().toMillis();
+
+    private final Clock clock;
+
+    private final long latenessMillis;
+
+    private final long idleMillis;
+
+    private final int topQueriesLimit;
+
+    private final int queryCapacity;
+
+    private final TopKTrackerFactory topKTrackerFactory;
+
+    private final TreeMap<Long, ReportAccumulator> minutes = new TreeMap<>();
+
+    private final TreeMap<Long, ReportAccumulator> hours = new TreeMap<>();
+
+    private long maxEventTime = Long.MIN_VALUE;
+
+    private long lastEventAt;
+
+    /**
+     * События интервалов, начавшихся раньше, считаются опоздавшими.
+     */
+    private long watermark = Long.MIN_VALUE;
+
+    private long lateEvents;
+
+    private long untimedEvents;
+
+    public EventTimeAnalyticsServiceImpl(AnalyticsProperties props, Clock analyticsClock,
+                                         TopKTrackerFactory topKTrackerFactory) {
+        var eventTime = props.getEventTime();
+        this.clock = analyticsClock;
+        this.latenessMillis = eventTime.getAllowedLateness().toMillis();
+        this.idleMillis = eventTime.getIdleTimeout().toMillis();
+        this.topQueriesLimit = props.getTopQueriesLimit();
+        this.queryCapacity = eventTime.getQueryCapacity();
+        this.topKTrackerFactory = topKTrackerFactory;
+    }
+
+    @Override
+    public synchronized void accept(ClassifiedItem item, Instant eventTime) {
+        if (eventTime == null) {
+            untimedEvents++;
+            return;
+        }
+        long time = eventTime.toEpochMilli();
+        long minute = floor(time, MINUTE);
+        if (minute < watermark) {
+            lateEvents++;
+            return;
+        }
+        minutes.computeIfAbsent(minute, m -> newAccumulator()).add(item);
+        maxEventTime = Math.max(maxEventTime, time);
+        lastEventAt = clock.millis();
+    }
+
+    @Override
+    public synchronized List<TimeBucketReport> pollClosedBuckets() {
+        if (maxEventTime == Long.MIN_VALUE) {
+            return List.of();
+        }
+        watermark = Math.max(watermark, floor(maxEventTime - latenessMillis, MINUTE));
+        long closeBefore = clock.millis() - lastEventAt >= idleMillis
+                ? Math.max(watermark, floor(maxEventTime, HOUR) + HOUR)
+                : watermark;
+        List<TimeBucketReport> reports = new ArrayList<>();
+        while (!minutes.isEmpty() && minutes.firstKey() + MINUTE <= closeBefore) {
+            Map.Entry<Long, ReportAccumulator> minute = minutes.pollFirstEntry();
+            reports.add(report(TimeBucket.MINUTE, minute.getKey(), minute.getValue()));
+            hours.computeIfAbsent(floor(minute.getKey(), HOUR), h -> newAccumulator()).merge(minute.getValue());
+        }
+        while (!hours.isEmpty() && hours.firstKey() + HOUR <= closeBefore) {
+            Map.Entry<Long, ReportAccumulator> hour = hours.pollFirstEntry();
+            reports.add(report(TimeBucket.HOUR, hour.getKey(), hour.getValue()));
+        }
+        return reports;
+    }
+
+    @Override
+    public synchronized long lateEvents() {
+        return lateEvents;
+    }
+
+    @Override
+    public synchronized long untimedEvents() {
+        return untimedEvents;
+    }
+
+    private TimeBucketReport report(TimeBucket bucket, long start, ReportAccumulator accumulator) {
+        AnalyticsReport report = accumulator.toReport(topQueriesLimit);
+        report.setWindowStart(Instant.ofEpochMilli(start));
+        report.setWindowEnd(Instant.ofEpochMilli(start + bucket.getDuration().toMillis()));
+        return new TimeBucketReport(bucket, report);
+    }
+
+    private ReportAccumulator newAccumulator() {
+        return new ReportAccumulator(() -> topKTrackerFactory.createBounded(queryCapacity));
+    }
+
+    private static long floor(long millis, long unit) {
+        return millis - Math.floorMod(millis, unit);
+    }
+}
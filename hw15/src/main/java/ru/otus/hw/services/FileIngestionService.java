@@ -0,0 +1,26 @@
+package ru.otus.hw.services;
+
+import ru.otus.hw.domain.AnalyticsReport;
+import ru.otus.hw.domain.IngestionStats;
+import ru.otus.hw.integration.SearchLogFormat;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.function.BiConsumer;
+
+public interface FileIngestionService {
+
+    /**
+     * Читает журнал пакетами по app.integration.analytics.ingest.chunk-size и отправляет каждый пакет
+     * в SearchAnalyticsGateway.process. В памяти одновременно находится только один пакет.
+     *
+     * @param onChunk получает отчет по каждому пакету и статистику загрузки на момент его обработки
+     */
+    IngestionStats ingest(Path file, SearchLogFormat format, BiConsumer<AnalyticsReport, IngestionStats> onChunk)
+            throws IOException;
+
+    default IngestionStats ingest(Path file) throws IOException {
+        return ingest(file, SearchLogFormat.of(file), (report, stats) -> {
+        });
+    }
+}
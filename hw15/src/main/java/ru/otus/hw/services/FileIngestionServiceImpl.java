@@ -0,0 +1,85 @@
+package ru.otus.hw.services;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import ru.otus.hw.configurations.AnalyticsProperties;
+import ru.otus.hw.domain.AnalyticsReport;
+import ru.otus.hw.domain.IngestionStats;
+import ru.otus.hw.domain.Intent;
+import ru.otus.hw.domain.SearchRequest;
+import ru.otus.hw.integration.SearchAnalyticsGateway;
+import ru.otus.hw.integration.SearchLogFormat;
+import ru.otus.hw.integration.SearchLogReader;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class FileIngestionServiceImpl implements FileIngestionService {
+
+    private final SearchAnalyticsGateway searchAnalyticsGateway;
+
+    private final AnalyticsProperties analyticsProperties;
+
+    @Override
+    public IngestionStats ingest(Path file, SearchLogFormat format,
+                                 BiConsumer<AnalyticsReport, IngestionStats> onChunk) throws IOException {
+        var props = analyticsProperties.getIngest();
+        int chunkSize = props.getChunkSize();
+        int regionSize = (int) Math.min(Integer.MAX_VALUE, props.getRegionSize().toBytes());
+        long progressNanos = props.getProgressInterval().toNanos();
+        long started = System.nanoTime();
+        long lastProgress = started;
+        Map<Intent, Long> counts = new EnumMap<>(Intent.class);
+        long requests = 0;
+        int chunks = 0;
+        try (SearchLogReader reader = new SearchLogReader(file, format, regionSize)) {
+            log.info("Ingesting {} ({}, {} bytes) in chunks of {}", file, format, reader.size(), chunkSize);
+            List<SearchRequest> chunk = new ArrayList<>(chunkSize);
+            while (reader.read(chunk, chunkSize)) {
+                AnalyticsReport report = searchAnalyticsGateway.process(chunk);
+                requests += chunk.size();
+                chunks++;
+                if (report != null) {
+                    report.getCountsByIntent().forEach((intent, count) -> counts.merge(intent, count, Long::sum));
+                } else {
+                    log.warn("No report for chunk {} of {}", chunks, file);
+                }
+                IngestionStats stats = stats(file, reader, requests, chunks, counts, started);
+                onChunk.accept(report, stats);
+                if (System.nanoTime() - lastProgress >= progressNanos) {
+                    lastProgress = System.nanoTime();
+                    logProgress(stats);
+                }
+                chunk = new ArrayList<>(chunkSize);
+            }
+            IngestionStats stats = stats(file, reader, requests, chunks, counts, started);
+            log.info("Ingested {}: {} requests from {} lines ({} malformed) in {} chunks, {} ms, "
+                            + "{} requests/s, {} MB/s", file, stats.getRequests(), stats.getLines(),
+                    stats.getMalformed(), stats.getChunks(), stats.getElapsed().toMillis(),
+                    Math.round(stats.getRequestsPerSecond()), String.format("%.1f", stats.getMegabytesPerSecond()));
+            return stats;
+        }
+    }
+
+    private static IngestionStats stats(Path file, SearchLogReader reader, long requests, int chunks,
+                                        Map<Intent, Long> counts, long started) {
+        return new IngestionStats(file.toString(), reader.size(), reader.position(), reader.lines(), requests,
+                reader.malformed(), chunks, new EnumMap<>(counts), Duration.ofNanos(System.nanoTime() - started));
+    }
+
+    private static void logProgress(IngestionStats stats) {
+        log.info("Ingesting {}: {}% ({} requests, {} malformed), {} requests/s",
+                stats.getFile(), Math.round(stats.getProgress() * 100), stats.getRequests(), stats.getMalformed(),
+                Math.round(stats.getRequestsPerSecond()));
+    }
+}
@@ -0,0 +1,85 @@
+package ru.otus.hw.services;
+
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.stereotype.Component;
+import ru.otus.hw.analytics.ClockCache;
+import ru.otus.hw.analytics.QueryClusterer;
+import ru.otus.hw.configurations.AnalyticsProperties;
+import ru.otus.hw.domain.Intent;
+import ru.otus.hw.domain.NormalizedQuery;
+import ru.otus.hw.util.GeoUtil;
+
+/**
+ * Классификация сырого текста запроса: координаты - в строку "lat lon" в целых числах (умноженных на 100_000),
+ * текст - через QueryNormalizer. Результат зависит только от текста, поэтому кэшируется по нему:
+ * в реальных логах одни и те же запросы повторяются постоянно. Кэш общий для geo и text подпотоков
+ * и потокового режима; normalizer.cache-size=0 отключает его.
+ * С normalizer.clustering.enabled текст после нормализации заменяется каноническим запросом кластера
+ * почти одинаковых запросов; результат кэшируется вместе с остальным, так что кластеризация идет только
+ * на промахах кэша.
+ */
+@Component
+public class QueryClassifier {
+
+    private final QueryNormalizer queryNormalizer;
+
+    private final ClockCache<String, NormalizedQuery> cache;
+
+    private final QueryClusterer clusterer;
+
+    public QueryClassifier(QueryNormalizer queryNormalizer, AnalyticsProperties props) {
+        this.queryNormalizer = queryNormalizer;
+        int cacheSize = props.getNormalizer().getCacheSize();
+        this.cache = cacheSize > 0 ? new ClockCache<>(cacheSize) : null;
+        AnalyticsProperties.Clustering clustering = props.getNormalizer().getClustering();
+        this.clusterer = clustering.isEnabled() ? new QueryClusterer(clustering.getCapacity(),
+                clustering.getBands(), clustering.getRows(), clustering.getThreshold()) : null;
+    }
+
+    public NormalizedQuery classify(String queryText) {
+        if (cache == null || queryText == null) {
+            return load(queryText);
+        }
+        return cache.get(queryText, this::load);
+    }
+
+    /**
+     * Классификация запроса, координаты которого уже разобраны вызывающим через GeoUtil.parseFixed
+     * (GeoUtil.NO_COORDS - не координаты): на промахе кэша текст повторно не разбирается.
+     */
+    public NormalizedQuery classify(String queryText, long coords) {
+        if (cache == null || queryText == null) {
+            return load(queryText, coords);
+        }
+        return cache.get(queryText, text -> load(text, coords));
+    }
+
+    /**
+     * @return кэш или null, если он отключен
+     */
+    public ClockCache<String, NormalizedQuery> getCache() {
+        return cache;
+    }
+
+    /**
+     * @return индекс кластеров или null, если кластеризация отключена
+     */
+    public QueryClusterer getClusterer() {
+        return clusterer;
+    }
+
+    private NormalizedQuery load(String queryText) {
+        return load(queryText, GeoUtil.parseFixed(queryText));
+    }
+
+    private NormalizedQuery load(String queryText, long coords) {
+        if (coords != GeoUtil.NO_COORDS) {
+            return new NormalizedQuery(Intent.COORDS, GeoUtil.latInt(coords) + " " + GeoUtil.lonInt(coords), coords);
+        }
+        String norm = queryNormalizer.normalize(queryText);
+        if (StringUtils.isBlank(norm)) {
+            return new NormalizedQuery(Intent.UNKNOWN, norm);
+        }
+        return new NormalizedQuery(Intent.TEXT, clusterer == null ? norm : clusterer.canonical(norm));
+    }
+}
@@ -0,0 +1,141 @@
+package ru.otus.hw.services;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import ru.otus.hw.analytics.PunctuationRules;
+import ru.otus.hw.configurations.AnalyticsProperties;
+
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Нормализация текстового запроса за один проход по символам в переиспользуемый буфер потока.
+ * В режиме ASCII результат совпадает с
+ * {@code s.toLowerCase().trim().replaceAll("\\p{Punct}", "").replaceAll("\\s+", " ")}.
+ * Если строка уже нормализована, возвращается она же без копирования.
+ */
+@Component
+public class QueryNormalizer {
+
+    private static final int INITIAL_BUFFER_SIZE = 256;
+
+    private static final int MAX_CACHED_BUFFER_SIZE = 16 * 1024;
+
+    /**
+     * Языки, для которых String.toLowerCase() зависит от контекста символа.
+     */
+    private static final Set<String> SPECIAL_CASING_LANGUAGES = Set.of("tr", "az", "lt");
+
+    private static final ThreadLocal<char[]> BUFFER = ThreadLocal.withInitial(() -> new char[INITIAL_BUFFER_SIZE]);
+
+    private final boolean unicode;
+
+    private final boolean specialCasingLocale;
+
+    @Autowired
+    public QueryNormalizer(AnalyticsProperties props) {
+        this(props.getNormalizer().getPunctuation());
+    }
+
+    public QueryNormalizer(PunctuationRules rules) {
+        this.unicode = rules == PunctuationRules.UNICODE;
+        this.specialCasingLocale = SPECIAL_CASING_LANGUAGES.contains(Locale.getDefault().getLanguage());
+    }
+
+    public String normalize(String s) {
+        if (s == null) {
+            return "";
+        }
+        if (!specialCasingLocale) {
+            String result = normalize(s, true);
+            if (result != null) {
+                return result;
+            }
+        }
+        // Σ и İ String.toLowerCase() переводит с учетом контекста - отдаем ему регистр, остальное делаем сами
+        return normalize(s.toLowerCase(), false);
+    }
+
+    /**
+     * @return null, если встретился символ, который нельзя привести к нижнему регистру посимвольно
+     */
+    private String normalize(String s, boolean lowerCase) {
+        int start = 0;
+        int end = s.length();
+        while (start < end && isTrimmed(s.charAt(start))) {
+            start++;
+        }
+        while (end > start && isTrimmed(s.charAt(end - 1))) {
+            end--;
+        }
+        char[] buf = buffer(end - start);
+        boolean changed = start > 0 || end < s.length();
+        boolean prevSpace = false;
+        int n = 0;
+        int i = start;
+        while (i < end) {
+            int cp = s.codePointAt(i);
+            i += Character.charCount(cp);
+            if (lowerCase) {
+                if (cp == 'Σ' || cp == 'İ') {
+                    return null;
+                }
+                int lower = Character.toLowerCase(cp);
+                changed |= lower != cp;
+                cp = lower;
+            }
+            if (isPunctuation(cp)) {
+                changed = true;
+            } else if (isSpace(cp)) {
+                changed |= prevSpace || cp != ' ';
+                if (!prevSpace) {
+                    buf[n++] = ' ';
+                    prevSpace = true;
+                }
+            } else {
+                prevSpace = false;
+                n += Character.toChars(cp, buf, n);
+            }
+        }
+        return changed ? new String(buf, 0, n) : s;
+    }
+
+    private boolean isTrimmed(char c) {
+        return c <= ' ' || unicode && isSpace(c);
+    }
+
+    private boolean isPunctuation(int cp) {
+        if (cp < 0x80) {
+            return cp > ' ' && cp < 0x7F && !Character.isLetterOrDigit(cp);
+        }
+        if (!unicode) {
+            return false;
+        }
+        return switch (Character.getType(cp)) {
+            case Character.CONNECTOR_PUNCTUATION, Character.DASH_PUNCTUATION, Character.START_PUNCTUATION,
+                 Character.END_PUNCTUATION, Character.INITIAL_QUOTE_PUNCTUATION,
+                 Character.FINAL_QUOTE_PUNCTUATION, Character.OTHER_PUNCTUATION -> true;
+            default -> false;
+        };
+    }
+
+    private boolean isSpace(int cp) {
+        if (cp < 0x80) {
+            return cp == ' ' || cp >= '\t' && cp <= '\r';
+        }
+        return unicode && (Character.isWhitespace(cp) || Character.isSpaceChar(cp));
+    }
+
+    private static char[] buffer(int length) {
+        char[] buf = BUFFER.get();
+        // toChars может записать суррогатную пару на месте одного символа
+        if (buf.length >= length * 2) {
+            return buf;
+        }
+        buf = new char[length * 2];
+        if (buf.length <= MAX_CACHED_BUFFER_SIZE) {
+            BUFFER.set(buf);
+        }
+        return buf;
+    }
+}
@@ -0,0 +1,20 @@
+package ru.otus.hw.services;
+
+import org.reactivestreams.Publisher;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import ru.otus.hw.domain.AnalyticsReport;
+import ru.otus.hw.domain.SearchRequest;
+
+import java.util.List;
+
+public interface ReactiveSearchAnalyticsService {
+
+    Mono<AnalyticsReport> process(List<SearchRequest> batch);
+
+    /**
+     * Запросы читаются из requests по мере обработки (с учетом demand), результат - отчеты по окнам
+     * только этих запросов; поток завершается вслед за requests. Отмена подписки останавливает чтение requests.
+     */
+    Flux<AnalyticsReport> stream(Publisher<SearchRequest> requests);
+}
@@ -0,0 +1,76 @@
+package ru.otus.hw.services;
+
+import lombok.RequiredArgsConstructor;
+import org.reactivestreams.Publisher;
+import org.springframework.integration.channel.FluxMessageChannel;
+import org.springframework.integration.support.MessageBuilder;
+import org.springframework.stereotype.Service;
+import reactor.core.Exceptions;
+import reactor.core.publisher.BufferOverflowStrategy;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import ru.otus.hw.analytics.SlidingWindows;
+import ru.otus.hw.configurations.AnalyticsProperties;
+import ru.otus.hw.domain.AnalyticsReport;
+import ru.otus.hw.domain.SearchRequest;
+import ru.otus.hw.integration.AnalyticsHeaders;
+import ru.otus.hw.integration.ReactiveSearchAnalyticsGateway;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+@Service
+@RequiredArgsConstructor
+public class ReactiveSearchAnalyticsServiceImpl implements ReactiveSearchAnalyticsService {
+
+    private final ReactiveSearchAnalyticsGateway reactiveSearchAnalyticsGateway;
+
+    private final FluxMessageChannel receiveSearchStreamChannel;
+
+    private final StreamingAnalyticsService streamingAnalyticsService;
+
+    private final AnalyticsProperties analyticsProperties;
+
+    @Override
+    public Mono<AnalyticsReport> process(List<SearchRequest> batch) {
+        return reactiveSearchAnalyticsGateway.process(batch);
+    }
+
+    /**
+     * Запросы вызова идут через общий streamingAnalyticsFlow с заголовком AnalyticsHeaders.STREAM_WINDOWS,
+     * поэтому считаются только в окнах этого вызова. Окна опрашиваются раз в emitInterval; когда requests
+     * завершился и все отправленное учтено, отдается текущее незакрытое окно и поток завершается.
+     */
+    @Override
+    public Flux<AnalyticsReport> stream(Publisher<SearchRequest> requests) {
+        var streaming = analyticsProperties.getStreaming();
+        SlidingWindows windows = streamingAnalyticsService.newWindows();
+        AtomicLong sent = new AtomicLong();
+        AtomicBoolean upstreamDone = new AtomicBoolean();
+        AtomicReference<Throwable> upstreamError = new AtomicReference<>();
+        Sinks.Empty<Void> cancelled = Sinks.empty();
+        return Flux.interval(streaming.getEmitInterval())
+                .onBackpressureDrop()
+                .map(tick -> {
+                    if (upstreamError.get() != null) {
+                        throw Exceptions.propagate(upstreamError.get());
+                    }
+                    return upstreamDone.get() && windows.getProcessed() >= sent.get();
+                })
+                .takeUntil(done -> done)
+                .concatMapIterable(done -> done ? windows.flush() : windows.pollCompletedWindows())
+                .onBackpressureBuffer(streaming.getStreamBufferSize(), BufferOverflowStrategy.DROP_OLDEST)
+                .doOnSubscribe(s -> receiveSearchStreamChannel.subscribeTo(Flux.from(requests)
+                        .takeUntilOther(cancelled.asMono())
+                        .doOnNext(sr -> sent.incrementAndGet())
+                        .doOnError(upstreamError::set)
+                        .doOnComplete(() -> upstreamDone.set(true))
+                        .map(sr -> MessageBuilder.withPayload(sr)
+                                .setHeader(AnalyticsHeaders.STREAM_WINDOWS, windows)
+                                .build())))
+                .doFinally(signal -> cancelled.tryEmitEmpty());
+    }
+}
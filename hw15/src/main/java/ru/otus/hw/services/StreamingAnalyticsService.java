@@ -0,0 +1,22 @@
+package ru.otus.hw.services;
+
+import ru.otus.hw.analytics.SlidingWindows;
+import ru.otus.hw.domain.AnalyticsReport;
+import ru.otus.hw.domain.ClassifiedItem;
+
+import java.util.List;
+
+public interface StreamingAnalyticsService {
+
+    void accept(ClassifiedItem item);
+
+    /**
+     * Возвращает отчеты по общим окнам, закрывшимся с момента предыдущего вызова. Пустые окна пропускаются.
+     */
+    List<AnalyticsReport> pollCompletedWindows();
+
+    /**
+     * Отдельные окна с настройками общих - для одного потока запросов, которому не нужны чужие запросы.
+     */
+    SlidingWindows newWindows();
+}
@@ -0,0 +1,59 @@
+package ru.otus.hw.services;
+
+import org.springframework.stereotype.Service;
+import ru.otus.hw.analytics.ReportAccumulator;
+import ru.otus.hw.analytics.SlidingWindows;
+import ru.otus.hw.analytics.TopKTrackerFactory;
+import ru.otus.hw.configurations.AnalyticsProperties;
+import ru.otus.hw.domain.AnalyticsReport;
+import ru.otus.hw.domain.ClassifiedItem;
+
+import java.time.Clock;
+import java.util.List;
+
+/**
+ * Общие окна по времени обработки для SearchAnalyticsGateway.submit и окна отдельных вызовов
+ * ReactiveSearchAnalyticsService.stream с теми же размерами.
+ */
+@Service
+public class StreamingAnalyticsServiceImpl implements StreamingAnalyticsService {
+
+    private final Clock clock;
+
+    private final long sizeMillis;
+
+    private final long slideMillis;
+
+    private final int topQueriesLimit;
+
+    private final TopKTrackerFactory topKTrackerFactory;
+
+    private final SlidingWindows windows;
+
+    public StreamingAnalyticsServiceImpl(AnalyticsProperties props, Clock analyticsClock,
+                                         TopKTrackerFactory topKTrackerFactory) {
+        var streaming = props.getStreaming();
+        this.clock = analyticsClock;
+        this.sizeMillis = streaming.getWindowSize().toMillis();
+        this.slideMillis = streaming.getWindowSlide().toMillis();
+        this.topQueriesLimit = props.getTopQueriesLimit();
+        this.topKTrackerFactory = topKTrackerFactory;
+        this.windows = newWindows();
+    }
+
+    @Override
+    public void accept(ClassifiedItem item) {
+        windows.accept(item);
+    }
+
+    @Override
+    public List<AnalyticsReport> pollCompletedWindows() {
+        return windows.pollCompletedWindows();
+    }
+
+    @Override
+    public SlidingWindows newWindows() {
+        return new SlidingWindows(sizeMillis, slideMillis, topQueriesLimit,
+                () -> new ReportAccumulator(topKTrackerFactory::createBounded), clock);
+    }
+}
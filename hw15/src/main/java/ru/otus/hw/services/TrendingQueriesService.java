@@ -0,0 +1,24 @@
+package ru.otus.hw.services;
+
+import ru.otus.hw.analytics.ReportAccumulator;
+import ru.otus.hw.domain.TrendingQuery;
+
+import java.util.List;
+
+public interface TrendingQueriesService {
+
+    /**
+     * Добавляет запросы обработанного пакета (в том числе частичного) в общую таблицу.
+     */
+    void merge(ReportAccumulator batch);
+
+    /**
+     * Таблица на момент последнего слияния, по убыванию score; не пересчитывается при чтении.
+     */
+    List<TrendingQuery> trending();
+
+    /**
+     * Сохраняет счетчики в snapshotFile, если он задан.
+     */
+    void snapshot();
+}
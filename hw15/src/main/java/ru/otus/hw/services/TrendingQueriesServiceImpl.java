@@ -0,0 +1,150 @@
+package ru.otus.hw.services;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import ru.otus.hw.analytics.DecayedTopKTracker;
+import ru.otus.hw.analytics.ReportAccumulator;
+import ru.otus.hw.configurations.AnalyticsProperties;
+import ru.otus.hw.domain.TrendingQuery;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Clock;
+import java.util.List;
+
+/**
+ * Таблица "популярно сейчас" по всем пакетам: запросы каждого пакета добавляются в DecayedTopKTracker
+ * на capacity счетчиков с периодом полураспада halfLife. После каждого слияния таблица из limit запросов
+ * строится заново и публикуется неизменяемым списком, поэтому чтение - одно обращение к volatile-полю.
+ * Счетчики сохраняются в snapshotFile (через временный файл и переименование) по расписанию
+ * и при остановке и загружаются при старте, так что после перезапуска таблица не пустая; затухание
+ * за время простоя учитывается по времени снимка.
+ */
+@Slf4j
+public class TrendingQueriesServiceImpl implements TrendingQueriesService, DisposableBean {
+
+    private static final int MAGIC = 0x54524E44;
+
+    /**
+     * Версия 2 пишет ключ длиной и байтами UTF-8: writeUTF версии 1 не принимает строк длиннее 64 КБ.
+     */
+    private static final int VERSION = 2;
+
+    private static final int VERSION_UTF = 1;
+
+    private final Clock clock;
+
+    private final int limit;
+
+    private final Path snapshotFile;
+
+    private final DecayedTopKTracker tracker;
+
+    private volatile List<TrendingQuery> trending = List.of();
+
+    public TrendingQueriesServiceImpl(AnalyticsProperties props, Clock analyticsClock) {
+        var trendingProps = props.getTrending();
+        this.clock = analyticsClock;
+        this.limit = trendingProps.getLimit();
+        this.snapshotFile = trendingProps.getSnapshotFile();
+        this.tracker = new DecayedTopKTracker(trendingProps.getCapacity(), trendingProps.getHalfLife().toMillis(),
+                clock.millis());
+        if (snapshotFile != null && Files.exists(snapshotFile)) {
+            load();
+        }
+    }
+
+    @Override
+    public synchronized void merge(ReportAccumulator batch) {
+        long now = clock.millis();
+        batch.forEachQuery((query, count) -> tracker.add(query, count, now));
+        trending = tracker.top(limit, now);
+    }
+
+    @Override
+    public List<TrendingQuery> trending() {
+        return trending;
+    }
+
+    @Override
+    public void snapshot() {
+        if (snapshotFile == null) {
+            return;
+        }
+        long now;
+        List<DecayedTopKTracker.Entry> entries;
+        synchronized (this) {
+            now = clock.millis();
+            entries = tracker.entries(now);
+        }
+        try {
+            Path dir = snapshotFile.toAbsolutePath().getParent();
+            Files.createDirectories(dir);
+            Path tmp = Files.createTempFile(dir, snapshotFile.getFileName().toString(), ".tmp");
+            try (var out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeLong(now);
+                out.writeInt(entries.size());
+                for (DecayedTopKTracker.Entry entry : entries) {
+                    byte[] key = entry.getKey().getBytes(StandardCharsets.UTF_8);
+                    out.writeInt(key.length);
+                    out.write(key);
+                    out.writeDouble(entry.getScore());
+                    out.writeDouble(entry.getError());
+                }
+            }
+            Files.move(tmp, snapshotFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("Failed to write trending queries snapshot {}", snapshotFile, e);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        snapshot();
+    }
+
+    /**
+     * Снимок чужого формата пропускается, из поврежденного восстанавливается прочитанное: старт не падает.
+     */
+    private synchronized void load() {
+        try (var in = new DataInputStream(new BufferedInputStream(Files.newInputStream(snapshotFile)))) {
+            int version = in.readInt() == MAGIC ? in.readInt() : -1;
+            if (version != VERSION && version != VERSION_UTF) {
+                log.warn("Ignoring trending queries snapshot {}: unknown format", snapshotFile);
+                return;
+            }
+            long takenAt = in.readLong();
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String key = version == VERSION_UTF ? in.readUTF() : readKey(in);
+                tracker.restore(key, in.readDouble(), in.readDouble(), takenAt);
+            }
+            trending = tracker.top(limit, clock.millis());
+            log.info("Restored {} trending queries from {}", tracker.size(), snapshotFile);
+        } catch (IOException e) {
+            log.warn("Failed to read trending queries snapshot {}", snapshotFile, e);
+        }
+    }
+
+    private static String readKey(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            throw new IOException("Negative key length " + length);
+        }
+        byte[] key = in.readNBytes(length);
+        if (key.length < length) {
+            throw new EOFException("Truncated key: " + key.length + " of " + length + " bytes");
+        }
+        return new String(key, StandardCharsets.UTF_8);
+    }
+}
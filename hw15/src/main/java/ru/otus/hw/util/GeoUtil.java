@@ -2,37 +2,214 @@ package ru.otus.hw.util;
 
 import lombok.experimental.UtilityClass;
 //import java.util.Locale;
-import java.util.regex.Pattern;
 
+/**
+ * Разбор строки вида "lat,lon" (как регулярное выражение
+ * {@code ^\s*([+-]?\d+(?:\.\d+)?)\s*,\s*([+-]?\d+(?:\.\d+)?)\s*$}) за один проход без аллокаций.
+ */
 @UtilityClass
 public class GeoUtil {
 
-    private static final Pattern COORDS = Pattern.compile(
-            "^\\s*([+-]?\\d+(?:\\.\\d+)?)\\s*,\\s*([+-]?\\d+(?:\\.\\d+)?)\\s*$"
-    );
+    /**
+     * Результат parseFixed для строк, не являющихся координатами.
+     */
+    public static final long NO_COORDS = Long.MIN_VALUE;
+
+    public static final int FIXED_POINT_SCALE = 100_000;
+
+    /**
+     * Значение ячейки для элементов без координат; настоящие ячейки неотрицательны.
+     */
+    public static final long NO_CELL = -1;
+
+    /**
+     * Наибольшая точность geohash (символов по 5 бит): биты ячейки занимают младшие 55 бит long,
+     * над ними хранится сама точность, так что ячейка остается неотрицательной.
+     */
+    public static final int MAX_GEOHASH_PRECISION = 11;
+
+    private static final int PRECISION_SHIFT = 56;
+
+    private static final char[] BASE32 = "0123456789bcdefghjkmnpqrstuvwxyz".toCharArray();
+
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+
+    private static final double[] POW10 = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
 
     public boolean parseLatLon(String text, double[] out) {
+        return scan(text, out) != NO_COORDS;
+    }
+
+    /**
+     * Координаты в фиксированной точке (градусы * 100_000, с округлением как Math.round),
+     * упакованные в один long: широта в старших 32 битах, долгота в младших. NO_COORDS, если это не координаты.
+     */
+    public long parseFixed(String text) {
+        return scan(text, null);
+    }
+
+    public long pack(long latInt, long lonInt) {
+        return (latInt << 32) | (lonInt & 0xFFFFFFFFL);
+    }
+
+    public int latInt(long packed) {
+        return (int) (packed >> 32);
+    }
+
+    public int lonInt(long packed) {
+        return (int) packed;
+    }
+
+    /**
+     * Ячейка geohash из precision символов для координат из parseFixed - биты geohash в младших 5 * precision
+     * битах long и точность над ними, без построения строки. Строка нужна только для вывода, см. geohashString.
+     */
+    public long geohash(long packed, int precision) {
+        if (precision < 1 || precision > MAX_GEOHASH_PRECISION) {
+            throw new IllegalArgumentException("Geohash precision must be in [1, " + MAX_GEOHASH_PRECISION
+                    + "]: " + precision);
+        }
+        int bits = 5 * precision;
+        int lonBits = (bits + 1) / 2;
+        int latBits = bits / 2;
+        long lon = quantize(lonInt(packed) + 180L * FIXED_POINT_SCALE, 360L * FIXED_POINT_SCALE, lonBits);
+        long lat = quantize(latInt(packed) + 90L * FIXED_POINT_SCALE, 180L * FIXED_POINT_SCALE, latBits);
+        // geohash начинается с бита долготы: при нечетном числе бит широта дополняется нулем, который отбрасывается
+        long interleaved = spread(lon) << 1 | spread(lat << (lonBits - latBits));
+        return (long) precision << PRECISION_SHIFT | interleaved >>> (lonBits - latBits);
+    }
+
+    public String geohashString(long cell) {
+        int precision = (int) (cell >>> PRECISION_SHIFT);
+        char[] chars = new char[precision];
+        for (int i = precision - 1; i >= 0; i--) {
+            chars[i] = BASE32[(int) (cell & 31)];
+            cell >>>= 5;
+        }
+        return new String(chars);
+    }
+
+    private long quantize(long offset, long range, int bits) {
+        return Math.min((offset << bits) / range, (1L << bits) - 1);
+    }
+
+    /**
+     * Раздвигает младшие 32 бита x в четные позиции long.
+     */
+    private long spread(long x) {
+        x &= 0xFFFFFFFFL;
+        x = (x | x << 16) & 0x0000FFFF0000FFFFL;
+        x = (x | x << 8) & 0x00FF00FF00FF00FFL;
+        x = (x | x << 4) & 0x0F0F0F0F0F0F0F0FL;
+        x = (x | x << 2) & 0x3333333333333333L;
+        x = (x | x << 1) & 0x5555555555555555L;
+        return x;
+    }
+
+    private long scan(String text, double[] out) {
         if (text == null) {
-            return false;
+            return NO_COORDS;
+        }
+        int len = text.length();
+        int latFrom = skipSpaces(text, 0, len);
+        int latTo = numberEnd(text, latFrom, len);
+        if (latTo < 0) {
+            return NO_COORDS;
+        }
+        int comma = skipSpaces(text, latTo, len);
+        if (comma == len || text.charAt(comma) != ',') {
+            return NO_COORDS;
+        }
+        int lonFrom = skipSpaces(text, comma + 1, len);
+        int lonTo = numberEnd(text, lonFrom, len);
+        if (lonTo < 0 || skipSpaces(text, lonTo, len) != len) {
+            return NO_COORDS;
+        }
+        double lat = toDouble(text, latFrom, latTo);
+        double lon = toDouble(text, lonFrom, lonTo);
+        if (lat < -90 || lat > 90 || lon < -180 || lon > 180) {
+            return NO_COORDS;
+        }
+        if (out != null && out.length >= 2) {
+            out[0] = lat;
+            out[1] = lon;
+        }
+        return pack(Math.round(lat * FIXED_POINT_SCALE), Math.round(lon * FIXED_POINT_SCALE));
+    }
+
+    private int skipSpaces(String s, int from, int to) {
+        while (from < to && isSpace(s.charAt(from))) {
+            from++;
+        }
+        return from;
+    }
+
+    /**
+     * Конец числа [+-]?\d+(\.\d+)?, начинающегося с from, или -1.
+     */
+    private int numberEnd(String s, int from, int to) {
+        int i = from;
+        if (i < to && (s.charAt(i) == '+' || s.charAt(i) == '-')) {
+            i++;
+        }
+        int digits = skipDigits(s, i, to);
+        if (digits == i) {
+            return -1;
+        }
+        i = digits;
+        if (i < to && s.charAt(i) == '.') {
+            int fraction = skipDigits(s, i + 1, to);
+            if (fraction == i + 1) {
+                return -1;
+            }
+            i = fraction;
         }
-        var m = COORDS.matcher(text);
-        if (!m.matches()) {
-            return false;
+        return i;
+    }
+
+    private int skipDigits(String s, int from, int to) {
+        while (from < to && s.charAt(from) >= '0' && s.charAt(from) <= '9') {
+            from++;
         }
-        try {
-            double lat = Double.parseDouble(m.group(1));
-            double lon = Double.parseDouble(m.group(2));
-            if (lat < -90 || lat > 90 || lon < -180 || lon > 180) {
-                return false;
+        return from;
+    }
+
+    /**
+     * Быстрый путь Клингера: мантисса до 2^53 и степень до 10^22 представимы точно, поэтому одно деление
+     * дает тот же корректно округленный результат, что и Double.parseDouble. Иначе - обычный разбор.
+     */
+    private double toDouble(String s, int from, int to) {
+        boolean negative = s.charAt(from) == '-';
+        int i = s.charAt(from) == '+' || negative ? from + 1 : from;
+        long mantissa = 0;
+        int scale = 0;
+        boolean fraction = false;
+        for (; i < to; i++) {
+            char c = s.charAt(i);
+            if (c == '.') {
+                fraction = true;
+                continue;
+            }
+            mantissa = mantissa * 10 + (c - '0');
+            if (mantissa > MAX_EXACT_MANTISSA) {
+                return Double.parseDouble(s.substring(from, to));
             }
-            if (out != null && out.length >= 2) {
-                out[0] = lat;
-                out[1] = lon;
+            if (fraction) {
+                scale++;
             }
-            return true;
-        } catch (NumberFormatException e) {
-            return false;
         }
+        if (scale >= POW10.length) {
+            return Double.parseDouble(s.substring(from, to));
+        }
+        double value = mantissa / POW10[scale];
+        return negative ? -value : value;
+    }
+
+    private boolean isSpace(char c) {
+        return c == ' ' || c >= '\t' && c <= '\r';
     }
 
 //    public String formatDistance(Double km) {
@@ -0,0 +1,66 @@
+package ru.otus.hw.analytics;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import ru.otus.hw.configurations.AnalyticsProperties;
+import ru.otus.hw.domain.AnalyticsReport;
+import ru.otus.hw.domain.ClassifiedItem;
+import ru.otus.hw.domain.Intent;
+import ru.otus.hw.util.GeoUtil;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ClassifiedBatchTest {
+
+    @DisplayName("Should dictionary-encode queries and sources and grow past the expected size")
+    @Test
+    void shouldEncodeColumns() {
+        ClassifiedBatch batch = new ClassifiedBatch(1);
+        for (int i = 0; i < 100; i++) {
+            batch.add(Intent.TEXT, i % 2 == 0 ? "hermitage" : "pushkin museum", i % 3 == 0 ? "web" : "mobile",
+                    GeoUtil.NO_CELL);
+        }
+        batch.add(Intent.UNKNOWN, " ", "web", GeoUtil.NO_CELL);
+
+        assertThat(batch.size()).isEqualTo(101);
+        assertThat(batch.distinctQueries()).isEqualTo(2);
+        assertThat(batch.distinctSources()).isEqualTo(2);
+        assertThat(batch.query(batch.queryId(1))).isEqualTo("pushkin museum");
+        assertThat(batch.source(batch.sourceId(1))).isEqualTo("mobile");
+        assertThat(batch.queryId(100)).isEqualTo(ClassifiedBatch.NO_QUERY);
+        assertThat(batch.intent(100)).isEqualTo(Intent.UNKNOWN);
+        ReportAccumulator accumulator = new ReportAccumulator(ExactTopKTracker::new);
+        accumulator.add(batch);
+        AnalyticsReport report = accumulator.toReport(5);
+        assertThat(report.getCountsByIntent())
+                .containsOnly(Map.entry(Intent.TEXT, 100L), Map.entry(Intent.UNKNOWN, 1L));
+        assertThat(report.getTop5Queries()).containsExactlyInAnyOrder("hermitage", "pushkin museum");
+    }
+
+    @DisplayName("Should build the same report, including the per-source breakdown, as item-by-item accumulation")
+    @Test
+    void shouldBuildSameReportAsItems() {
+        ClassifiedBatch batch = new ClassifiedBatch(16);
+        ReportAccumulator items = new ReportAccumulator(ExactTopKTracker::new);
+        for (int i = 0; i < 1_000; i++) {
+            Intent intent = i % 5 == 0 ? Intent.COORDS : Intent.TEXT;
+            String query = "q" + Integer.numberOfTrailingZeros(i + 1);
+            ClassifiedItem item = new ClassifiedItem(String.valueOf(i), intent, query, i % 3 == 0 ? "telegram" : null);
+            batch.add(item);
+            items.add(item);
+        }
+        ReportAccumulator columns = new ReportAccumulator(ExactTopKTracker::new);
+        columns.add(batch);
+
+        AnalyticsReport report = columns.toReport(3);
+
+        assertThat(report.getCountsByIntent())
+                .containsOnly(Map.entry(Intent.COORDS, 200L), Map.entry(Intent.TEXT, 800L));
+        assertThat(report.getBySource()).containsOnlyKeys("telegram", ReportAccumulator.UNKNOWN_SOURCE);
+        assertThat(report.getBySource().get("telegram").getTop5Queries()).containsExactly("q0", "q1", "q2");
+        assertThat(report).isEqualTo(items.toReport(3));
+        assertThat(columns.getTotal()).isEqualTo(1_000);
+    }
+}
@@ -0,0 +1,79 @@
+package ru.otus.hw.analytics;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ClockCacheTest {
+
+    @DisplayName("Should load a key once and count hits and misses")
+    @Test
+    void shouldCountHitsAndMisses() {
+        var cache = new ClockCache<String, String>(10);
+        AtomicInteger loads = new AtomicInteger();
+
+        for (int i = 0; i < 5; i++) {
+            assertThat(cache.get("Pushkin museum", k -> {
+                loads.incrementAndGet();
+                return k.toLowerCase();
+            })).isEqualTo("pushkin museum");
+        }
+
+        assertThat(loads).hasValue(1);
+        assertThat(cache.hitCount()).isEqualTo(4);
+        assertThat(cache.missCount()).isEqualTo(1);
+    }
+
+    @DisplayName("Should stay within capacity and give recently used entries a second chance")
+    @Test
+    void shouldEvictUnreferencedEntries() {
+        var cache = new ClockCache<Integer, Integer>(3);
+        cache.get(1, k -> k);
+        cache.get(2, k -> k);
+        cache.get(3, k -> k);
+        cache.get(1, k -> k);
+
+        cache.get(4, k -> k);
+
+        assertThat(cache.size()).isEqualTo(3);
+        assertThat(cache.evictionCount()).isEqualTo(1);
+        long misses = cache.missCount();
+        cache.get(1, k -> k);
+        assertThat(cache.missCount()).as("referenced entry survived").isEqualTo(misses);
+        cache.get(2, k -> k);
+        assertThat(cache.missCount()).as("first unreferenced entry was evicted").isEqualTo(misses + 1);
+    }
+
+    @DisplayName("Should stay consistent and bounded under concurrent access")
+    @Test
+    void shouldBeBoundedUnderConcurrency() throws Exception {
+        var cache = new ClockCache<Integer, String>(100);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = IntStream.range(0, 8)
+                    .<Future<?>>mapToObj(t -> executor.submit(() -> {
+                        for (int i = 0; i < 50_000; i++) {
+                            int key = (i * 31 + t) % (i % 4 == 0 ? 1_000 : 50);
+                            assertThat(cache.get(key, String::valueOf)).isEqualTo(String.valueOf(key));
+                        }
+                    }))
+                    .toList();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        assertThat(cache.size()).isLessThanOrEqualTo(100);
+        assertThat(cache.hitCount() + cache.missCount()).isEqualTo(400_000);
+    }
+}
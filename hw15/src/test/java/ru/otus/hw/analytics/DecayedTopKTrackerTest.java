@@ -0,0 +1,65 @@
+package ru.otus.hw.analytics;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import ru.otus.hw.domain.TrendingQuery;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class DecayedTopKTrackerTest {
+
+    private static final long HOUR = 3_600_000;
+
+    @DisplayName("Should halve a query's weight every half-life")
+    @Test
+    void shouldDecayByHalfLife() {
+        var tracker = new DecayedTopKTracker(10, HOUR, 0);
+        tracker.add("museum", 8, 0);
+
+        assertThat(tracker.top(1, HOUR).get(0).getScore()).isCloseTo(4, within(1e-9));
+        assertThat(tracker.top(1, 3 * HOUR).get(0).getScore()).isCloseTo(1, within(1e-9));
+
+        tracker.add("museum", 1, 3 * HOUR);
+        assertThat(tracker.top(1, 3 * HOUR).get(0).getScore()).isCloseTo(2, within(1e-9));
+    }
+
+    @DisplayName("Should let fresh queries overtake old heavy hitters")
+    @Test
+    void shouldRankByDecayedWeight() {
+        var tracker = new DecayedTopKTracker(10, HOUR, 0);
+        tracker.add("old", 100, 0);
+        tracker.add("new", 30, 4 * HOUR);
+
+        assertThat(tracker.top(2, 4 * HOUR)).extracting(TrendingQuery::getQuery).containsExactly("new", "old");
+    }
+
+    @DisplayName("Should keep at most capacity counters and evict the lightest")
+    @Test
+    void shouldStayWithinCapacity() {
+        var tracker = new DecayedTopKTracker(2, HOUR, 0);
+        tracker.add("museum", 10, 0);
+        tracker.add("gallery", 5, 0);
+        tracker.add("theatre", 1, 0);
+
+        assertThat(tracker.size()).isEqualTo(2);
+        assertThat(tracker.top(2, 0)).extracting(TrendingQuery::getQuery).containsExactly("museum", "theatre");
+        assertThat(tracker.entries(0)).filteredOn(e -> e.getKey().equals("theatre")).singleElement()
+                .satisfies(e -> {
+                    assertThat(e.getScore()).isEqualTo(6);
+                    assertThat(e.getError()).as("inherited from the evicted counter").isEqualTo(5);
+                });
+    }
+
+    @DisplayName("Should keep scores and order after the landmark is moved")
+    @Test
+    void shouldRescaleLargeMultipliers() {
+        var tracker = new DecayedTopKTracker(10, 1, 0);
+        tracker.add("museum", 4, 0);
+        tracker.add("gallery", 8, 0);
+        tracker.add("gallery", 8, 400);
+
+        assertThat(tracker.top(2, 400)).extracting(TrendingQuery::getQuery).containsExactly("gallery", "museum");
+        assertThat(tracker.top(1, 401).get(0).getScore()).isCloseTo(4, within(1e-9));
+    }
+}
@@ -0,0 +1,55 @@
+package ru.otus.hw.analytics;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class LongCountMapTest {
+
+    @DisplayName("Should count like a HashMap through resizes and return top keys by count")
+    @Test
+    void shouldCountAndSelectTop() {
+        LongCountMap map = new LongCountMap();
+        Map<Long, Long> expected = new HashMap<>();
+        Random random = new Random(7);
+        for (int i = 0; i < 100_000; i++) {
+            // ключ k выпадает с вероятностью ~ 2^-(k+1), остальные - редкие ключи с младшими битами
+            long key = i % 2 == 0
+                    ? (long) Long.numberOfTrailingZeros(random.nextLong() | 1L << 40) << 32
+                    : random.nextInt(10_000);
+            map.add(key);
+            expected.merge(key, 1L, Long::sum);
+        }
+
+        assertThat(map.size()).isEqualTo(expected.size());
+        expected.forEach((key, count) -> assertThat(map.get(key)).isEqualTo(count));
+        assertThat(map.top(3)).containsExactly(0L, 1L << 32, 2L << 32);
+        assertThat(map.top(expected.size() + 10)).hasSize(expected.size());
+    }
+
+    @DisplayName("Should merge counts, clear and reject the reserved key")
+    @Test
+    void shouldMergeAndClear() {
+        LongCountMap first = new LongCountMap();
+        first.add(-1, 2);
+        first.add(5);
+        LongCountMap second = new LongCountMap(1);
+        second.add(5, 3);
+
+        first.merge(second);
+
+        assertThat(first.get(5)).isEqualTo(4);
+        assertThat(first.get(-1)).isEqualTo(2);
+        assertThat(first.top(1)).containsExactly(5L);
+        first.clear();
+        assertThat(first.size()).isZero();
+        assertThat(first.get(5)).isZero();
+        assertThrows(IllegalArgumentException.class, () -> first.add(Long.MIN_VALUE));
+    }
+}
@@ -0,0 +1,92 @@
+package ru.otus.hw.analytics;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class QueryClustererTest {
+
+    @DisplayName("Should collapse reordered words and typos into the first seen query")
+    @Test
+    void shouldCollapseNearDuplicates() {
+        var clusterer = new QueryClusterer(100, 10, 3, 0.6);
+
+        assertThat(clusterer.canonical("pushkin museum")).isEqualTo("pushkin museum");
+        assertThat(clusterer.canonical("museum pushkin")).isEqualTo("pushkin museum");
+        assertThat(clusterer.canonical("pushkin musem")).isEqualTo("pushkin museum");
+        assertThat(clusterer.canonical("musem pushkin")).isEqualTo("pushkin museum");
+
+        assertThat(clusterer.merges()).as("reordering alone is an exact signature match").isEqualTo(1);
+        assertThat(clusterer.size()).isEqualTo(2);
+    }
+
+    @DisplayName("Should keep different queries apart")
+    @Test
+    void shouldKeepDistinctQueries() {
+        var clusterer = new QueryClusterer(100, 10, 3, 0.6);
+
+        for (String query : List.of("hotels in moscow", "hotels in paris", "cat", "cats", "pushkin square")) {
+            assertThat(clusterer.canonical(query)).isEqualTo(query);
+        }
+        assertThat(clusterer.canonical("pushkin museum")).isEqualTo("pushkin museum");
+        assertThat(clusterer.canonical("iphone 14 price")).isEqualTo("iphone 14 price");
+        assertThat(clusterer.canonical("iphone 15 price")).as("numbers must match").isEqualTo("iphone 15 price");
+        assertThat(clusterer.canonical("iphone 15 prise")).isEqualTo("iphone 15 price");
+        assertThat(clusterer.canonical("")).isEmpty();
+        assertThat(clusterer.merges()).isEqualTo(1);
+    }
+
+    @DisplayName("Should stay within capacity and forget the oldest clusters")
+    @Test
+    void shouldEvictOldestSignatures() {
+        var clusterer = new QueryClusterer(2, 10, 3, 0.6);
+        clusterer.canonical("pushkin museum");
+        clusterer.canonical("hermitage tickets");
+        clusterer.canonical("bolshoi theatre");
+
+        assertThat(clusterer.size()).isEqualTo(2);
+        assertThat(clusterer.canonical("museum pushkin")).as("evicted cluster starts over")
+                .isEqualTo("museum pushkin");
+        assertThat(clusterer.canonical("bolshoi theater")).isEqualTo("bolshoi theatre");
+    }
+
+    @DisplayName("Should give concurrent callers the same canonical query")
+    @Test
+    void shouldBeConsistentUnderConcurrency() throws Exception {
+        var clusterer = new QueryClusterer(1_000, 10, 3, 0.6);
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<String>> results = IntStream.range(0, 200)
+                    .mapToObj(i -> pool.submit(() -> clusterer.canonical(i % 2 == 0
+                            ? "tretyakov gallery" : "gallery tretyakov")))
+                    .toList();
+            String first = results.get(0).get();
+            for (Future<String> result : results) {
+                assertThat(result.get()).isEqualTo(first);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        assertThat(clusterer.size()).isEqualTo(1);
+    }
+
+    @DisplayName("Should compute exact Jaccard similarity of character trigrams")
+    @Test
+    void shouldComputeTrigramSimilarity() {
+        long[] a = QueryClusterer.shingles(QueryClusterer.signature("pushkin museum"));
+        long[] b = QueryClusterer.shingles(QueryClusterer.signature("pushkin musem"));
+
+        assertThat(a).hasSize(12);
+        assertThat(QueryClusterer.jaccard(a, a)).isEqualTo(1.0);
+        assertThat(QueryClusterer.jaccard(a, b)).isEqualTo(9.0 / 14);
+        assertThat(QueryClusterer.shingles("ab")).hasSize(1);
+        assertThat(QueryClusterer.numbers("14 iphone pro2 x")).isEqualTo("14 pro2 ");
+    }
+}
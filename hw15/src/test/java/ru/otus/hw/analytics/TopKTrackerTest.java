@@ -0,0 +1,82 @@
+package ru.otus.hw.analytics;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import ru.otus.hw.configurations.AnalyticsProperties;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TopKTrackerTest {
+
+    @DisplayName("Exact tracker should return keys ordered by count")
+    @Test
+    void exactTrackerShouldOrderByCount() {
+        TopKTracker tracker = new ExactTopKTracker();
+        List.of("b", "a", "b", "c", "b", "a").forEach(tracker::add);
+
+        assertThat(tracker.top(2)).containsExactly("b", "a");
+        assertThat(tracker.top(10)).containsExactly("b", "a", "c");
+    }
+
+    @DisplayName("Space-Saving should find heavy hitters of a long-tail stream with a fixed number of counters")
+    @Test
+    void spaceSavingShouldFindHeavyHitters() {
+        var tracker = new SpaceSavingTopKTracker(100, new CountMinSketch(0.001, 0.01));
+        List<String> stream = new ArrayList<>();
+        IntStream.range(0, 5).forEach(i -> stream.addAll(Collections.nCopies(1_000 - i * 100, "hot" + i)));
+        IntStream.range(0, 20_000).forEach(i -> stream.add("tail" + i));
+        Collections.shuffle(stream, new Random(42));
+
+        stream.forEach(tracker::add);
+
+        assertThat(tracker.top(5)).containsExactly("hot0", "hot1", "hot2", "hot3", "hot4");
+        assertThat(tracker.guaranteedCount("hot4")).isLessThanOrEqualTo(600);
+    }
+
+    @DisplayName("Merged trackers should sum counts")
+    @Test
+    void shouldMergeTrackers() {
+        TopKTracker left = new SpaceSavingTopKTracker(10, null);
+        TopKTracker right = new ExactTopKTracker();
+        left.add("a", 2);
+        right.add("b", 3);
+        right.add("a", 2);
+
+        left.merge(right);
+
+        assertThat(left.top(2)).containsExactly("a", "b");
+    }
+
+    @DisplayName("Factory should count small batches exactly and large ones with fixed memory in AUTO mode")
+    @Test
+    void factoryShouldPickImplementationBySize() {
+        var props = new AnalyticsProperties.TopK();
+        props.setExactThreshold(100);
+        var factory = new TopKTrackerFactory(props);
+
+        assertThat(factory.create(100)).isInstanceOf(ExactTopKTracker.class);
+        assertThat(factory.create(101)).isInstanceOf(SpaceSavingTopKTracker.class);
+
+        props.setMode(TopKMode.EXACT);
+        assertThat(factory.create(1_000_000)).isInstanceOf(ExactTopKTracker.class);
+        assertThat(factory.createBounded()).isInstanceOf(SpaceSavingTopKTracker.class);
+    }
+
+    @DisplayName("Factory should create small bounded trackers with the requested number of counters")
+    @Test
+    void factoryShouldBoundTrackerByCapacity() {
+        TopKTracker tracker = new TopKTrackerFactory(new AnalyticsProperties.TopK()).createBounded(2);
+
+        tracker.add("a", 5);
+        tracker.add("b", 3);
+        tracker.add("c", 1);
+
+        assertThat(tracker.top(10)).hasSize(2).startsWith("a");
+    }
+}
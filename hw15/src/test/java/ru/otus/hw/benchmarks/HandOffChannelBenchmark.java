@@ -0,0 +1,112 @@
+package ru.otus.hw.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.integration.channel.AbstractSubscribableChannel;
+import org.springframework.integration.dsl.MessageChannels;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.support.GenericMessage;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import ru.otus.hw.configurations.IntegrationProperties;
+import ru.otus.hw.integration.RingBufferChannel;
+
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Передача сообщений между потоками: MessageChannels.executor на пуле, настроенном как
+ * integrationFlowTaskExecutor (очередь 64, CallerRunsPolicy), против RingBufferChannel с разными WaitStrategy.
+ * Обработчик только считает сообщения, поэтому измеряется сама передача; время - на сообщение, включая
+ * ожидание, пока потребители обработают весь пакет.
+ * Запуск: mvn -Pjmh test-compile exec:exec -Djmh.args="HandOffChannelBenchmark -prof gc"; -t N - N отправителей.
+ * BUSY_SPIN и YIELDING имеют смысл, только если ядер больше, чем потребителей и отправителей вместе.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HandOffChannelBenchmark {
+
+    private static final int BATCH = 10_000;
+
+    @Param({"executor", "BLOCKING", "SLEEPING", "YIELDING", "BUSY_SPIN"})
+    private String channelType;
+
+    @Param({"4"})
+    private int consumers;
+
+    private final IntegrationProperties props = new IntegrationProperties();
+
+    private final LongAdder sent = new LongAdder();
+
+    private final LongAdder handled = new LongAdder();
+
+    private final Message<String> message = new GenericMessage<>("pushkin museum");
+
+    private ThreadPoolTaskExecutor executor;
+
+    private AbstractSubscribableChannel channel;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        if ("executor".equals(channelType)) {
+            executor = new ThreadPoolTaskExecutor();
+            executor.setCorePoolSize(consumers);
+            executor.setMaxPoolSize(consumers);
+            executor.setQueueCapacity(props.getQueueCapacity());
+            executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+            executor.initialize();
+            channel = MessageChannels.executor(executor).getObject();
+        } else {
+            IntegrationProperties.Ring ring = props.getRing();
+            channel = new RingBufferChannel(ring.getBufferSize(), consumers, ring.getBatchSize(),
+                    RingBufferChannel.WaitStrategy.valueOf(channelType), "bench-ring-");
+        }
+        channel.setBeanName("benchmarkChannel");
+        channel.afterPropertiesSet();
+        if (channel instanceof RingBufferChannel ringChannel) {
+            ringChannel.start();
+        }
+        channel.subscribe(m -> handled.increment());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        channel.destroy();
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * С несколькими отправителями (-t) каждый ждет, пока обработано все, что отправлено к этому моменту
+     * всеми, поэтому вызов заканчивается только после передачи его сообщений.
+     */
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void handOff() {
+        for (int i = 0; i < BATCH; i++) {
+            channel.send(message);
+        }
+        sent.add(BATCH);
+        long target = sent.sum();
+        while (handled.sum() < target) {
+            Thread.onSpinWait();
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package ru.otus.hw.benchmarks;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import ru.otus.hw.Application;
+import ru.otus.hw.domain.AnalyticsReport;
+import ru.otus.hw.domain.SearchRequest;
+import ru.otus.hw.integration.SearchAnalyticsGateway;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Пакет целиком через SearchAnalyticsGateway.process и потоки IntegrationConfig, в поднятом контексте
+ * с выключенным построчным логом этапов. В режиме thrpt счетчик requests - запросов в секунду,
+ * в режиме sample - распределение времени пакета (p50/p99/p99.9).
+ * Запуск: mvn -Pjmh test-compile exec:exec -Djmh.args="PipelineBenchmark -p batchSize=1000 -rf json -rff jmh.json".
+ * Размер кучи зафиксирован, нагрузка генерируется с постоянным зерном - результаты разных запусков сравнимы.
+ * По умолчанию executorMode=POOL; VIRTUAL требует JDK 21+ и сравнивается запуском с -p executorMode=POOL,VIRTUAL.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class PipelineBenchmark {
+
+    @Param({"10", "1000", "100000", "1000000"})
+    private int batchSize;
+
+    @Param({"POOL"})
+    private String executorMode;
+
+    @Param({"STORE", "SHARDED", "COLUMNAR"})
+    private String aggregationMode;
+
+    /**
+     * 0 - по сообщению на запрос через geo/text подпотоки, иначе чанковый режим.
+     */
+    @Param({"0"})
+    private int chunkSize;
+
+    /**
+     * true - geo/text/classified каналы на RingBufferChannel (-p ring=false,true для сравнения).
+     */
+    @Param({"false"})
+    private boolean ring;
+
+    private ConfigurableApplicationContext context;
+
+    private SearchAnalyticsGateway gateway;
+
+    private List<SearchRequest> batch;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        batch = SearchWorkload.requests(batchSize);
+        context = new SpringApplicationBuilder(Application.class)
+                .web(WebApplicationType.NONE)
+                .properties(
+                        "spring.jmx.enabled=false",
+                        "logging.level.root=WARN",
+                        "app.integration.executor.mode=" + executorMode,
+                        "app.integration.analytics.stage-logging=false",
+                        "app.integration.analytics.event-time.enabled=false",
+                        "app.integration.executor.ring.enabled=" + ring,
+                        "app.integration.analytics.chunk-size=" + chunkSize,
+                        "app.integration.analytics.aggregation.mode=" + aggregationMode,
+                        "app.integration.analytics.aggregation.group-timeout=10m")
+                .run();
+        gateway = context.getBean(SearchAnalyticsGateway.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public AnalyticsReport process(Requests requests) {
+        AnalyticsReport report = gateway.process(batch);
+        requests.requests += batchSize;
+        return report;
+    }
+
+    /**
+     * Число обработанных запросов; в режиме thrpt JMH выводит его в пересчете на единицу времени.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Requests {
+        public long requests;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            requests = 0;
+        }
+    }
+}
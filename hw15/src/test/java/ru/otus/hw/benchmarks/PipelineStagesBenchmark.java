@@ -0,0 +1,112 @@
+package ru.otus.hw.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import ru.otus.hw.analytics.ClassifiedBatch;
+import ru.otus.hw.analytics.ReportAccumulator;
+import ru.otus.hw.analytics.TopKTrackerFactory;
+import ru.otus.hw.configurations.AnalyticsProperties;
+import ru.otus.hw.domain.AnalyticsReport;
+import ru.otus.hw.domain.ClassifiedItem;
+import ru.otus.hw.domain.NormalizedQuery;
+import ru.otus.hw.domain.SearchRequest;
+import ru.otus.hw.services.QueryClassifier;
+import ru.otus.hw.services.QueryNormalizer;
+import ru.otus.hw.util.GeoUtil;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Отдельные этапы конвейера на пакете SearchWorkload: разбор координат, нормализация текста и построение
+ * отчета из классифицированных элементов (по объектам и колоночно). Время - на весь пакет.
+ * Запуск: mvn -Pjmh test-compile exec:exec -Djmh.args="PipelineStagesBenchmark -prof gc"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class PipelineStagesBenchmark {
+
+    @Param({"10", "1000", "100000", "1000000"})
+    private int batchSize;
+
+    private String[] queries;
+
+    private List<ClassifiedItem> items;
+
+    private QueryNormalizer normalizer;
+
+    private TopKTrackerFactory topKTrackerFactory;
+
+    private final double[] latLon = new double[2];
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        var props = new AnalyticsProperties();
+        props.getNormalizer().setCacheSize(0);
+        normalizer = new QueryNormalizer(props);
+        topKTrackerFactory = new TopKTrackerFactory(props.getTopK());
+        var classifier = new QueryClassifier(normalizer, props);
+        List<SearchRequest> requests = SearchWorkload.requests(batchSize);
+        queries = requests.stream().map(SearchRequest::getQueryText).toArray(String[]::new);
+        items = requests.stream()
+                .map(sr -> {
+                    NormalizedQuery query = classifier.classify(sr.getQueryText());
+                    long cell = query.getCoords() == GeoUtil.NO_COORDS
+                            ? GeoUtil.NO_CELL
+                            : GeoUtil.geohash(query.getCoords(), props.getGeo().getPrecision());
+                    return new ClassifiedItem(sr.getId(), query.getIntent(), query.getText(), sr.getSource(), cell);
+                })
+                .toList();
+    }
+
+    @Benchmark
+    public void parseLatLon(Blackhole bh) {
+        for (String query : queries) {
+            bh.consume(GeoUtil.parseLatLon(query, latLon));
+        }
+    }
+
+    @Benchmark
+    public void normalize(Blackhole bh) {
+        for (String query : queries) {
+            bh.consume(normalizer.normalize(query));
+        }
+    }
+
+    /**
+     * Как IntegrationConfig.toReport в режиме STORE.
+     */
+    @Benchmark
+    public AnalyticsReport toReport() {
+        ReportAccumulator accumulator = new ReportAccumulator(() -> topKTrackerFactory.create(items.size()));
+        items.forEach(accumulator::add);
+        return accumulator.toReport(5);
+    }
+
+    /**
+     * Как ColumnarReportAggregator: пакет сначала складывается в колонки.
+     */
+    @Benchmark
+    public AnalyticsReport toReportColumnar() {
+        ClassifiedBatch batch = new ClassifiedBatch(items.size());
+        items.forEach(batch::add);
+        ReportAccumulator accumulator = new ReportAccumulator(() -> topKTrackerFactory.create(items.size()));
+        accumulator.add(batch);
+        return accumulator.toReport(5);
+    }
+}
@@ -0,0 +1,113 @@
+package ru.otus.hw.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import ru.otus.hw.configurations.AnalyticsProperties;
+import ru.otus.hw.services.QueryClassifier;
+import ru.otus.hw.services.QueryNormalizer;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Классификация потока запросов с распределением Ципфа (как в реальных логах: немного запросов повторяются
+ * постоянно, длинный хвост встречается единожды) без кэша и с кэшем разного размера.
+ * Запуск: mvn -Pjmh test-compile exec:exec -Djmh.args="QueryClassifierBenchmark"; -t N - конкурентный доступ.
+ * Нормализация и так стоит ~100-150 нс, поэтому кэш окупается только при высокой доле попаданий:
+ * на 100_000 различных запросов при skew=1.1 он быстрее в ~2 раза, при skew=0.8 - медленнее.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QueryClassifierBenchmark {
+
+    private static final int DISTINCT_QUERIES = 100_000;
+
+    private static final int STREAM_LENGTH = 1 << 20;
+
+    private static final int BATCH = 1_024;
+
+    private static final String[] TEMPLATES = {
+        "Эрмитаж, часы работы? #%d",
+        "  Третьяковская   галерея — билеты онлайн %d ",
+        "ГДЕ ПОЕСТЬ НЕДОРОГО!!! вариант %d",
+        "Bolshoi Theatre: tickets & schedule (%d)",
+        "59.%05d, 30.3146",
+    };
+
+    /**
+     * Показатель распределения Ципфа: чем больше, тем сильнее концентрация на самых частых запросах.
+     */
+    @Param({"0.8", "1.1"})
+    private double skew;
+
+    @Param({"0", "1000", "10000"})
+    private int cacheSize;
+
+    /**
+     * Кластеризация почти одинаковых запросов: без кэша она идет на каждый запрос.
+     */
+    @Param({"false", "true"})
+    private boolean clustering;
+
+    private String[] stream;
+
+    private QueryClassifier classifier;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        String[] queries = new String[DISTINCT_QUERIES];
+        for (int i = 0; i < DISTINCT_QUERIES; i++) {
+            queries[i] = String.format(TEMPLATES[i % TEMPLATES.length], i);
+        }
+        stream = zipfStream(queries, skew, new Random(42));
+        var props = new AnalyticsProperties();
+        props.getNormalizer().setCacheSize(cacheSize);
+        props.getNormalizer().getClustering().setEnabled(clustering);
+        classifier = new QueryClassifier(new QueryNormalizer(props), props);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void classify(Blackhole bh) {
+        int from = ThreadLocalRandom.current().nextInt(STREAM_LENGTH - BATCH);
+        for (int i = from; i < from + BATCH; i++) {
+            bh.consume(classifier.classify(stream[i]));
+        }
+    }
+
+    /**
+     * Ранг i (с 1) выбирается с вероятностью, пропорциональной 1 / i^skew.
+     */
+    private static String[] zipfStream(String[] queries, double skew, Random random) {
+        double[] cdf = new double[queries.length];
+        double sum = 0;
+        for (int i = 0; i < queries.length; i++) {
+            sum += 1 / Math.pow(i + 1, skew);
+            cdf[i] = sum;
+        }
+        String[] result = new String[STREAM_LENGTH];
+        for (int i = 0; i < STREAM_LENGTH; i++) {
+            int rank = Arrays.binarySearch(cdf, random.nextDouble() * sum);
+            result[i] = queries[rank < 0 ? -rank - 1 : rank];
+        }
+        return result;
+    }
+}
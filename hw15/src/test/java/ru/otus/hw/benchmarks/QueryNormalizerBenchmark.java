@@ -0,0 +1,70 @@
+package ru.otus.hw.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import ru.otus.hw.analytics.PunctuationRules;
+import ru.otus.hw.services.QueryNormalizer;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Нормализация реалистичных русских и английских запросов: цепочка replaceAll против QueryNormalizer.
+ * Запуск: mvn -Pjmh test-compile exec:exec -Djmh.args="QueryNormalizerBenchmark -prof gc"
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QueryNormalizerBenchmark {
+
+    private static final String[] QUERIES = {
+        "Пушкинский музей",
+        "Эрмитаж, часы работы?",
+        "  Третьяковская   галерея — билеты онлайн ",
+        "кафе рядом с метро \"Невский проспект\"",
+        "ГДЕ ПОЕСТЬ НЕДОРОГО!!!",
+        "pushkin museum",
+        "Tretyakov Gallery opening hours",
+        "  Bolshoi Theatre: tickets & schedule  ",
+        "weather in St. Petersburg, tomorrow",
+        "what's on at the Mariinsky?",
+    };
+
+    private final QueryNormalizer ascii = new QueryNormalizer(PunctuationRules.ASCII);
+
+    private final QueryNormalizer unicode = new QueryNormalizer(PunctuationRules.UNICODE);
+
+    @Benchmark
+    public void regexChain(Blackhole bh) {
+        for (String q : QUERIES) {
+            bh.consume(q.toLowerCase()
+                    .trim()
+                    .replaceAll("\\p{Punct}", "")
+                    .replaceAll("\\s+", " "));
+        }
+    }
+
+    @Benchmark
+    public void normalizerAscii(Blackhole bh) {
+        for (String q : QUERIES) {
+            bh.consume(ascii.normalize(q));
+        }
+    }
+
+    @Benchmark
+    public void normalizerUnicode(Blackhole bh) {
+        for (String q : QUERIES) {
+            bh.consume(unicode.normalize(q));
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package ru.otus.hw.benchmarks;
+
+import ru.otus.hw.domain.SearchRequest;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Воспроизводимая нагрузка для бенчмарков: фиксированное зерно, запросы по закону Ципфа (skew 1.0)
+ * из 10_000 различных, из них ~20% координаты, ~2% пустые, источники web/telegram/mobile,
+ * время событий в пределах часа.
+ */
+final class SearchWorkload {
+
+    static final long SEED = 42;
+
+    private static final int DISTINCT_QUERIES = 10_000;
+
+    private static final String[] SOURCES = {"web", "telegram", "mobile"};
+
+    private static final String[] TEMPLATES = {
+        "Эрмитаж, часы работы? #%d",
+        "  Третьяковская   галерея — билеты онлайн %d ",
+        "ГДЕ ПОЕСТЬ НЕДОРОГО!!! вариант %d",
+        "Bolshoi Theatre: tickets & schedule (%d)",
+        "59.9%04d, 30.31%03d",
+    };
+
+    private static final Instant START = Instant.parse("2025-06-01T10:00:00Z");
+
+    private SearchWorkload() {
+    }
+
+    static List<SearchRequest> requests(int size) {
+        Random random = new Random(SEED);
+        String[] queries = new String[DISTINCT_QUERIES];
+        for (int i = 0; i < DISTINCT_QUERIES; i++) {
+            queries[i] = String.format(TEMPLATES[i % TEMPLATES.length], i, i % 1_000);
+        }
+        double[] cdf = new double[queries.length];
+        double sum = 0;
+        for (int i = 0; i < queries.length; i++) {
+            sum += 1.0 / (i + 1);
+            cdf[i] = sum;
+        }
+        List<SearchRequest> requests = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            int rank = Arrays.binarySearch(cdf, random.nextDouble() * sum);
+            String query = random.nextInt(50) == 0 ? " " : queries[rank < 0 ? -rank - 1 : rank];
+            requests.add(new SearchRequest(String.valueOf(i), query, SOURCES[random.nextInt(SOURCES.length)],
+                    START.plusMillis(random.nextInt(3_600_000))));
+        }
+        return requests;
+    }
+}
@@ -0,0 +1,151 @@
+package ru.otus.hw.configurations;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import ru.otus.hw.configurations.AdaptiveExecutorController.Action;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AdaptiveExecutorControllerTest {
+
+    private AdaptiveThreadPoolTaskExecutor executor;
+
+    private IntegrationProperties.Adaptive props;
+
+    private AdaptiveExecutorController controller;
+
+    @BeforeEach
+    void setUp() {
+        executor = new AdaptiveThreadPoolTaskExecutor();
+        executor.setCorePoolSize(4);
+        executor.setMaxPoolSize(8);
+        executor.setQueueCapacity(64);
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.setMeasureQueueWait(true);
+        executor.initialize();
+        props = new IntegrationProperties.Adaptive();
+        props.setTargetQueueWait(Duration.ofMillis(10));
+        props.setMinPoolSize(2);
+        props.setMaxPoolSize(8);
+        props.setMinQueueCapacity(16);
+        props.setMaxQueueCapacity(128);
+        controller = new AdaptiveExecutorController(executor, props, () -> 0.5);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdown();
+    }
+
+    @DisplayName("Should grow the pool within bounds while queue wait is high and CPU is available")
+    @Test
+    void shouldGrowPool() {
+        assertThat(controller.adjust(50, 0, 0.3)).isEqualTo(Action.GROW);
+        assertThat(executor.getCorePoolSize()).isEqualTo(6);
+        assertThat(executor.getMaxPoolSize()).isEqualTo(8);
+
+        assertThat(controller.adjust(50, 0, 0.3)).isEqualTo(Action.GROW);
+        assertThat(executor.getCorePoolSize()).isEqualTo(8);
+
+        assertThat(controller.adjust(50, 0, 0.3)).as("pool is at maxPoolSize").isEqualTo(Action.THROTTLE);
+        assertThat(executor.getCorePoolSize()).isEqualTo(8);
+        assertThat(controller.adjustments(Action.GROW)).isEqualTo(2);
+    }
+
+    @DisplayName("Should shrink the queue instead of adding threads when CPU is saturated")
+    @Test
+    void shouldThrottleWhenCpuIsSaturated() {
+        assertThat(controller.adjust(50, 0, 0.95)).isEqualTo(Action.THROTTLE);
+        assertThat(executor.getCorePoolSize()).isEqualTo(4);
+        assertThat(executor.getQueueLimit()).isEqualTo(32);
+
+        controller.adjust(50, 0, 0.95);
+        assertThat(controller.adjust(50, 0, 0.95)).as("queue is at minQueueCapacity").isNull();
+        assertThat(executor.getQueueLimit()).isEqualTo(16);
+    }
+
+    @DisplayName("Should grow the queue after rejections and shrink an idle pool when wait is low")
+    @Test
+    void shouldRelaxAndShrink() {
+        assertThat(controller.adjust(1, 5, 0.3)).isEqualTo(Action.RELAX);
+        assertThat(executor.getQueueLimit()).isEqualTo(128);
+
+        assertThat(controller.adjust(1, 0, 0.3)).isEqualTo(Action.SHRINK);
+        assertThat(executor.getCorePoolSize()).isEqualTo(3);
+        assertThat(executor.getMaxPoolSize()).isEqualTo(6);
+        controller.adjust(1, 0, 0.3);
+        assertThat(controller.adjust(1, 0, 0.3)).as("pool is at minPoolSize").isNull();
+        assertThat(executor.getCorePoolSize()).isEqualTo(2);
+
+        assertThat(controller.adjust(7, 0, 0.3)).as("inside the hysteresis band").isNull();
+    }
+
+    @DisplayName("Should reject tasks beyond the queue limit and measure queue wait")
+    @Test
+    void shouldApplyQueueLimitAndMeasureWait() throws Exception {
+        executor.setCorePoolSize(1);
+        executor.setMaxPoolSize(1);
+        executor.setQueueLimit(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicReference<Thread> callerRan = new AtomicReference<>();
+        executor.execute(() -> await(release));
+        executor.execute(() -> { });
+        executor.execute(() -> callerRan.set(Thread.currentThread()));
+
+        assertThat(callerRan.get()).as("third task ran in the caller").isSameAs(Thread.currentThread());
+        assertThat(executor.drainRejected()).isEqualTo(1);
+        Thread.sleep(20);
+        release.countDown();
+        executor.shutdown();
+        assertThat(executor.getThreadPoolExecutor().awaitTermination(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(executor.drainQueueWaitMillis()).isGreaterThan(0);
+        assertThat(executor.drainRejected()).isZero();
+    }
+
+    @DisplayName("Should leave tasks undecorated unless queue wait measuring is enabled")
+    @Test
+    void shouldNotMeasureQueueWaitByDefault() throws InterruptedException {
+        var plain = new AdaptiveThreadPoolTaskExecutor();
+        plain.initialize();
+        CountDownLatch done = new CountDownLatch(1);
+
+        plain.execute(done::countDown);
+        plain.addQueueWait(TimeUnit.MILLISECONDS.toNanos(5));
+
+        assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(plain.drainQueueWaitMillis()).isZero();
+        plain.shutdown();
+    }
+
+    @DisplayName("Should publish pool sizes and decisions as metrics")
+    @Test
+    void shouldPublishMetrics() {
+        var registry = new SimpleMeterRegistry();
+        controller.bindTo(registry);
+
+        controller.adjust(50, 0, 0.3);
+
+        assertThat(registry.get(AdaptiveExecutorController.CORE_SIZE).gauge().value()).isEqualTo(6);
+        assertThat(registry.get(AdaptiveExecutorController.QUEUE_CAPACITY).gauge().value()).isEqualTo(64);
+        assertThat(registry.get(AdaptiveExecutorController.QUEUE_WAIT).gauge().value()).isEqualTo(50);
+        assertThat(registry.get(AdaptiveExecutorController.ADJUSTMENTS).tag("action", "grow")
+                .functionCounter().count()).isEqualTo(1);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
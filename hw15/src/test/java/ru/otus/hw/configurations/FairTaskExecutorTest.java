@@ -0,0 +1,149 @@
+package ru.otus.hw.configurations;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.integration.IntegrationMessageHeaderAccessor;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.messaging.support.MessageHandlingRunnable;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FairTaskExecutorTest {
+
+    private AdaptiveThreadPoolTaskExecutor pool;
+
+    private final List<Throwable> errors = new CopyOnWriteArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        pool = new AdaptiveThreadPoolTaskExecutor();
+        pool.setCorePoolSize(1);
+        pool.setMaxPoolSize(1);
+        pool.setQueueCapacity(64);
+        pool.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        pool.initialize();
+    }
+
+    @AfterEach
+    void tearDown() {
+        pool.shutdown();
+    }
+
+    @DisplayName("Should interleave a small batch with a big one submitted earlier")
+    @Test
+    void shouldInterleaveBatches() throws Exception {
+        var executor = new FairTaskExecutor(pool, errors::add, 1024);
+        List<String> order = new CopyOnWriteArrayList<>();
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(7);
+
+        executor.execute(task("big", () -> {
+            await(release);
+            order.add("big");
+            done.countDown();
+        }));
+        for (int i = 0; i < 4; i++) {
+            executor.execute(task("big", () -> record(order, "big", done)));
+        }
+        executor.execute(task("small", () -> record(order, "small", done)));
+        executor.execute(task("small", () -> record(order, "small", done)));
+        assertThat(executor.pending()).isEqualTo(6);
+        assertThat(executor.batches()).isEqualTo(2);
+
+        release.countDown();
+        assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+
+        assertThat(order).containsExactly("big", "big", "small", "big", "small", "big", "big");
+        assertThat(executor.pending()).isZero();
+        assertThat(errors).isEmpty();
+    }
+
+    @DisplayName("Should run a task in the sending thread when its batch queue is full")
+    @Test
+    void shouldRunInCallerWhenBatchQueueIsFull() throws Exception {
+        var executor = new FairTaskExecutor(pool, errors::add, 2);
+        var registry = new SimpleMeterRegistry();
+        executor.bindTo(registry);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(3);
+        AtomicReference<Thread> callerRan = new AtomicReference<>();
+
+        executor.execute(task("big", () -> await(release)));
+        executor.execute(task("big", done::countDown));
+        executor.execute(task("big", done::countDown));
+        executor.execute(task("big", () -> callerRan.set(Thread.currentThread())));
+        executor.execute(task("small", done::countDown));
+
+        assertThat(callerRan.get()).isSameAs(Thread.currentThread());
+        assertThat(registry.get(FairTaskExecutor.CALLER_RUNS).functionCounter().count()).isEqualTo(1);
+        assertThat(registry.get(FairTaskExecutor.PENDING).gauge().value()).isEqualTo(3);
+        assertThat(registry.get(FairTaskExecutor.BATCHES).gauge().value()).isEqualTo(2);
+
+        release.countDown();
+        assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(executor.pending()).isZero();
+    }
+
+    @DisplayName("Should pass task failures to the error handler")
+    @Test
+    void shouldHandleErrors() throws Exception {
+        var executor = new FairTaskExecutor(pool, errors::add, 1024);
+        CountDownLatch done = new CountDownLatch(1);
+
+        executor.execute(task("batch", () -> {
+            throw new IllegalStateException("boom");
+        }));
+        executor.execute(task("batch", done::countDown));
+
+        assertThat(done.await(5, TimeUnit.SECONDS)).as("next task of the batch still runs").isTrue();
+        assertThat(errors).singleElement().extracting(Throwable::getMessage).isEqualTo("boom");
+        assertThat(executor.pending()).isZero();
+    }
+
+    private static MessageHandlingRunnable task(String batch, Runnable body) {
+        Message<String> message = MessageBuilder.withPayload("item")
+                .setHeader(IntegrationMessageHeaderAccessor.CORRELATION_ID, batch)
+                .build();
+        return new MessageHandlingRunnable() {
+            @Override
+            public Message<?> getMessage() {
+                return message;
+            }
+
+            @Override
+            public MessageHandler getMessageHandler() {
+                return m -> { };
+            }
+
+            @Override
+            public void run() {
+                body.run();
+            }
+        };
+    }
+
+    private static void record(List<String> order, String batch, CountDownLatch done) {
+        order.add(batch);
+        done.countDown();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package ru.otus.hw.integration;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import ru.otus.hw.domain.AnalyticsReport;
+import ru.otus.hw.domain.Intent;
+import ru.otus.hw.domain.SearchRequest;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = "app.integration.analytics.chunk-size=2")
+class ChunkedProcessingGatewayTest {
+
+    @Autowired
+    private SearchAnalyticsGateway gateway;
+
+    @DisplayName("Should produce the same report when the batch is processed in chunks")
+    @Test
+    void shouldProcessBatchInChunks() {
+        List<SearchRequest> batch = List.of(
+                new SearchRequest("1", "59.9398,30.3146", "telegram", Instant.now()),
+                new SearchRequest("2", "Pushkin museum", "web", Instant.now()),
+                new SearchRequest("3", " ", "telegram", Instant.now()),
+                new SearchRequest("4", "Tretyakov Gallery", "web", Instant.now()),
+                new SearchRequest("5", "pushkin museum", "web", Instant.now())
+        );
+
+        AnalyticsReport report = gateway.process(batch);
+
+        assertThat(report.getCountsByIntent())
+                .hasSize(3)
+                .containsEntry(Intent.COORDS, 1L)
+                .containsEntry(Intent.TEXT, 3L)
+                .containsEntry(Intent.UNKNOWN, 1L);
+        assertThat(report.getTop5Queries())
+                .hasSize(3)
+                .startsWith("pushkin museum")
+                .containsExactlyInAnyOrder("pushkin museum", "tretyakov gallery", "5993980 3031460");
+    }
+
+    @DisplayName("Should merge partial reports of many chunks")
+    @Test
+    void shouldMergeManyChunks() {
+        List<SearchRequest> batch = IntStream.range(0, 1_001)
+                .mapToObj(i -> new SearchRequest(String.valueOf(i), "query " + i % 10, "web", Instant.now()))
+                .toList();
+
+        AnalyticsReport report = gateway.process(batch);
+
+        assertThat(report.getCountsByIntent()).containsEntry(Intent.TEXT, 1_001L);
+        assertThat(report.getTop5Queries()).startsWith("query 0").hasSize(5);
+    }
+}
@@ -0,0 +1,43 @@
+package ru.otus.hw.integration;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import ru.otus.hw.domain.AnalyticsReport;
+import ru.otus.hw.domain.Intent;
+import ru.otus.hw.domain.SearchRequest;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = "app.integration.analytics.aggregation.mode=COLUMNAR")
+class ColumnarAggregationGatewayTest {
+
+    @Autowired
+    private SearchAnalyticsGateway gateway;
+
+    @Autowired
+    private ColumnarReportAggregator columnarReportAggregator;
+
+    @DisplayName("Should reply with the report built from the columnar batch in COLUMNAR aggregation mode")
+    @Test
+    void shouldProcessBatchWithColumnarAggregation() {
+        List<SearchRequest> batch = IntStream.range(0, 1_000)
+                .mapToObj(i -> new SearchRequest(String.valueOf(i),
+                        i % 10 < 2 ? "55.7558, 37.6173" : i % 10 < 5 ? "Pushkin museum" : "Hermitage",
+                        "web", Instant.now()))
+                .toList();
+
+        AnalyticsReport report = gateway.process(batch);
+
+        assertThat(report.getCountsByIntent())
+                .containsOnly(Map.entry(Intent.COORDS, 200L), Map.entry(Intent.TEXT, 800L));
+        assertThat(report.getTop5Queries()).containsExactly("hermitage", "pushkin museum", "5575580 3761730");
+        assertThat(columnarReportAggregator.activeGroups()).isZero();
+    }
+}
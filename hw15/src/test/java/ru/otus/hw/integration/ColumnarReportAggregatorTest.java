@@ -0,0 +1,58 @@
+package ru.otus.hw.integration;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.integration.IntegrationMessageHeaderAccessor;
+import org.springframework.messaging.MessageHeaders;
+import ru.otus.hw.analytics.TopKTrackerFactory;
+import ru.otus.hw.configurations.AnalyticsProperties;
+import ru.otus.hw.domain.AnalyticsReport;
+import ru.otus.hw.domain.Intent;
+import ru.otus.hw.domain.NormalizedQuery;
+import ru.otus.hw.util.GeoUtil;
+
+import java.time.Clock;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ColumnarReportAggregatorTest {
+
+    private final Clock clock = mock(Clock.class);
+
+    private final ColumnarReportAggregator aggregator = new ColumnarReportAggregator(
+            new TopKTrackerFactory(new AnalyticsProperties.TopK()), 5, clock);
+
+    @DisplayName("Should report a group once and drop items of groups released by completion or timeout")
+    @Test
+    void shouldDropLateItemsOfReleasedGroups() {
+        when(clock.millis()).thenReturn(0L);
+        MessageHeaders completed = headers("batch-1", 1);
+        AnalyticsReport report = add("museum", completed);
+        assertThat(report).isNotNull();
+        assertThat(report.getCountsByIntent()).containsOnly(Map.entry(Intent.TEXT, 1L));
+        add("museum", headers("batch-2", 2));
+        when(clock.millis()).thenReturn(10_001L);
+        assertThat(aggregator.expireStaleGroups(10_000)).singleElement()
+                .satisfies(m -> assertThat(m.getPayload().getMissingItems()).isOne());
+
+        assertThat(add("gallery", completed)).isNull();
+        assertThat(aggregator.fail(1, headers("batch-2", 2))).isNull();
+
+        assertThat(aggregator.activeGroups()).isZero();
+        assertThat(aggregator.expireStaleGroups(0)).isEmpty();
+        assertThat(aggregator.lateItems()).isEqualTo(2);
+    }
+
+    private AnalyticsReport add(String query, MessageHeaders headers) {
+        return aggregator.add(new NormalizedQuery(Intent.TEXT, query), "web", GeoUtil.NO_CELL, headers);
+    }
+
+    private static MessageHeaders headers(String correlationId, int size) {
+        return new MessageHeaders(Map.of(
+                IntegrationMessageHeaderAccessor.CORRELATION_ID, correlationId,
+                IntegrationMessageHeaderAccessor.SEQUENCE_SIZE, size));
+    }
+}
@@ -0,0 +1,122 @@
+package ru.otus.hw.integration;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import ru.otus.hw.Application;
+import ru.otus.hw.configurations.ExecutorMode;
+import ru.otus.hw.domain.AnalyticsReport;
+import ru.otus.hw.domain.Intent;
+import ru.otus.hw.domain.SearchRequest;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assumptions.assumeThat;
+
+/**
+ * Точное сравнение пропускной способности режимов исполнителя - PipelineBenchmark (-p executorMode=POOL,VIRTUAL),
+ * здесь только грубая проверка, что VIRTUAL не проседает относительно POOL.
+ */
+class ExecutorModeGatewayTest {
+
+    private static final int BATCH_SIZE = 2_000;
+
+    private static final boolean VIRTUAL_THREADS = Runtime.version().feature() >= 21;
+
+    private static final int WARMUP_BATCHES = 5;
+
+    private static final int MEASURED_BATCHES = 20;
+
+    @DisplayName("Should produce identical reports in every executor hand-off mode")
+    @Test
+    void shouldProduceIdenticalReports() {
+        List<SearchRequest> batch = batch();
+        List<String[]> modes = new ArrayList<>(List.of(
+                new String[]{"app.integration.executor.mode=POOL"},
+                new String[]{"app.integration.executor.mode=POOL", "app.integration.executor.fair.enabled=true"},
+                new String[]{"app.integration.executor.mode=POOL", "app.integration.executor.ring.enabled=true"}));
+        if (VIRTUAL_THREADS) {
+            modes.add(new String[]{"app.integration.executor.mode=VIRTUAL"});
+        }
+
+        List<AnalyticsReport> reports = modes.stream().map(properties -> run(batch, properties)).toList();
+
+        AnalyticsReport pool = reports.get(0);
+        assertThat(pool.isPartial()).isFalse();
+        assertThat(pool.getCountsByIntent().values().stream().mapToLong(Long::longValue).sum()).isEqualTo(BATCH_SIZE);
+        assertThat(pool.getCountsByIntent()).containsKeys(Intent.COORDS, Intent.TEXT);
+        assertThat(reports).allSatisfy(report -> assertThat(report).isEqualTo(pool));
+    }
+
+    @DisplayName("Should refuse to start in VIRTUAL mode without virtual threads")
+    @Test
+    void shouldRejectVirtualModeBeforeJdk21() {
+        assumeThat(VIRTUAL_THREADS).isFalse();
+
+        assertThatThrownBy(() -> run(List.of(), "app.integration.executor.mode=" + ExecutorMode.VIRTUAL))
+                .hasRootCauseInstanceOf(IllegalStateException.class)
+                .hasRootCauseMessage("Executor mode VIRTUAL requires JDK 21+, running " + Runtime.version());
+    }
+
+    @DisplayName("Should keep VIRTUAL throughput comparable to POOL")
+    @Test
+    void shouldKeepVirtualThroughputComparableToPool() {
+        assumeThat(VIRTUAL_THREADS).isTrue();
+        List<SearchRequest> batch = batch();
+
+        double pool = throughput(batch, ExecutorMode.POOL);
+        double virtual = throughput(batch, ExecutorMode.VIRTUAL);
+
+        // порог с запасом на шум общего CI: ловит только кратную просадку
+        assertThat(virtual).isGreaterThan(pool / 2);
+    }
+
+    /**
+     * У запроса "Query k" 2k+1 повторов, поэтому порядок топа не зависит от порядка обработки.
+     */
+    private static List<SearchRequest> batch() {
+        return IntStream.range(0, BATCH_SIZE)
+                .mapToObj(i -> new SearchRequest(String.valueOf(i), i % 3 == 0 ? "59.93" + i % 10 + ",30.31"
+                        : "Query " + (int) Math.sqrt(i % 400), "web", Instant.now()))
+                .toList();
+    }
+
+    /**
+     * Запросов в секунду после прогрева, пакеты отправляются по одному.
+     */
+    private static double throughput(List<SearchRequest> batch, ExecutorMode mode) {
+        try (ConfigurableApplicationContext ctx = context("app.integration.executor.mode=" + mode)) {
+            SearchAnalyticsGateway gateway = ctx.getBean(SearchAnalyticsGateway.class);
+            for (int i = 0; i < WARMUP_BATCHES; i++) {
+                gateway.process(batch);
+            }
+            long started = System.nanoTime();
+            for (int i = 0; i < MEASURED_BATCHES; i++) {
+                gateway.process(batch);
+            }
+            return (double) MEASURED_BATCHES * batch.size() * 1e9 / (System.nanoTime() - started);
+        }
+    }
+
+    private static AnalyticsReport run(List<SearchRequest> batch, String... properties) {
+        try (ConfigurableApplicationContext ctx = context(properties)) {
+            return ctx.getBean(SearchAnalyticsGateway.class).process(batch);
+        }
+    }
+
+    private static ConfigurableApplicationContext context(String... properties) {
+        return new SpringApplicationBuilder(Application.class)
+                .web(WebApplicationType.NONE)
+                .properties("spring.jmx.enabled=false", "logging.level.root=WARN",
+                        "app.integration.analytics.stage-logging=false")
+                .properties(properties)
+                .run();
+    }
+}
@@ -0,0 +1,51 @@
+package ru.otus.hw.integration;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.integration.store.MessageGroupStore;
+import ru.otus.hw.domain.AnalyticsReport;
+import ru.otus.hw.domain.Intent;
+import ru.otus.hw.domain.SearchRequest;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = {
+        "app.integration.analytics.aggregation.store.type=FILE",
+        "app.integration.analytics.aggregation.store.directory=${java.io.tmpdir}/hw15-aggregator-store-test",
+        "app.integration.analytics.aggregation.store.capacity=10000"
+})
+class FileBackedAggregationGatewayTest {
+
+    @Autowired
+    private SearchAnalyticsGateway gateway;
+
+    @Autowired
+    private MessageGroupStore aggregatorMessageStore;
+
+    @DisplayName("Should aggregate through the file-backed group store and release it afterwards")
+    @Test
+    void shouldProcessBatchWithFileStore() throws InterruptedException {
+        List<SearchRequest> batch = IntStream.range(0, 1_000)
+                .mapToObj(i -> new SearchRequest(String.valueOf(i), i % 2 == 0 ? "Pushkin museum" : "59.93,30.31",
+                        "web", Instant.now()))
+                .toList();
+
+        AnalyticsReport report = gateway.process(batch);
+
+        assertThat(aggregatorMessageStore).isInstanceOf(FileBackedMessageGroupStore.class);
+        assertThat(report.getCountsByIntent())
+                .containsExactlyInAnyOrderEntriesOf(Map.of(Intent.TEXT, 500L, Intent.COORDS, 500L));
+        // группа удаляется из хранилища уже после отправки ответа
+        for (int i = 0; i < 50 && aggregatorMessageStore.getMessageGroupCount() > 0; i++) {
+            Thread.sleep(100);
+        }
+        assertThat(aggregatorMessageStore.getMessageGroupCount()).isZero();
+    }
+}
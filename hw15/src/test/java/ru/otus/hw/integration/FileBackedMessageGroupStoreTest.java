@@ -0,0 +1,203 @@
+package ru.otus.hw.integration;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.integration.IntegrationMessageHeaderAccessor;
+import org.springframework.integration.store.MessageGroup;
+import org.springframework.integration.support.MessageBuilder;
+import org.springframework.messaging.Message;
+import ru.otus.hw.domain.ClassifiedItem;
+import ru.otus.hw.domain.Intent;
+import ru.otus.hw.util.GeoUtil;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class FileBackedMessageGroupStoreTest {
+
+    private static final int SEGMENT_SIZE = 256;
+
+    @TempDir
+    private Path directory;
+
+    @DisplayName("Should recover in-flight groups with their items and sequence headers after a restart")
+    @Test
+    void shouldRecoverGroupsAfterRestart() {
+        UUID batch = UUID.randomUUID();
+        var store = new FileBackedMessageGroupStore(directory, 0, SEGMENT_SIZE);
+        for (int i = 1; i <= 50; i++) {
+            store.addMessagesToGroup(batch, item(batch, i, 100));
+        }
+        store.addMessagesToGroup("other", item("other", 1, 2));
+        store.destroy();
+
+        var recovered = new FileBackedMessageGroupStore(directory, 0, SEGMENT_SIZE);
+
+        assertThat(recovered.getRecoveredGroups()).isEqualTo(2);
+        assertThat(recovered.getSize()).isEqualTo(51);
+        MessageGroup group = recovered.getMessageGroup(batch);
+        assertThat(group.size()).isEqualTo(50);
+        assertThat(group.getSequenceSize()).isEqualTo(100);
+        assertThat(group.getMessages()).allSatisfy(m -> {
+            assertThat(new IntegrationMessageHeaderAccessor(m).getCorrelationId()).isEqualTo(batch);
+            assertThat(m.getPayload()).isInstanceOf(ClassifiedItem.class);
+        });
+        assertThat(group.getMessages()).extracting(m -> ((ClassifiedItem) m.getPayload()).getNormalizedQuery())
+                .contains("query 1", "query 50");
+        assertThat(((ClassifiedItem) group.getOne().getPayload()).getSource()).isNull();
+    }
+
+    @DisplayName("Should recover the geohash cell of an item")
+    @Test
+    void shouldRecoverGeoCell() {
+        long cell = GeoUtil.geohash(GeoUtil.parseFixed("55.75,37.61"), 6);
+        var store = new FileBackedMessageGroupStore(directory, 0, SEGMENT_SIZE);
+        store.addMessagesToGroup("batch", MessageBuilder
+                .withPayload(new ClassifiedItem("1", Intent.COORDS, "55.75,37.61", "mobile", cell))
+                .setCorrelationId("batch")
+                .setSequenceNumber(1)
+                .setSequenceSize(2)
+                .build());
+        store.addMessagesToGroup("batch", item("batch", 2, 2));
+        store.destroy();
+
+        MessageGroup group = new FileBackedMessageGroupStore(directory, 0, SEGMENT_SIZE).getMessageGroup("batch");
+
+        assertThat(group.getMessages()).extracting(m -> ((ClassifiedItem) m.getPayload()).getGeoCell())
+                .containsExactlyInAnyOrder(cell, GeoUtil.NO_CELL);
+    }
+
+    @DisplayName("Should recover failed item placeholders together with classified items")
+    @Test
+    void shouldRecoverFailedItems() {
+        var store = new FileBackedMessageGroupStore(directory, 0, SEGMENT_SIZE);
+        store.addMessagesToGroup("batch", item("batch", 1, 3));
+        store.addMessagesToGroup("batch", MessageBuilder.withPayload(new FailedItems(2))
+                .setCorrelationId("batch")
+                .setSequenceNumber(2)
+                .setSequenceSize(3)
+                .build());
+        store.destroy();
+
+        MessageGroup group = new FileBackedMessageGroupStore(directory, 0, SEGMENT_SIZE).getMessageGroup("batch");
+
+        assertThat(group.getMessages()).extracting(m -> (Object) m.getPayload())
+                .containsExactlyInAnyOrder(new ClassifiedItem("1", Intent.TEXT, "query 1", null), new FailedItems(2));
+    }
+
+    @DisplayName("Should reject unsupported payloads without changing the group")
+    @Test
+    void shouldRejectUnsupportedPayloadBeforeAdding() {
+        var store = new FileBackedMessageGroupStore(directory, 0, SEGMENT_SIZE);
+        store.addMessagesToGroup("batch", item("batch", 1, 3));
+
+        assertThatThrownBy(() -> store.addMessagesToGroup("batch", item("batch", 2, 3),
+                MessageBuilder.withPayload("raw").setCorrelationId("batch").build()))
+                .isInstanceOf(IllegalArgumentException.class);
+
+        assertThat(store.getMessageGroup("batch").size()).isOne();
+        assertThat(store.getSize()).isOne();
+    }
+
+    @DisplayName("Should delete the journal of a released group")
+    @Test
+    void shouldDeleteJournalOnRemove() throws IOException {
+        var store = new FileBackedMessageGroupStore(directory, 0, SEGMENT_SIZE);
+        store.addMessagesToGroup("batch", item("batch", 1, 1));
+
+        store.removeMessageGroup("batch");
+        store.destroy();
+
+        assertThat(journals()).isZero();
+        assertThat(new FileBackedMessageGroupStore(directory, 0, SEGMENT_SIZE).getMessageGroupCount()).isZero();
+    }
+
+    @DisplayName("Should reuse the journal file of a released group for the next group")
+    @Test
+    void shouldReuseReleasedJournal() throws IOException {
+        var store = new FileBackedMessageGroupStore(directory, 0, SEGMENT_SIZE);
+        store.addMessagesToGroup("first", item("first", 1, 1));
+        store.removeMessageGroup("first");
+
+        store.addMessagesToGroup("second", item("second", 1, 1));
+
+        assertThat(journals()).isOne();
+        store.destroy();
+        var recovered = new FileBackedMessageGroupStore(directory, 0, SEGMENT_SIZE);
+        assertThat(recovered.getMessageGroupCount()).isOne();
+        assertThat(recovered.getMessageGroup("second").size()).isOne();
+    }
+
+    @DisplayName("Should rewrite the journal when single messages are removed from a group")
+    @Test
+    void shouldRewriteJournalOnPartialRemove() throws IOException {
+        var store = new FileBackedMessageGroupStore(directory, 0, SEGMENT_SIZE);
+        Message<?> first = item("batch", 1, 3);
+        store.addMessagesToGroup("batch", first, item("batch", 2, 3));
+
+        store.removeMessagesFromGroup("batch", first);
+        store.setLastReleasedSequenceNumberForGroup("batch", 1);
+        store.destroy();
+
+        assertThat(journals()).isEqualTo(1);
+        var recovered = new FileBackedMessageGroupStore(directory, 0, SEGMENT_SIZE);
+        MessageGroup group = recovered.getMessageGroup("batch");
+        assertThat(group.size()).isEqualTo(1);
+        assertThat(group.getLastReleasedMessageSequenceNumber()).isEqualTo(1);
+    }
+
+    @DisplayName("Should reject messages above the capacity instead of growing")
+    @Test
+    void shouldRejectAboveCapacity() {
+        var store = new FileBackedMessageGroupStore(directory, 2, SEGMENT_SIZE);
+        store.addMessagesToGroup("a", item("a", 1, 3), item("a", 2, 3));
+
+        assertThatThrownBy(() -> store.addMessagesToGroup("b", item("b", 1, 1)))
+                .isInstanceOf(IllegalStateException.class);
+
+        store.removeMessageGroup("a");
+        store.addMessagesToGroup("b", item("b", 1, 1));
+        assertThat(store.getSize()).isEqualTo(1);
+    }
+
+    @DisplayName("Should accept failed item placeholders above the capacity")
+    @Test
+    void shouldAcceptFailedItemsAboveCapacity() {
+        var store = new FileBackedMessageGroupStore(directory, 2, SEGMENT_SIZE);
+        store.addMessagesToGroup("a", item("a", 1, 3), item("a", 2, 3));
+        assertThatThrownBy(() -> store.addMessagesToGroup("a", item("a", 3, 3)))
+                .isInstanceOf(IllegalStateException.class);
+
+        store.addMessagesToGroup("a", MessageBuilder.withPayload(new FailedItems(1))
+                .setCorrelationId("a")
+                .setSequenceNumber(3)
+                .setSequenceSize(3)
+                .build());
+
+        assertThat(store.getMessageGroup("a").size()).isEqualTo(3);
+        assertThat(store.getSize()).isEqualTo(3);
+    }
+
+    private long journals() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.count();
+        }
+    }
+
+    private static Message<ClassifiedItem> item(Object groupId, int sequenceNumber, int sequenceSize) {
+        return MessageBuilder
+                .withPayload(new ClassifiedItem(String.valueOf(sequenceNumber), Intent.TEXT,
+                        "query " + sequenceNumber, null))
+                .setCorrelationId(groupId)
+                .setSequenceNumber(sequenceNumber)
+                .setSequenceSize(sequenceSize)
+                .build();
+    }
+}
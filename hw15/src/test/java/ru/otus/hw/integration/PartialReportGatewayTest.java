@@ -0,0 +1,106 @@
+package ru.otus.hw.integration;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.integration.store.MessageGroupStore;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+import ru.otus.hw.domain.AnalyticsReport;
+import ru.otus.hw.domain.Intent;
+import ru.otus.hw.domain.SearchRequest;
+import ru.otus.hw.services.QueryClassifier;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+
+@SpringBootTest(properties = {
+        "app.integration.analytics.aggregation.group-timeout=2s",
+        "app.integration.analytics.stage-logging=false"
+})
+class PartialReportGatewayTest {
+
+    @Autowired
+    private SearchAnalyticsGateway gateway;
+
+    @MockitoSpyBean
+    private QueryClassifier queryClassifier;
+
+    @DisplayName("Should reply without waiting for the group timeout when an item fails")
+    @Test
+    void shouldCountFailedItemsTowardCompletion() {
+        doThrow(new IllegalStateException("classifier is down"))
+                .when(queryClassifier).classify(eq("broken query"), anyLong());
+
+        long start = System.nanoTime();
+        AnalyticsReport report = gateway.process(List.of(
+                request("1", "Hermitage"), request("2", "broken query"), request("3", "Pushkin museum")));
+
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofSeconds(2));
+        assertThat(report.isPartial()).isTrue();
+        assertThat(report.getFailedItems()).isOne();
+        assertThat(report.getMissingItems()).isZero();
+        assertThat(report.getCountsByIntent()).containsOnly(Map.entry(Intent.TEXT, 2L));
+    }
+
+    @DisplayName("Should release a partial report with the missing item count on group timeout")
+    @Test
+    void shouldReleasePartialReportOnTimeout() {
+        doAnswer(invocation -> {
+            Thread.sleep(4_000);
+            return invocation.callRealMethod();
+        }).when(queryClassifier).classify(eq("slow query"), anyLong());
+
+        AnalyticsReport report = gateway.process(List.of(
+                request("1", "Hermitage"), request("2", "slow query"), request("3", "59.9398,30.3146")));
+
+        // запросы классифицируются на исполнителях подпотоков, поэтому медленный не задерживает остальные
+        assertThat(report.isPartial()).isTrue();
+        assertThat(report.getMissingItems()).isOne();
+        assertThat(report.getFailedItems()).isZero();
+        assertThat(report.getCountsByIntent()).containsOnly(Map.entry(Intent.TEXT, 1L), Map.entry(Intent.COORDS, 1L));
+    }
+
+    @Nested
+    @TestPropertySource(properties = {
+            "app.integration.analytics.aggregation.store.type=FILE",
+            "app.integration.analytics.aggregation.store.directory=${java.io.tmpdir}/hw15-partial-report-store-test"
+    })
+    class FileStore {
+
+        @Autowired
+        private MessageGroupStore aggregatorMessageStore;
+
+        @DisplayName("Should journal failed items in the file-backed store and complete the group")
+        @Test
+        void shouldCountFailedItemsWithFileStore() {
+            doThrow(new IllegalStateException("classifier is down"))
+                    .when(queryClassifier).classify(eq("broken query"), anyLong());
+
+            long start = System.nanoTime();
+            AnalyticsReport report = gateway.process(List.of(
+                    request("1", "Hermitage"), request("2", "broken query"), request("3", "59.9398,30.3146")));
+
+            assertThat(aggregatorMessageStore).isInstanceOf(FileBackedMessageGroupStore.class);
+            assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofSeconds(2));
+            assertThat(report.getFailedItems()).isOne();
+            assertThat(report.getMissingItems()).isZero();
+            assertThat(report.getCountsByIntent())
+                    .containsOnly(Map.entry(Intent.TEXT, 1L), Map.entry(Intent.COORDS, 1L));
+        }
+    }
+
+    private static SearchRequest request(String id, String query) {
+        return new SearchRequest(id, query, "web", Instant.now());
+    }
+}
@@ -0,0 +1,97 @@
+package ru.otus.hw.integration;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.integration.channel.PublishSubscribeChannel;
+import org.springframework.integration.channel.QueueChannel;
+import org.springframework.integration.dsl.IntegrationFlow;
+import org.springframework.integration.support.MessageBuilder;
+import org.springframework.messaging.Message;
+import org.springframework.util.FileSystemUtils;
+import ru.otus.hw.domain.AnalyticsReport;
+import ru.otus.hw.domain.ClassifiedItem;
+import ru.otus.hw.domain.Intent;
+import ru.otus.hw.domain.TrendingQuery;
+import ru.otus.hw.services.TrendingQueriesService;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = {
+        "app.integration.analytics.aggregation.store.type=FILE",
+        "app.integration.analytics.aggregation.store.directory=" + RecoveredGroupGatewayTest.DIRECTORY,
+        "app.integration.analytics.aggregation.group-timeout=300ms"
+})
+class RecoveredGroupGatewayTest {
+
+    static final String DIRECTORY = "${java.io.tmpdir}/hw15-recovered-group-test";
+
+    @Autowired
+    private TrendingQueriesService trendingQueriesService;
+
+    @Autowired
+    private QueueChannel unclaimedReports;
+
+    @TestConfiguration
+    static class UnclaimedReportsConfig {
+
+        @Bean
+        QueueChannel unclaimedReports() {
+            return new QueueChannel();
+        }
+
+        @Bean
+        IntegrationFlow unclaimedReportsFlow(PublishSubscribeChannel unclaimedReportChannel) {
+            return IntegrationFlow.from(unclaimedReportChannel)
+                    .channel(unclaimedReports())
+                    .get();
+        }
+    }
+
+    /**
+     * Группа, оставшаяся в журнале от предыдущего запуска: пришел один элемент из двух.
+     */
+    @BeforeAll
+    static void leaveGroupFromPreviousRun() throws IOException {
+        Path directory = Path.of(System.getProperty("java.io.tmpdir"), "hw15-recovered-group-test");
+        FileSystemUtils.deleteRecursively(directory);
+        var store = new FileBackedMessageGroupStore(directory, 0, 4096);
+        store.addMessagesToGroup("previous-run", MessageBuilder
+                .withPayload(new ClassifiedItem("1", Intent.TEXT, "recovered query", "web"))
+                .setCorrelationId("previous-run")
+                .setSequenceNumber(1)
+                .setSequenceSize(2)
+                .build());
+        store.destroy();
+    }
+
+    @DisplayName("Should count a group recovered after a restart in trending once it expires")
+    @Test
+    void shouldMergeRecoveredGroupIntoTrending() throws InterruptedException {
+        for (int i = 0; i < 100 && trendingQueriesService.trending().isEmpty(); i++) {
+            Thread.sleep(100);
+        }
+
+        assertThat(trendingQueriesService.trending()).extracting(TrendingQuery::getQuery)
+                .containsExactly("recovered query");
+    }
+
+    @DisplayName("Should publish the partial report of a recovered group on the unclaimed report channel")
+    @Test
+    void shouldPublishRecoveredGroupReport() {
+        Message<?> message = unclaimedReports.receive(10_000);
+
+        assertThat(message).isNotNull();
+        AnalyticsReport report = (AnalyticsReport) message.getPayload();
+        assertThat(report.isPartial()).isTrue();
+        assertThat(report.getMissingItems()).isEqualTo(1);
+        assertThat(report.getTop5Queries()).containsExactly("recovered query");
+    }
+}
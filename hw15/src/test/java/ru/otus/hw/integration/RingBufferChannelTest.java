@@ -0,0 +1,190 @@
+package ru.otus.hw.integration;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.support.GenericMessage;
+import ru.otus.hw.integration.RingBufferChannel.WaitStrategy;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class RingBufferChannelTest {
+
+    private RingBufferChannel channel;
+
+    @AfterEach
+    void tearDown() {
+        if (channel != null) {
+            channel.destroy();
+        }
+    }
+
+    @DisplayName("Should deliver every message exactly once from many producers to many consumers")
+    @ParameterizedTest
+    @EnumSource(value = WaitStrategy.class, mode = EnumSource.Mode.EXCLUDE, names = "BUSY_SPIN")
+    void shouldDeliverAllMessages(WaitStrategy waitStrategy) throws Exception {
+        channel = start(new RingBufferChannel(16, 3, 4, waitStrategy, "ring-test-"));
+        int producers = 4;
+        int perProducer = 5_000;
+        Set<Integer> received = ConcurrentHashMap.newKeySet();
+        CountDownLatch done = new CountDownLatch(producers * perProducer);
+        channel.subscribe(message -> {
+            received.add((Integer) message.getPayload());
+            done.countDown();
+        });
+
+        ExecutorService pool = Executors.newFixedThreadPool(producers);
+        try {
+            List<Future<?>> sends = IntStream.range(0, producers)
+                    .<Future<?>>mapToObj(p -> pool.submit(() -> IntStream.range(0, perProducer)
+                            .forEach(i -> channel.send(new GenericMessage<>(p * perProducer + i)))))
+                    .toList();
+            for (Future<?> send : sends) {
+                send.get(10, TimeUnit.SECONDS);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertThat(done.await(10, TimeUnit.SECONDS)).isTrue();
+        assertThat(received).hasSize(producers * perProducer);
+    }
+
+    @DisplayName("Should deliver messages with a busy-spinning consumer")
+    @Test
+    void shouldDeliverWithBusySpin() throws Exception {
+        channel = start(new RingBufferChannel(256, 1, 16, WaitStrategy.BUSY_SPIN, "ring-test-"));
+        CountDownLatch done = new CountDownLatch(200);
+        channel.subscribe(message -> done.countDown());
+
+        for (int i = 0; i < 200; i++) {
+            channel.send(new GenericMessage<>(i));
+        }
+
+        assertThat(done.await(10, TimeUnit.SECONDS)).isTrue();
+    }
+
+    @DisplayName("Should make the sender wait while the buffer is full")
+    @Test
+    void shouldApplyBackPressure() throws Exception {
+        channel = start(new RingBufferChannel(3, 1, 1, WaitStrategy.BLOCKING, "ring-test-"));
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(1);
+        channel.subscribe(message -> {
+            started.countDown();
+            await(release);
+        });
+        assertThat(channel.getCapacity()).isEqualTo(4);
+
+        channel.send(new GenericMessage<>(0));
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+        for (int i = 1; i <= 4; i++) {
+            channel.send(new GenericMessage<>(i));
+        }
+        assertThat(channel.size()).isEqualTo(4);
+
+        ExecutorService sender = Executors.newSingleThreadExecutor();
+        try {
+            Future<Boolean> blocked = sender.submit(() -> channel.send(new GenericMessage<>(5)));
+            Thread.sleep(100);
+            assertThat(blocked).as("buffer is full").isNotDone();
+
+            release.countDown();
+            assertThat(blocked.get(5, TimeUnit.SECONDS)).isTrue();
+        } finally {
+            sender.shutdownNow();
+        }
+    }
+
+    @DisplayName("Should pass handler failures to the error handler and keep consuming")
+    @Test
+    void shouldHandleErrors() throws Exception {
+        channel = new RingBufferChannel(8, 1, 8, WaitStrategy.SLEEPING, "ring-test-");
+        List<Throwable> errors = new CopyOnWriteArrayList<>();
+        channel.setErrorHandler(errors::add);
+        start(channel);
+        CountDownLatch done = new CountDownLatch(1);
+        channel.subscribe(message -> {
+            if ("broken".equals(message.getPayload())) {
+                throw new IllegalStateException("boom");
+            }
+            done.countDown();
+        });
+
+        channel.send(new GenericMessage<>("broken"));
+        channel.send(new GenericMessage<>("fine"));
+
+        assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(errors).singleElement().satisfies(e -> assertThat(e).hasRootCauseMessage("boom"));
+    }
+
+    @DisplayName("Should finish buffered messages on shutdown and reject new ones")
+    @Test
+    void shouldDrainOnShutdown() {
+        channel = start(new RingBufferChannel(64, 2, 8, WaitStrategy.YIELDING, "ring-test-"));
+        List<Message<?>> handled = new CopyOnWriteArrayList<>();
+        channel.subscribe(handled::add);
+        for (int i = 0; i < 50; i++) {
+            channel.send(new GenericMessage<>(i));
+        }
+
+        channel.destroy();
+
+        assertThat(handled).hasSize(50);
+        assertThat(channel.size()).isZero();
+        assertThatThrownBy(() -> channel.send(new GenericMessage<>(51)))
+                .hasMessageContaining("is stopped");
+    }
+
+    @DisplayName("Should start consumer threads only on lifecycle start and allow a restart")
+    @Test
+    void shouldFollowLifecycle() throws Exception {
+        channel = new RingBufferChannel(8, 1, 8, WaitStrategy.BLOCKING, "ring-test-");
+        channel.setBeanName("ringTestChannel");
+        channel.afterPropertiesSet();
+        CountDownLatch done = new CountDownLatch(2);
+        channel.subscribe(message -> done.countDown());
+
+        assertThat(channel.isRunning()).isFalse();
+        assertThatThrownBy(() -> channel.send(new GenericMessage<>(0))).hasMessageContaining("is stopped");
+
+        channel.start();
+        channel.send(new GenericMessage<>(1));
+        channel.stop();
+        assertThat(channel.isRunning()).isFalse();
+        channel.start();
+        channel.send(new GenericMessage<>(2));
+
+        assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+    }
+
+    private static RingBufferChannel start(RingBufferChannel channel) {
+        channel.setBeanName("ringTestChannel");
+        channel.afterPropertiesSet();
+        channel.start();
+        return channel;
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package ru.otus.hw.integration;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.messaging.MessageChannel;
+import ru.otus.hw.domain.AnalyticsReport;
+import ru.otus.hw.domain.Intent;
+import ru.otus.hw.domain.SearchRequest;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = {
+        "app.integration.executor.ring.enabled=true",
+        "app.integration.executor.ring.buffer-size=64",
+        "app.integration.analytics.stage-logging=false"
+})
+class RingBufferGatewayTest {
+
+    @Autowired
+    private SearchAnalyticsGateway gateway;
+
+    @Autowired
+    private Map<String, MessageChannel> channels;
+
+    @DisplayName("Should process a batch through ring buffer channels")
+    @Test
+    void shouldProcessBatchThroughRingBuffers() {
+        assertThat(channels.get("geoSubflowChannel")).isInstanceOf(RingBufferChannel.class);
+        assertThat(channels.get("textSubflowChannel")).isInstanceOf(RingBufferChannel.class);
+        assertThat(channels.get("classifiedChannel")).isInstanceOf(RingBufferChannel.class);
+        List<SearchRequest> batch = IntStream.range(0, 2_000)
+                .mapToObj(i -> new SearchRequest(String.valueOf(i),
+                        i % 2 == 0 ? "Pushkin museum" : "59.9398, 30.3146", "web", Instant.now()))
+                .toList();
+
+        AnalyticsReport report = gateway.process(batch);
+
+        assertThat(report.getCountsByIntent())
+                .containsOnly(Map.entry(Intent.TEXT, 1_000L), Map.entry(Intent.COORDS, 1_000L));
+        assertThat(report.isPartial()).isFalse();
+    }
+}
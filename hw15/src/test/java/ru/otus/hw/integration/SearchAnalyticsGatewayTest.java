@@ -10,6 +10,7 @@ import ru.otus.hw.domain.SearchRequest;
 
 import java.time.Instant;
 import java.util.List;
+import java.util.Map;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -43,5 +44,29 @@ class SearchAnalyticsGatewayTest {
         assertThat(report.getTop5Queries())
                 .hasSize(3)
                 .containsExactlyInAnyOrder("pushkin museum", "tretyakov gallery", "5993980 3031460");
+
+        assertThat(report.getBySource()).containsOnlyKeys("telegram", "web");
+        assertThat(report.getBySource().get("telegram").getCountsByIntent())
+                .containsOnly(Map.entry(Intent.COORDS, 1L), Map.entry(Intent.UNKNOWN, 1L));
+        assertThat(report.getBySource().get("telegram").getTop5Queries()).containsExactly("5993980 3031460");
+        assertThat(report.getBySource().get("web").getCountsByIntent()).containsOnly(Map.entry(Intent.TEXT, 3L));
+        assertThat(report.getBySource().get("web").getTop5Queries())
+                .containsExactly("pushkin museum", "tretyakov gallery");
+    }
+
+    @DisplayName("Should report hot spots as geohash cells that group nearby coordinates")
+    @Test
+    void shouldReportHotSpots() {
+        List<SearchRequest> batch = List.of(
+                new SearchRequest("1", "55.75580,37.61730", "web", Instant.now()),
+                new SearchRequest("2", "55.75585,37.61740", "web", Instant.now()),
+                new SearchRequest("3", "59.93980,30.31460", "telegram", Instant.now()),
+                new SearchRequest("4", "Hermitage", "web", Instant.now())
+        );
+
+        AnalyticsReport report = gateway.process(batch);
+
+        assertThat(report.getTop5Queries()).hasSize(4);
+        assertThat(report.getHotSpots()).containsExactly(Map.entry("ucfv0n0", 2L), Map.entry("udtsczd", 1L));
     }
 }
@@ -0,0 +1,91 @@
+package ru.otus.hw.integration;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.otus.hw.domain.SearchRequest;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class SearchLogReaderTest {
+
+    @TempDir
+    private Path dir;
+
+    @DisplayName("Should read CSV with header, quoted fields, CRLF and malformed lines across mapped regions")
+    @Test
+    void shouldReadCsv() throws IOException {
+        Path file = dir.resolve("log.csv");
+        Files.writeString(file, "id,queryText,source,timestamp\r\n"
+                + "1,\"59.9398,30.3146\",telegram,2025-06-01T10:00:00Z\r\n"
+                + "2,\"Say \"\"hi\"\"\",web,1748772000000\n"
+                + "\n"
+                + "3,\"unterminated,web\n"
+                + "4,Эрмитаж\n");
+
+        List<SearchRequest> requests = readAll(file, SearchLogFormat.CSV, 64, 2);
+
+        assertThat(requests).containsExactly(
+                new SearchRequest("1", "59.9398,30.3146", "telegram", Instant.parse("2025-06-01T10:00:00Z")),
+                new SearchRequest("2", "Say \"hi\"", "web", Instant.ofEpochMilli(1748772000000L)),
+                new SearchRequest("4", "Эрмитаж", null, null));
+    }
+
+    @DisplayName("Should read NDJSON skipping unknown fields and counting malformed lines")
+    @Test
+    void shouldReadNdjson() throws IOException {
+        Path file = dir.resolve("log.ndjson");
+        Files.writeString(file, """
+                {"id":"1","queryText":"Hermitage","source":"web","timestamp":"2025-06-01T10:00:00Z"}
+                {"id":"2","extra":{"nested":[1,2]},"queryText":"55.75,37.61","timestamp":1748772000000}
+                {"id":"3","queryText":
+                [1,2,3]
+                {"id":"4","queryText":"museum\\u0021"}""");
+
+        try (SearchLogReader reader = new SearchLogReader(file, SearchLogFormat.NDJSON, 128)) {
+            List<SearchRequest> requests = new ArrayList<>();
+            while (reader.read(requests, 10)) {
+                assertThat(reader.position()).isLessThanOrEqualTo(reader.size());
+            }
+
+            assertThat(requests).containsExactly(
+                    new SearchRequest("1", "Hermitage", "web", Instant.parse("2025-06-01T10:00:00Z")),
+                    new SearchRequest("2", "55.75,37.61", null, Instant.ofEpochMilli(1748772000000L)),
+                    new SearchRequest("4", "museum!", null, null));
+            assertThat(reader.lines()).isEqualTo(5);
+            assertThat(reader.malformed()).isEqualTo(2);
+            assertThat(reader.position()).isEqualTo(reader.size());
+        }
+    }
+
+    @DisplayName("Should fail on a line longer than the mapped region")
+    @Test
+    void shouldRejectTooLongLine() throws IOException {
+        Path file = dir.resolve("long.csv");
+        Files.writeString(file, "1," + "x".repeat(100) + "\n2,y\n");
+
+        assertThrows(IOException.class, () -> readAll(file, SearchLogFormat.CSV, 32, 10));
+    }
+
+    private static List<SearchRequest> readAll(Path file, SearchLogFormat format, int regionSize, int chunkSize)
+            throws IOException {
+        try (SearchLogReader reader = new SearchLogReader(file, format, regionSize)) {
+            List<SearchRequest> requests = new ArrayList<>();
+            List<SearchRequest> chunk = new ArrayList<>();
+            while (reader.read(chunk, chunkSize)) {
+                assertThat(chunk).hasSizeLessThanOrEqualTo(chunkSize);
+                requests.addAll(chunk);
+                chunk.clear();
+            }
+            return requests;
+        }
+    }
+}
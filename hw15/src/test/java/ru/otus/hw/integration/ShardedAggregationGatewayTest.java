@@ -0,0 +1,41 @@
+package ru.otus.hw.integration;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import ru.otus.hw.domain.AnalyticsReport;
+import ru.otus.hw.domain.Intent;
+import ru.otus.hw.domain.SearchRequest;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = "app.integration.analytics.aggregation.mode=SHARDED")
+class ShardedAggregationGatewayTest {
+
+    @Autowired
+    private SearchAnalyticsGateway gateway;
+
+    @Autowired
+    private ShardedReportAggregator shardedReportAggregator;
+
+    @DisplayName("Should reply with the merged report in SHARDED aggregation mode")
+    @Test
+    void shouldProcessBatchWithShardedAggregation() {
+        List<SearchRequest> batch = IntStream.range(0, 1_000)
+                .mapToObj(i -> new SearchRequest(String.valueOf(i), i % 2 == 0 ? "Pushkin museum" : "Hermitage",
+                        "web", Instant.now()))
+                .toList();
+
+        AnalyticsReport report = gateway.process(batch);
+
+        assertThat(report.getCountsByIntent()).containsOnly(Map.entry(Intent.TEXT, 1_000L));
+        assertThat(report.getTop5Queries()).containsExactlyInAnyOrder("pushkin museum", "hermitage");
+        assertThat(shardedReportAggregator.activeGroups()).isZero();
+    }
+}
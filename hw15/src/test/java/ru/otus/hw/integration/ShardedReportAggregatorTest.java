@@ -0,0 +1,134 @@
+package ru.otus.hw.integration;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.integration.IntegrationMessageHeaderAccessor;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import ru.otus.hw.analytics.TopKTrackerFactory;
+import ru.otus.hw.configurations.AnalyticsProperties;
+import ru.otus.hw.domain.AnalyticsReport;
+import ru.otus.hw.domain.ClassifiedItem;
+import ru.otus.hw.domain.Intent;
+
+import java.time.Clock;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ShardedReportAggregatorTest {
+
+    private final Clock clock = mock(Clock.class);
+
+    private final ShardedReportAggregator aggregator = new ShardedReportAggregator(4,
+            new TopKTrackerFactory(new AnalyticsProperties.TopK()), 5, clock);
+
+    @DisplayName("Should merge partial counts from concurrent threads into one report after the last item")
+    @Test
+    void shouldAggregateConcurrently() throws Exception {
+        int size = 10_000;
+        MessageHeaders headers = headers("batch-1", size);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<AnalyticsReport>> results = IntStream.range(0, size)
+                    .mapToObj(i -> executor.submit(() -> aggregator.add(item(i), headers)))
+                    .toList();
+            List<AnalyticsReport> reports = results.stream().map(ShardedReportAggregatorTest::get)
+                    .filter(Objects::nonNull).toList();
+
+            assertThat(reports).singleElement().satisfies(r -> {
+                assertThat(r.getCountsByIntent())
+                        .containsEntry(Intent.TEXT, 7_500L)
+                        .containsEntry(Intent.COORDS, 2_500L);
+                assertThat(r.getTop5Queries()).startsWith("q0");
+            });
+            assertThat(aggregator.activeGroups()).isZero();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @DisplayName("Should release groups that did not complete within the timeout as partial reports")
+    @Test
+    void shouldExpireStaleGroups() {
+        when(clock.millis()).thenReturn(0L);
+        aggregator.add(item(1), headers("batch-2", 2));
+        when(clock.millis()).thenReturn(5_000L);
+        assertThat(aggregator.expireStaleGroups(10_000)).isEmpty();
+        assertThat(aggregator.activeGroups()).isOne();
+
+        when(clock.millis()).thenReturn(10_001L);
+        List<Message<AnalyticsReport>> expired = aggregator.expireStaleGroups(10_000);
+
+        assertThat(aggregator.activeGroups()).isZero();
+        assertThat(expired).singleElement().satisfies(m -> {
+            assertThat(m.getHeaders()).containsEntry(IntegrationMessageHeaderAccessor.CORRELATION_ID, "batch-2");
+            assertThat(m.getPayload().isPartial()).isTrue();
+            assertThat(m.getPayload().getMissingItems()).isOne();
+            assertThat(m.getPayload().getCountsByIntent()).containsOnly(Map.entry(Intent.TEXT, 1L));
+        });
+    }
+
+    @DisplayName("Should count failed items toward group completion")
+    @Test
+    void shouldCompleteGroupWithFailedItems() {
+        MessageHeaders headers = headers("batch-3", 3);
+
+        assertThat(aggregator.add(item(1), headers)).isNull();
+        assertThat(aggregator.fail(1, headers)).isNull();
+        AnalyticsReport report = aggregator.add(item(3), headers);
+
+        assertThat(report).isNotNull();
+        assertThat(report.isPartial()).isTrue();
+        assertThat(report.getFailedItems()).isOne();
+        assertThat(report.getMissingItems()).isZero();
+        assertThat(report.getCountsByIntent()).containsOnly(Map.entry(Intent.TEXT, 2L));
+        assertThat(aggregator.activeGroups()).isZero();
+    }
+
+    @DisplayName("Should drop late items of completed and expired groups instead of reopening them")
+    @Test
+    void shouldDropLateItemsOfReleasedGroups() {
+        when(clock.millis()).thenReturn(0L);
+        MessageHeaders completed = headers("batch-4", 1);
+        assertThat(aggregator.add(item(1), completed)).isNotNull();
+        aggregator.add(item(1), headers("batch-5", 2));
+        when(clock.millis()).thenReturn(10_001L);
+        assertThat(aggregator.expireStaleGroups(10_000)).hasSize(1);
+
+        assertThat(aggregator.add(item(2), completed)).isNull();
+        assertThat(aggregator.fail(1, headers("batch-5", 2))).isNull();
+
+        assertThat(aggregator.activeGroups()).isZero();
+        assertThat(aggregator.expireStaleGroups(0)).isEmpty();
+        assertThat(aggregator.lateItems()).isEqualTo(2);
+    }
+
+    private static ClassifiedItem item(int i) {
+        Intent intent = i % 4 == 0 ? Intent.COORDS : Intent.TEXT;
+        String query = i % 2 == 0 ? "q0" : "q" + i % 7;
+        return new ClassifiedItem(String.valueOf(i), intent, query, "web");
+    }
+
+    private static MessageHeaders headers(String correlationId, int size) {
+        return new MessageHeaders(Map.of(
+                IntegrationMessageHeaderAccessor.CORRELATION_ID, correlationId,
+                IntegrationMessageHeaderAccessor.SEQUENCE_SIZE, size));
+    }
+
+    private static AnalyticsReport get(Future<AnalyticsReport> future) {
+        try {
+            return future.get();
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
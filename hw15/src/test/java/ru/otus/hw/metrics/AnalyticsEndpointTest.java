@@ -0,0 +1,92 @@
+package ru.otus.hw.metrics;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.integration.support.MessageBuilder;
+import org.springframework.messaging.MessageChannel;
+import ru.otus.hw.domain.ClassifiedItem;
+import ru.otus.hw.domain.Intent;
+import ru.otus.hw.domain.SearchRequest;
+import ru.otus.hw.integration.SearchAnalyticsGateway;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = {
+        "app.integration.analytics.aggregation.group-timeout=200ms",
+        "app.integration.analytics.stage-logging=false"
+})
+class AnalyticsEndpointTest {
+
+    private static final List<String> STAGES = List.of("splitStage", "routeStage", "geoStage", "textStage",
+            "aggregateStage", "reportStage");
+
+    @Autowired
+    private SearchAnalyticsGateway gateway;
+
+    @Autowired
+    private AnalyticsEndpoint endpoint;
+
+    @Autowired
+    @Qualifier("classifiedChannel")
+    private MessageChannel classifiedChannel;
+
+    @DisplayName("Should report per-stage timings and per-intent counts after a batch")
+    @Test
+    @SuppressWarnings("unchecked")
+    void shouldExposeStageTimingsAndIntentCounts() throws InterruptedException {
+        gateway.process(List.of(
+                new SearchRequest("1", "59.9398,30.3146", "telegram", Instant.now()),
+                new SearchRequest("2", "Pushkin museum", "web", Instant.now()),
+                new SearchRequest("3", " ", "telegram", Instant.now())
+        ));
+
+        // таймер этапа записывается после возврата из обработчика, то есть иногда уже после ответа шлюза
+        Map<String, Object> analytics = endpoint.analytics();
+        for (int i = 0; i < 50 && ((Map<String, ?>) analytics.get("stages")).size() < STAGES.size(); i++) {
+            Thread.sleep(100);
+            analytics = endpoint.analytics();
+        }
+
+        var stages = (Map<String, Map<String, Object>>) analytics.get("stages");
+        assertThat(stages).containsKeys(STAGES.toArray(String[]::new));
+        assertThat(stages.get("textStage"))
+                .containsKeys("count", "meanMs", "maxMs", "p99Ms")
+                .containsEntry("count", 2L);
+        assertThat((Map<String, Double>) analytics.get("executor")).containsKeys("active", "queued");
+        var items = (Map<String, Map<String, Double>>) analytics.get("items");
+        assertThat(items.get("batch"))
+                .containsEntry("COORDS", 1.0)
+                .containsEntry("TEXT", 1.0)
+                .containsEntry("UNKNOWN", 1.0);
+    }
+
+    @DisplayName("Should count groups and items discarded by the aggregator group timeout")
+    @Test
+    @SuppressWarnings("unchecked")
+    void shouldCountExpiredGroups() throws InterruptedException {
+        classifiedChannel.send(MessageBuilder
+                .withPayload(new ClassifiedItem("1", Intent.TEXT, "hermitage", "web"))
+                .setCorrelationId("incomplete")
+                .setSequenceNumber(1)
+                .setSequenceSize(3)
+                .build());
+
+        Map<String, Double> store = Map.of("groups", 1.0);
+        for (int i = 0; i < 50 && store.get("groups") > 0; i++) {
+            Thread.sleep(100);
+            store = ((Map<String, Map<String, Double>>) endpoint.analytics().get("aggregators")).get("store");
+        }
+
+        assertThat(store)
+                .containsEntry("groups", 0.0)
+                .containsEntry("expiredGroups", 1.0)
+                .containsEntry("expiredItems", 1.0);
+    }
+}
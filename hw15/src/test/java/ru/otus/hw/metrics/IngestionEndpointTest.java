@@ -0,0 +1,42 @@
+package ru.otus.hw.metrics;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import ru.otus.hw.domain.IngestionStats;
+import ru.otus.hw.domain.Intent;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = "app.integration.analytics.stage-logging=false")
+class IngestionEndpointTest {
+
+    @Autowired
+    private IngestionEndpoint endpoint;
+
+    @TempDir
+    private Path dir;
+
+    @DisplayName("Should feed a log file to the pipeline detecting its format by extension")
+    @Test
+    void shouldIngestFileByExtension() throws IOException {
+        Path file = dir.resolve("search.ndjson");
+        Files.writeString(file, """
+                {"id":"1","queryText":"55.7558,37.6173","source":"web","timestamp":"2025-06-01T10:00:00Z"}
+                {"id":"2","queryText":"Pushkin museum","source":"web","timestamp":"2025-06-01T10:00:01Z"}
+                """);
+
+        IngestionStats stats = endpoint.ingest(file.toString(), null);
+
+        assertThat(stats.getRequests()).isEqualTo(2);
+        assertThat(stats.getCountsByIntent())
+                .containsOnly(Map.entry(Intent.COORDS, 1L), Map.entry(Intent.TEXT, 1L));
+    }
+}
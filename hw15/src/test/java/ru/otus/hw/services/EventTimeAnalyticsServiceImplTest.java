@@ -0,0 +1,118 @@
+package ru.otus.hw.services;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import ru.otus.hw.analytics.TopKTrackerFactory;
+import ru.otus.hw.configurations.AnalyticsProperties;
+import ru.otus.hw.domain.ClassifiedItem;
+import ru.otus.hw.domain.Intent;
+import ru.otus.hw.domain.TimeBucket;
+import ru.otus.hw.domain.TimeBucketReport;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class EventTimeAnalyticsServiceImplTest {
+
+    private static final Instant HOUR = Instant.parse("2025-06-01T10:00:00Z");
+
+    private Clock clock;
+
+    private EventTimeAnalyticsServiceImpl service;
+
+    @BeforeEach
+    void setUp() {
+        clock = mock(Clock.class);
+        when(clock.millis()).thenReturn(0L);
+        AnalyticsProperties props = new AnalyticsProperties();
+        props.getEventTime().setAllowedLateness(Duration.ofSeconds(30));
+        props.getEventTime().setIdleTimeout(Duration.ofMinutes(5));
+        service = new EventTimeAnalyticsServiceImpl(props, clock, new TopKTrackerFactory(props.getTopK()));
+    }
+
+    @DisplayName("Should close minute buckets by watermark and accept late events within the allowed lateness")
+    @Test
+    void shouldCloseMinutesByWatermark() {
+        service.accept(text("museum"), HOUR.plusSeconds(10));
+        service.accept(text("museum"), HOUR.plusSeconds(70));
+        service.accept(text("gallery"), HOUR.plusSeconds(50));
+        assertThat(service.pollClosedBuckets()).isEmpty();
+
+        service.accept(text("gallery"), HOUR.plusSeconds(125));
+        List<TimeBucketReport> reports = service.pollClosedBuckets();
+
+        assertThat(reports).hasSize(1);
+        TimeBucketReport first = reports.get(0);
+        assertThat(first.getBucket()).isEqualTo(TimeBucket.MINUTE);
+        assertThat(first.getReport().getWindowStart()).isEqualTo(HOUR);
+        assertThat(first.getReport().getWindowEnd()).isEqualTo(HOUR.plusSeconds(60));
+        assertThat(first.getReport().getCountsByIntent()).containsOnly(Map.entry(Intent.TEXT, 2L));
+        assertThat(first.getReport().getTop5Queries()).containsExactlyInAnyOrder("museum", "gallery");
+
+        service.accept(text("late"), HOUR.plusSeconds(30));
+        assertThat(service.lateEvents()).isEqualTo(1);
+    }
+
+    @DisplayName("Should build the hour bucket from closed minutes and count untimed events")
+    @Test
+    void shouldMergeMinutesIntoHour() {
+        for (int minute = 0; minute < 60; minute++) {
+            service.accept(text(minute % 2 == 0 ? "museum" : "gallery"), HOUR.plusSeconds(minute * 60L));
+        }
+        service.accept(new ClassifiedItem("0", Intent.COORDS, "59 30", "web"), HOUR.plusSeconds(3_599));
+        service.accept(text("no time"), null);
+        service.accept(text("next hour"), HOUR.plusSeconds(3_700));
+
+        List<TimeBucketReport> reports = service.pollClosedBuckets();
+
+        assertThat(reports).hasSize(61);
+        assertThat(reports.subList(0, 60)).allMatch(r -> r.getBucket() == TimeBucket.MINUTE);
+        TimeBucketReport hour = reports.get(60);
+        assertThat(hour.getBucket()).isEqualTo(TimeBucket.HOUR);
+        assertThat(hour.getReport().getWindowEnd()).isEqualTo(HOUR.plusSeconds(3_600));
+        assertThat(hour.getReport().getCountsByIntent())
+                .containsOnly(Map.entry(Intent.TEXT, 60L), Map.entry(Intent.COORDS, 1L));
+        assertThat(service.untimedEvents()).isEqualTo(1);
+        assertThat(service.pollClosedBuckets()).isEmpty();
+    }
+
+    @DisplayName("Should flush open buckets after the idle timeout and report later events of them again")
+    @Test
+    void shouldFlushWhenIdle() {
+        service.accept(text("museum"), HOUR.plusSeconds(10));
+        assertThat(service.pollClosedBuckets()).isEmpty();
+
+        when(clock.millis()).thenReturn(Duration.ofMinutes(5).toMillis());
+        List<TimeBucketReport> flushed = service.pollClosedBuckets();
+
+        assertThat(flushed).extracting(TimeBucketReport::getBucket)
+                .containsExactly(TimeBucket.MINUTE, TimeBucket.HOUR);
+        service.accept(text("gallery"), HOUR.plusSeconds(30));
+        service.accept(text("gallery"), HOUR.plusSeconds(1_800));
+        assertThat(service.lateEvents()).as("the flush did not move the watermark").isZero();
+        List<TimeBucketReport> reopened = service.pollClosedBuckets();
+        assertThat(reopened).extracting(TimeBucketReport::getBucket).containsExactly(TimeBucket.MINUTE);
+        assertThat(reopened.get(0).getReport().getWindowStart()).isEqualTo(HOUR);
+        assertThat(reopened.get(0).getReport().getTop5Queries()).containsExactly("gallery");
+
+        when(clock.millis()).thenReturn(Duration.ofMinutes(10).toMillis());
+        List<TimeBucketReport> reports = service.pollClosedBuckets();
+
+        assertThat(reports).extracting(TimeBucketReport::getBucket)
+                .containsExactly(TimeBucket.MINUTE, TimeBucket.HOUR);
+        assertThat(reports.get(1).getReport().getCountsByIntent()).containsOnly(Map.entry(Intent.TEXT, 2L));
+        assertThat(reports.get(1).getReport().getTop5Queries()).containsExactly("gallery");
+    }
+
+    private static ClassifiedItem text(String query) {
+        return new ClassifiedItem("1", Intent.TEXT, query, "web");
+    }
+}
@@ -0,0 +1,63 @@
+package ru.otus.hw.services;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import ru.otus.hw.domain.AnalyticsReport;
+import ru.otus.hw.domain.IngestionStats;
+import ru.otus.hw.domain.Intent;
+import ru.otus.hw.integration.SearchLogFormat;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = {
+        "app.integration.analytics.ingest.chunk-size=300",
+        "app.integration.analytics.ingest.region-size=4KB"
+})
+class FileIngestionServiceImplTest {
+
+    @Autowired
+    private FileIngestionService fileIngestionService;
+
+    @TempDir
+    private Path dir;
+
+    @DisplayName("Should feed a log file to the pipeline in bounded chunks and sum up the chunk reports")
+    @Test
+    void shouldIngestFileInChunks() throws IOException {
+        Path file = dir.resolve("search.csv");
+        Files.writeString(file, "id,queryText,source,timestamp\n" + IntStream.range(0, 1_000)
+                .mapToObj(i -> i + "," + (i % 4 == 0 ? "\"55.7558,37.6173\"" : "museum " + i % 3)
+                        + ",web,2025-06-01T10:00:00Z")
+                .collect(Collectors.joining("\n", "", "\n")));
+        List<AnalyticsReport> reports = new ArrayList<>();
+        List<Double> progress = new ArrayList<>();
+
+        IngestionStats stats = fileIngestionService.ingest(file, SearchLogFormat.of(file), (report, current) -> {
+            reports.add(report);
+            progress.add(current.getProgress());
+        });
+
+        assertThat(reports).hasSize(4);
+        assertThat(progress).isSorted().last().isEqualTo(1.0);
+        assertThat(stats.getChunks()).isEqualTo(4);
+        assertThat(stats.getRequests()).isEqualTo(1_000);
+        assertThat(stats.getLines()).isEqualTo(1_001);
+        assertThat(stats.getMalformed()).isZero();
+        assertThat(stats.getBytesRead()).isEqualTo(Files.size(file));
+        assertThat(stats.getCountsByIntent())
+                .containsOnly(Map.entry(Intent.COORDS, 250L), Map.entry(Intent.TEXT, 750L));
+        assertThat(stats.getRequestsPerSecond()).isPositive();
+    }
+}
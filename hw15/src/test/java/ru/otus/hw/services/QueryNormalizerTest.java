@@ -0,0 +1,76 @@
+package ru.otus.hw.services;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import ru.otus.hw.analytics.PunctuationRules;
+
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class QueryNormalizerTest {
+
+    private final QueryNormalizer ascii = new QueryNormalizer(PunctuationRules.ASCII);
+
+    private final QueryNormalizer unicode = new QueryNormalizer(PunctuationRules.UNICODE);
+
+    private static String legacy(String s) {
+        return s.toLowerCase()
+                .trim()
+                .replaceAll("\\p{Punct}", "")
+                .replaceAll("\\s+", " ");
+    }
+
+    @DisplayName("Should produce exactly the same output as the regex chain")
+    @ParameterizedTest(name = "[{0}]")
+    @ValueSource(strings = {
+            "", " ", "Pushkin museum", "  Tretyakov   Gallery!!! ", "hello !", "! hello", "a ! b",
+            "Эрмитаж, часы работы?", "Музей \"Гараж\" — выставки", "ОДИССЕЯ\t\tΣΟΦΟΣ", "İstanbul",
+            "tab\tnew\nline\u000Bvt\u000Cff\rcr", "ctrl\u0001inside", " nbsp ", "𐐀 deseret",
+            "already normalized", "C++ & Java_8: what's new?"
+    })
+    void shouldMatchLegacyImplementation(String query) {
+        assertThat(ascii.normalize(query)).isEqualTo(legacy(query));
+    }
+
+    @DisplayName("Should match the regex chain on random ASCII and Cyrillic input")
+    @Test
+    void shouldMatchLegacyOnRandomInput() {
+        String alphabet = "aZ09 \t\n.,!?-_\"'()«»—АяЁёΣσ ";
+        Random random = new Random(7);
+        for (int i = 0; i < 10_000; i++) {
+            StringBuilder sb = new StringBuilder();
+            int len = random.nextInt(20);
+            for (int j = 0; j < len; j++) {
+                sb.append(alphabet.charAt(random.nextInt(alphabet.length())));
+            }
+            String query = sb.toString();
+            assertThat(ascii.normalize(query)).as(query).isEqualTo(legacy(query));
+        }
+    }
+
+    @DisplayName("Should return the same instance for an already normalized query")
+    @Test
+    void shouldNotCopyNormalizedQuery() {
+        String query = "pushkin museum";
+
+        assertThat(ascii.normalize(query)).isSameAs(query);
+    }
+
+    @DisplayName("Should strip Unicode punctuation and spaces in UNICODE mode")
+    @Test
+    void shouldApplyUnicodeRules() {
+        assertThat(unicode.normalize(" Музей «Гараж» — выставки… "))
+                .isEqualTo("музей гараж выставки");
+        assertThat(ascii.normalize(" Музей «Гараж» — выставки… "))
+                .isEqualTo(" музей «гараж» — выставки… ");
+    }
+
+    @DisplayName("Should return empty string for null")
+    @Test
+    void shouldHandleNull() {
+        assertThat(ascii.normalize(null)).isEmpty();
+    }
+}
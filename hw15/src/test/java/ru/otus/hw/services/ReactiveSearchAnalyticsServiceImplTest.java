@@ -0,0 +1,90 @@
+package ru.otus.hw.services;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import reactor.core.publisher.Flux;
+import ru.otus.hw.domain.AnalyticsReport;
+import ru.otus.hw.domain.Intent;
+import ru.otus.hw.domain.SearchRequest;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = {
+        "app.integration.analytics.streaming.window-size=200ms",
+        "app.integration.analytics.streaming.window-slide=200ms",
+        "app.integration.analytics.streaming.emit-interval=50ms"
+})
+class ReactiveSearchAnalyticsServiceImplTest {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
+
+    @Autowired
+    private ReactiveSearchAnalyticsService service;
+
+    @DisplayName("Should return batch report as Mono")
+    @Test
+    void shouldProcessBatchReactively() {
+        AnalyticsReport report = service.process(List.of(
+                new SearchRequest("1", "Pushkin museum", "web", Instant.now()),
+                new SearchRequest("2", "59.9398,30.3146", "web", Instant.now())
+        )).block(TIMEOUT);
+
+        assertThat(report).isNotNull();
+        assertThat(report.getCountsByIntent())
+                .containsEntry(Intent.TEXT, 1L)
+                .containsEntry(Intent.COORDS, 1L);
+    }
+
+    @DisplayName("Should pull stream requests with bounded demand and emit window reports")
+    @Test
+    void shouldStreamWithBoundedDemand() {
+        List<Long> requested = new CopyOnWriteArrayList<>();
+        Flux<SearchRequest> requests = Flux.range(0, 10_000)
+                .map(i -> new SearchRequest(String.valueOf(i), "query " + i % 3, "web", Instant.now()))
+                .doOnRequest(requested::add);
+
+        AnalyticsReport report = service.stream(requests)
+                .filter(r -> r.getCountsByIntent().containsKey(Intent.TEXT))
+                .blockFirst(TIMEOUT);
+
+        assertThat(report).isNotNull();
+        assertThat(report.getWindowEnd()).isNotNull();
+        assertThat(report.getTop5Queries()).isNotEmpty().isSubsetOf("query 0", "query 1", "query 2");
+        assertThat(requested).isNotEmpty().doesNotContain(Long.MAX_VALUE);
+    }
+
+    @DisplayName("Should complete after the requests complete with every request counted")
+    @Test
+    void shouldCompleteWithUpstream() {
+        Flux<SearchRequest> requests = Flux.range(0, 500)
+                .map(i -> new SearchRequest(String.valueOf(i), "query " + i % 3, "web", Instant.now()));
+
+        List<AnalyticsReport> reports = service.stream(requests).collectList().block(TIMEOUT);
+
+        assertThat(reports).isNotEmpty();
+        assertThat(reports.stream().mapToLong(r -> r.getCountsByIntent().getOrDefault(Intent.TEXT, 0L)).sum())
+                .isEqualTo(500);
+    }
+
+    @DisplayName("Should keep windows of concurrent streams apart")
+    @Test
+    void shouldScopeWindowsPerStream() {
+        Flux<AnalyticsReport> museums = service.stream(Flux.range(0, 300)
+                .map(i -> new SearchRequest("m" + i, "museum", "web", Instant.now())));
+        Flux<AnalyticsReport> galleries = service.stream(Flux.range(0, 300)
+                .map(i -> new SearchRequest("g" + i, "gallery", "web", Instant.now())));
+
+        List<List<AnalyticsReport>> reports = Flux.merge(museums.collectList(), galleries.collectList())
+                .collectList().block(TIMEOUT);
+
+        assertThat(reports).hasSize(2).allSatisfy(stream -> assertThat(stream).isNotEmpty()
+                .extracting(AnalyticsReport::getTop5Queries).allSatisfy(top -> assertThat(top).hasSize(1)));
+    }
+}
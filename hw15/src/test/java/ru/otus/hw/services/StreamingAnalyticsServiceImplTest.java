@@ -0,0 +1,117 @@
+package ru.otus.hw.services;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import ru.otus.hw.analytics.TopKTrackerFactory;
+import ru.otus.hw.configurations.AnalyticsProperties;
+import ru.otus.hw.domain.AnalyticsReport;
+import ru.otus.hw.domain.ClassifiedItem;
+import ru.otus.hw.domain.Intent;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class StreamingAnalyticsServiceImplTest {
+
+    private Clock clock;
+
+    private AnalyticsProperties props;
+
+    @BeforeEach
+    void setUp() {
+        clock = mock(Clock.class);
+        when(clock.millis()).thenReturn(0L);
+        props = new AnalyticsProperties();
+    }
+
+    @DisplayName("Should emit one report per tumbling window")
+    @Test
+    void shouldEmitTumblingWindows() {
+        props.getStreaming().setWindowSize(Duration.ofSeconds(10));
+        props.getStreaming().setWindowSlide(Duration.ofSeconds(10));
+        var service = new StreamingAnalyticsServiceImpl(props, clock, new TopKTrackerFactory(props.getTopK()));
+
+        at(1_000);
+        service.accept(text("museum"));
+        service.accept(text("museum"));
+        at(9_000);
+        assertThat(service.pollCompletedWindows()).isEmpty();
+
+        at(12_000);
+        service.accept(text("gallery"));
+        List<AnalyticsReport> first = service.pollCompletedWindows();
+        assertThat(first).singleElement().satisfies(r -> {
+            assertThat(r.getWindowStart()).isEqualTo(Instant.ofEpochMilli(0));
+            assertThat(r.getWindowEnd()).isEqualTo(Instant.ofEpochMilli(10_000));
+            assertThat(r.getCountsByIntent()).containsEntry(Intent.TEXT, 2L).hasSize(1);
+            assertThat(r.getTop5Queries()).containsExactly("museum");
+        });
+
+        at(20_000);
+        assertThat(service.pollCompletedWindows()).singleElement()
+                .satisfies(r -> assertThat(r.getTop5Queries()).containsExactly("gallery"));
+    }
+
+    @DisplayName("Should include every pane of a sliding window exactly while it is inside the window")
+    @Test
+    void shouldEmitSlidingWindows() {
+        props.getStreaming().setWindowSize(Duration.ofSeconds(10));
+        props.getStreaming().setWindowSlide(Duration.ofSeconds(5));
+        var service = new StreamingAnalyticsServiceImpl(props, clock, new TopKTrackerFactory(props.getTopK()));
+
+        at(1_000);
+        service.accept(text("museum"));
+        at(6_000);
+        service.accept(text("gallery"));
+        at(15_000);
+        List<AnalyticsReport> reports = service.pollCompletedWindows();
+
+        assertThat(reports).hasSize(3);
+        assertThat(reports.get(0).getTop5Queries()).containsExactly("museum");
+        assertThat(reports.get(1).getTop5Queries()).containsExactlyInAnyOrder("museum", "gallery");
+        assertThat(reports.get(2).getTop5Queries()).containsExactly("gallery");
+    }
+
+    @DisplayName("Should keep the number of tracked queries bounded")
+    @Test
+    void shouldBoundTrackedQueries() {
+        props.getTopK().setEpsilon(0.5);
+        props.getTopK().setCountMinSketch(false);
+        var service = new StreamingAnalyticsServiceImpl(props, clock, new TopKTrackerFactory(props.getTopK()));
+
+        List.of("a", "b", "a", "c", "a", "d", "a").forEach(q -> service.accept(text(q)));
+        at(props.getStreaming().getWindowSize().toMillis());
+
+        assertThat(service.pollCompletedWindows()).singleElement().satisfies(r -> {
+            assertThat(r.getCountsByIntent()).containsEntry(Intent.TEXT, 7L);
+            assertThat(r.getTop5Queries()).hasSize(2).startsWith("a");
+        });
+    }
+
+    @DisplayName("Should reject window size that is not a multiple of slide")
+    @Test
+    void shouldRejectInvalidWindow() {
+        props.getStreaming().setWindowSize(Duration.ofSeconds(10));
+        props.getStreaming().setWindowSlide(Duration.ofSeconds(3));
+
+        var topKTrackerFactory = new TopKTrackerFactory(props.getTopK());
+        assertThrows(IllegalArgumentException.class,
+                () -> new StreamingAnalyticsServiceImpl(props, clock, topKTrackerFactory));
+    }
+
+    private void at(long millis) {
+        when(clock.millis()).thenReturn(millis);
+    }
+
+    private static ClassifiedItem text(String query) {
+        return new ClassifiedItem(query, Intent.TEXT, query, "web");
+    }
+}
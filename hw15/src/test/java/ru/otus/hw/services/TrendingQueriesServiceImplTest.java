@@ -0,0 +1,127 @@
+package ru.otus.hw.services;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.otus.hw.analytics.ReportAccumulator;
+import ru.otus.hw.analytics.TopKTrackerFactory;
+import ru.otus.hw.configurations.AnalyticsProperties;
+import ru.otus.hw.domain.ClassifiedItem;
+import ru.otus.hw.domain.Intent;
+import ru.otus.hw.domain.TrendingQuery;
+
+import java.io.DataOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class TrendingQueriesServiceImplTest {
+
+    @TempDir
+    Path dir;
+
+    private Clock clock;
+
+    private AnalyticsProperties props;
+
+    private TopKTrackerFactory topKTrackerFactory;
+
+    @BeforeEach
+    void setUp() {
+        clock = mock(Clock.class);
+        when(clock.millis()).thenReturn(0L);
+        props = new AnalyticsProperties();
+        props.getTrending().setLimit(2);
+        props.getTrending().setHalfLife(Duration.ofHours(1));
+        topKTrackerFactory = new TopKTrackerFactory(props.getTopK());
+    }
+
+    @DisplayName("Should accumulate queries across batches and publish the top of the leaderboard")
+    @Test
+    void shouldMergeBatches() {
+        var service = new TrendingQueriesServiceImpl(props, clock);
+        assertThat(service.trending()).isEmpty();
+
+        service.merge(batch("museum", "museum", "gallery"));
+        service.merge(batch("theatre", "gallery", "gallery"));
+
+        assertThat(service.trending()).extracting(TrendingQuery::getQuery).containsExactly("gallery", "museum");
+        assertThat(service.trending().get(0).getScore()).isEqualTo(3);
+    }
+
+    @DisplayName("Should restore the leaderboard from a snapshot with the downtime decay applied")
+    @Test
+    void shouldRestoreFromSnapshot() {
+        props.getTrending().setSnapshotFile(dir.resolve("trending.bin"));
+        var service = new TrendingQueriesServiceImpl(props, clock);
+        service.merge(batch("museum", "museum", "museum", "museum", "gallery", "gallery"));
+        service.destroy();
+        assertThat(props.getTrending().getSnapshotFile()).exists();
+
+        when(clock.millis()).thenReturn(Duration.ofHours(1).toMillis());
+        var restarted = new TrendingQueriesServiceImpl(props, clock);
+
+        assertThat(restarted.trending()).extracting(TrendingQuery::getQuery).containsExactly("museum", "gallery");
+        assertThat(restarted.trending().get(0).getScore()).isCloseTo(2, within(1e-9));
+    }
+
+    @DisplayName("Should restore queries longer than 64KB from a snapshot")
+    @Test
+    void shouldRestoreLongQueryFromSnapshot() {
+        String query = "музей ".repeat(20_000);
+        props.getTrending().setSnapshotFile(dir.resolve("trending.bin"));
+        var service = new TrendingQueriesServiceImpl(props, clock);
+        service.merge(batch(query, "gallery"));
+        service.destroy();
+
+        var restarted = new TrendingQueriesServiceImpl(props, clock);
+
+        assertThat(restarted.trending()).extracting(TrendingQuery::getQuery)
+                .containsExactlyInAnyOrder(query, "gallery");
+    }
+
+    @DisplayName("Should restore a snapshot written with modified UTF-8 keys")
+    @Test
+    void shouldRestoreUtfSnapshot() throws Exception {
+        Path file = dir.resolve("trending.bin");
+        try (var out = new DataOutputStream(Files.newOutputStream(file))) {
+            out.writeInt(0x54524E44);
+            out.writeInt(1);
+            out.writeLong(0);
+            out.writeInt(1);
+            out.writeUTF("museum");
+            out.writeDouble(3);
+            out.writeDouble(0);
+        }
+        props.getTrending().setSnapshotFile(file);
+
+        var restored = new TrendingQueriesServiceImpl(props, clock);
+
+        assertThat(restored.trending()).extracting(TrendingQuery::getQuery).containsExactly("museum");
+        assertThat(restored.trending().get(0).getScore()).isEqualTo(3);
+    }
+
+    @DisplayName("Should start empty when the snapshot is not recognised")
+    @Test
+    void shouldIgnoreForeignSnapshot() throws Exception {
+        Path file = Files.writeString(dir.resolve("trending.bin"), "not a snapshot");
+        props.getTrending().setSnapshotFile(file);
+
+        assertThat(new TrendingQueriesServiceImpl(props, clock).trending()).isEmpty();
+    }
+
+    private ReportAccumulator batch(String... queries) {
+        var accumulator = new ReportAccumulator(topKTrackerFactory::createBounded);
+        for (String query : queries) {
+            accumulator.add(new ClassifiedItem("1", Intent.TEXT, query, "web"));
+        }
+        return accumulator;
+    }
+}
@@ -0,0 +1,106 @@
+package ru.otus.hw.util;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.Locale;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class GeoUtilTest {
+
+    private static final Pattern COORDS = Pattern.compile(
+            "^\\s*([+-]?\\d+(?:\\.\\d+)?)\\s*,\\s*([+-]?\\d+(?:\\.\\d+)?)\\s*$"
+    );
+
+    /**
+     * Прежняя реализация на регулярном выражении и Double.parseDouble.
+     */
+    private static long legacy(String text) {
+        var m = COORDS.matcher(text);
+        if (!m.matches()) {
+            return GeoUtil.NO_COORDS;
+        }
+        double lat = Double.parseDouble(m.group(1));
+        double lon = Double.parseDouble(m.group(2));
+        if (lat < -90 || lat > 90 || lon < -180 || lon > 180) {
+            return GeoUtil.NO_COORDS;
+        }
+        return GeoUtil.pack(Math.round(lat * 100_000), Math.round(lon * 100_000));
+    }
+
+    @DisplayName("Should parse coordinates to the same fixed-point values as regex and parseDouble")
+    @ParameterizedTest(name = "[{0}]")
+    @ValueSource(strings = {
+            "59.9398,30.3146", " 59.9398 , 30.3146 ", "-33.868820,151.209296", "+90,-180", "0.000005,0.000015",
+            "-0.000005,-0.000015", "55.7558260000000000001,37.6173", "12345678901234567890.1,1",
+            "1.23456789012345678901234,2", "\t1\n,\r2\u000B", "00059.93980,030.31460"
+    })
+    void shouldMatchLegacyOnValidInput(String text) {
+        assertThat(GeoUtil.parseFixed(text)).isEqualTo(legacy(text));
+    }
+
+    @DisplayName("Should reject text that is not a pair of coordinates")
+    @ParameterizedTest(name = "[{0}]")
+    @ValueSource(strings = {
+            "", " ", "Pushkin museum", "59.9398", "59.9398,", ",30.3146", "59.,30", ".5,30", "59.9 30.3",
+            "90.00001,0", "0,180.1", "1,2,3", "1e3,2", "--1,2", "59.9398,30.3146 museum", "٥٩,٣٠"
+    })
+    void shouldRejectNonCoordinates(String text) {
+        assertThat(GeoUtil.parseFixed(text)).isEqualTo(GeoUtil.NO_COORDS);
+        assertThat(GeoUtil.parseLatLon(text, null)).isFalse();
+    }
+
+    @DisplayName("Should match legacy parser on random coordinates with different precision")
+    @Test
+    void shouldMatchLegacyOnRandomCoordinates() {
+        Random random = new Random(11);
+        for (int i = 0; i < 100_000; i++) {
+            String format = "%." + random.nextInt(12) + "f";
+            String text = String.format(Locale.US, format + "," + format,
+                    random.nextDouble() * 180 - 90, random.nextDouble() * 360 - 180);
+            assertThat(GeoUtil.parseFixed(text)).as(text).isEqualTo(legacy(text));
+        }
+    }
+
+    @DisplayName("Should fill double output and unpack fixed-point values")
+    @Test
+    void shouldExposeParsedValues() {
+        double[] out = new double[2];
+
+        assertThat(GeoUtil.parseLatLon("59.9398,-30.3146", out)).isTrue();
+        assertThat(out).containsExactly(59.9398, -30.3146);
+
+        long packed = GeoUtil.parseFixed("59.9398,-30.3146");
+        assertThat(GeoUtil.latInt(packed)).isEqualTo(5_993_980);
+        assertThat(GeoUtil.lonInt(packed)).isEqualTo(-3_031_460);
+    }
+
+    @DisplayName("Should encode geohash cells without strings and render them like the reference geohash")
+    @ParameterizedTest(name = "[{0}] -> {1}")
+    @CsvSource(delimiter = ';', value = {
+            "57.64911,10.40744; u4pruydqqvj", "57.64911,10.40744; u4pru", "57.64911,10.40744; u4pruy",
+            "42.6,-5.6; ezs42", "-90,-180; 0000000", "90,180; zzzzzzz"
+    })
+    void shouldEncodeGeohash(String coords, String geohash) {
+        long cell = GeoUtil.geohash(GeoUtil.parseFixed(coords), geohash.length());
+
+        assertThat(cell).isNotNegative();
+        assertThat(GeoUtil.geohashString(cell)).isEqualTo(geohash);
+    }
+
+    @DisplayName("Should put nearby coordinates into one cell and tell precisions apart")
+    @Test
+    void shouldGroupNearbyCoordinates() {
+        long first = GeoUtil.geohash(GeoUtil.parseFixed("55.75580,37.61730"), 7);
+        long second = GeoUtil.geohash(GeoUtil.parseFixed("55.75585,37.61740"), 7);
+
+        assertThat(first).isEqualTo(second);
+        assertThat(GeoUtil.geohash(GeoUtil.parseFixed("55.75580,37.61730"), 6)).isNotEqualTo(first);
+    }
+}